@@ -0,0 +1,20 @@
+package it.auties.whatsapp.api;
+
+import java.time.Duration;
+
+/**
+ * A model class that describes how quickly a session connects and reconnects.
+ * The time to ready of a connection is measured from the moment it was requested, or from the moment the previous connection was lost, until the session is logged in.
+ *
+ * @param connections            the number of times the session was logged in
+ * @param reconnections          the number of attempts made to reconnect after the connection was lost
+ * @param resumptions            the number of times the session was logged in again by reusing the state of the previous connection
+ * @param consecutiveFailures    the number of attempts made since the session last had a stable connection
+ * @param lastTimeToReady        the time to ready of the last connection, zero if the session never logged in
+ * @param averageTimeToReady     the average time to ready of all the connections, zero if the session never logged in
+ * @param maxTimeToReady         the maximum time to ready of all the connections, zero if the session never logged in
+ */
+public record ConnectionMetrics(long connections, long reconnections, long resumptions, int consecutiveFailures,
+                                Duration lastTimeToReady, Duration averageTimeToReady, Duration maxTimeToReady) {
+
+}
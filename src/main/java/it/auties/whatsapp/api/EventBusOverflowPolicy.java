@@ -0,0 +1,24 @@
+package it.auties.whatsapp.api;
+
+/**
+ * The constants of this enumerated type describe what the event bus does when the queue of a listener is full
+ */
+public enum EventBusOverflowPolicy {
+    /**
+     * The thread that fires the event waits until the listener catches up.
+     * This applies back-pressure to the socket, so a listener must never wait on a response from Whatsapp while handling an event if this policy is used.
+     * Events fired by a listener while it handles an event, for example when it sends a message, never wait: they are dropped if the queue is full
+     */
+    BLOCK,
+
+    /**
+     * The oldest event in the queue of the listener is discarded
+     */
+    DROP_OLDEST,
+
+    /**
+     * Events that describe a state, for example a presence update or a snapshot of the chats, replace the queued event of the same type for the same chat.
+     * If the queue is still full, the oldest event is discarded
+     */
+    COALESCE
+}
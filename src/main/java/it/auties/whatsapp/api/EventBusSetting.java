@@ -0,0 +1,27 @@
+package it.auties.whatsapp.api;
+
+import it.auties.whatsapp.util.Validate;
+import lombok.NonNull;
+
+/**
+ * A setting that enables ordered delivery of events to listeners.
+ * Each listener gets its own bounded queue that is consumed by a single task at a time, so events are delivered in the order they were fired.
+ * This guarantees, for example, that {@link it.auties.whatsapp.listener.Listener#onNewMessage(Whatsapp, it.auties.whatsapp.model.info.MessageInfo)} is called before the status updates of the same message.
+ *
+ * @param queueSize      the maximum number of pending events for each listener
+ * @param overflowPolicy the non-null policy applied when the queue of a listener is full
+ */
+public record EventBusSetting(int queueSize, @NonNull EventBusOverflowPolicy overflowPolicy) {
+    public EventBusSetting {
+        Validate.isTrue(queueSize > 0, "Invalid queue size: %s", queueSize);
+    }
+
+    /**
+     * Constructs a setting that blocks the socket when a listener falls behind by a thousand events
+     *
+     * @return a non-null setting
+     */
+    public static EventBusSetting blocking() {
+        return new EventBusSetting(1000, EventBusOverflowPolicy.BLOCK);
+    }
+}
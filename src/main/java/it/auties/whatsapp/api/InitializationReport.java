@@ -0,0 +1,52 @@
+package it.auties.whatsapp.api;
+
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * A model class that describes how a session was initialized after logging in.
+ * Initialization is made of steps, like querying the media connection or the privacy settings, that run concurrently unless one depends on another.
+ * Critical steps are the ones that must be completed before messages can be sent: they are started first, and the session is ready to send as soon as all of them succeed.
+ *
+ * @param resumed     whether the session reused the state of the previous connection
+ * @param readyToSend whether all the critical steps succeeded, that is whether the session was reported as ready to send messages
+ * @param timeToReady the time elapsed from the login until all the critical steps were done, whether they succeeded or not
+ * @param elapsed     the time elapsed from the login until all the steps were done
+ * @param steps       the steps, in the order they were started
+ */
+public record InitializationReport(boolean resumed, boolean readyToSend, @NonNull Duration timeToReady, @NonNull Duration elapsed, @NonNull List<Step> steps) {
+    /**
+     * A model class that describes a step of the initialization of a session
+     *
+     * @param name         the name of the step
+     * @param critical     whether the step must be done before messages can be sent
+     * @param startedAfter the time elapsed from the login until the step was started
+     * @param duration     the time the step took to complete
+     * @param result       the result of the step
+     */
+    public record Step(@NonNull String name, boolean critical, @NonNull Duration startedAfter, @NonNull Duration duration, @NonNull Result result) {
+
+    }
+
+    /**
+     * The result of a step
+     */
+    public enum Result {
+        /**
+         * The step completed successfully
+         */
+        SUCCESS,
+
+        /**
+         * The step failed
+         */
+        FAILURE,
+
+        /**
+         * The step wasn't started because a step it depends on didn't complete successfully
+         */
+        SKIPPED
+    }
+}
@@ -196,6 +196,7 @@ public final class MobileOptionsBuilder extends OptionsBuilder<MobileOptionsBuil
                 .keys(keys)
                 .errorHandler(errorHandler)
                 .socketExecutor(socketExecutor)
+                .host(host)
                 .build());
     }
 
@@ -206,7 +207,7 @@ public final class MobileOptionsBuilder extends OptionsBuilder<MobileOptionsBuil
      * @return a non-null selector
      */
     public Unregistered unregistered() {
-        return new Unregistered(store, keys, errorHandler, socketExecutor);
+        return new Unregistered(store, keys, errorHandler, socketExecutor, host);
     }
 
     /**
@@ -216,6 +217,6 @@ public final class MobileOptionsBuilder extends OptionsBuilder<MobileOptionsBuil
      * @return a non-null selector
      */
     public Unverified unverified() {
-        return new Unverified(store, keys, errorHandler, socketExecutor);
+        return new Unverified(store, keys, errorHandler, socketExecutor, host);
     }
 }
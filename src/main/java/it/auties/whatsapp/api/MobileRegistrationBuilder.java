@@ -26,6 +26,7 @@ public sealed class MobileRegistrationBuilder<T extends MobileRegistrationBuilde
     protected final Keys keys;
     protected final ErrorHandler errorHandler;
     protected final Executor socketExecutor;
+    protected final WhatsappHost host;
     protected AsyncVerificationCodeSupplier verificationCodeSupplier;
     protected AsyncCaptchaCodeSupplier verificationCaptchaSupplier;
 
@@ -85,14 +86,15 @@ public sealed class MobileRegistrationBuilder<T extends MobileRegistrationBuilde
                 .keys(keys)
                 .errorHandler(errorHandler)
                 .socketExecutor(socketExecutor)
+                .host(host)
                 .build();
     }
 
     public final static class Unregistered extends MobileRegistrationBuilder<Unregistered> {
         private VerificationCodeMethod verificationCodeMethod;
 
-        public Unregistered(Store store, Keys keys, ErrorHandler errorHandler, Executor socketExecutor) {
-            super(store, keys, errorHandler, socketExecutor);
+        public Unregistered(Store store, Keys keys, ErrorHandler errorHandler, Executor socketExecutor, WhatsappHost host) {
+            super(store, keys, errorHandler, socketExecutor, host);
             this.verificationCodeMethod = VerificationCodeMethod.SMS;
         }
 
@@ -144,18 +146,18 @@ public sealed class MobileRegistrationBuilder<T extends MobileRegistrationBuilde
             store.phoneNumber(number);
             if (!keys.registered()) {
                 return RegistrationHelper.requestVerificationCode(store, keys, verificationCodeMethod)
-                        .thenApply(ignored -> new Unverified(store, keys, errorHandler, socketExecutor));
+                        .thenApply(ignored -> new Unverified(store, keys, errorHandler, socketExecutor, host));
             }
 
-            return CompletableFuture.completedFuture(new Unverified(store, keys, errorHandler, socketExecutor));
+            return CompletableFuture.completedFuture(new Unverified(store, keys, errorHandler, socketExecutor, host));
         }
     }
 
     public final static class Unverified extends MobileRegistrationBuilder<Unverified> {
 
 
-        public Unverified(Store store, Keys keys, ErrorHandler errorHandler, Executor socketExecutor) {
-            super(store, keys, errorHandler, socketExecutor);
+        public Unverified(Store store, Keys keys, ErrorHandler errorHandler, Executor socketExecutor, WhatsappHost host) {
+            super(store, keys, errorHandler, socketExecutor, host);
         }
 
         /**
@@ -6,9 +6,11 @@ import it.auties.whatsapp.controller.Store;
 import it.auties.whatsapp.listener.RegisterListener;
 import it.auties.whatsapp.model.signal.auth.UserAgent.UserAgentReleaseChannel;
 import it.auties.whatsapp.model.signal.auth.Version;
+import it.auties.whatsapp.util.TimerWheel;
 import lombok.NonNull;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.Executor;
@@ -19,6 +21,7 @@ public sealed class OptionsBuilder<T extends OptionsBuilder<T>> permits MobileOp
     protected Keys keys;
     protected ErrorHandler errorHandler;
     protected Executor socketExecutor;
+    protected WhatsappHost host;
     protected OptionsBuilder(Store store, Keys keys){
         this.store = store;
         this.keys = keys;
@@ -91,6 +94,65 @@ public sealed class OptionsBuilder<T extends OptionsBuilder<T>> permits MobileOp
         return (T) this;
     }
 
+    /**
+     * Sets how events should be delivered to listeners
+     * If a setting is provided, events are delivered to each listener in order through a bounded queue
+     * By default, events are delivered concurrently and without any guarantee on their order
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T eventBusSetting(EventBusSetting eventBusSetting) {
+        if(store != null) {
+            store.eventBusSetting(eventBusSetting);
+        }
+        return (T) this;
+    }
+
+    /**
+     * Sets the timer wheel used to schedule keep alive pings, media connection refreshes, request timeouts and the other delayed work of this session
+     * Sessions that share a timer wheel are served by a single thread
+     * By default, the timer wheel of the host is used if one is set, otherwise the one shared by all sessions
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T timer(@NonNull TimerWheel timer) {
+        if(store != null) {
+            store.timer(timer);
+        }
+        return (T) this;
+    }
+
+    /**
+     * Sets the policy used to reconnect this session when the connection is lost
+     * By default, the session reconnects immediately and then backs off exponentially, from one second up to one minute, without ever giving up
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T reconnectPolicy(@NonNull ReconnectPolicy reconnectPolicy) {
+        if(store != null) {
+            store.reconnectPolicy(reconnectPolicy);
+        }
+        return (T) this;
+    }
+
+    /**
+     * Sets the window within which presence updates for the same contact in the same chat are merged
+     * Listeners are notified only once per window, and only if the presence actually changed
+     * By default, the window is zero: listeners are notified immediately about every change
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T presenceCoalescingWindow(@NonNull Duration presenceCoalescingWindow) {
+        if(store != null) {
+            store.presenceCoalescingWindow(presenceCoalescingWindow);
+        }
+        return (T) this;
+    }
+
     /**
      * Sets the error handler for this session
      *
@@ -114,6 +176,19 @@ public sealed class OptionsBuilder<T extends OptionsBuilder<T>> permits MobileOp
         return (T) this;
     }
 
+    /**
+     * Sets the host that runs this session
+     * Sessions that use the same host share its workers, timers and socket threads instead of creating their own
+     * If a socket executor is also set, it takes precedence over the one provided by the host
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T host(@NonNull WhatsappHost host) {
+        this.host = host;
+        return (T) this;
+    }
+
     /**
      * Sets the release channel
      *
@@ -0,0 +1,70 @@
+package it.auties.whatsapp.api;
+
+import it.auties.whatsapp.util.Validate;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A policy that decides when a session should try to reconnect after the connection was lost.
+ * The first attempt is made immediately, as most disconnections are transient.
+ * Following attempts are delayed exponentially, starting from {@link #initialDelay()} up to {@link #maxDelay()}, with a random jitter,
+ * so that a flaky network doesn't cause a reconnection storm and sessions that were disconnected together don't reconnect together.
+ * The counter of attempts is reset only if the connection that was lost had stayed logged in for at least thirty seconds, so a connection that keeps dropping right after being established keeps backing off.
+ *
+ * @param initialDelay the non-null delay before the second attempt
+ * @param maxDelay     the non-null maximum delay between two attempts
+ * @param maxAttempts  the maximum number of consecutive attempts before the session is disconnected
+ */
+public record ReconnectPolicy(@NonNull Duration initialDelay, @NonNull Duration maxDelay, int maxAttempts) {
+    public ReconnectPolicy {
+        Validate.isTrue(!initialDelay.isNegative(), "Invalid initial delay: %s", initialDelay);
+        Validate.isTrue(maxDelay.compareTo(initialDelay) >= 0, "Invalid max delay: %s", maxDelay);
+        Validate.isTrue(maxAttempts > 0, "Invalid number of attempts: %s", maxAttempts);
+    }
+
+    /**
+     * Constructs a policy that never gives up, starting from a one second delay up to a one minute delay
+     *
+     * @return a non-null policy
+     */
+    public static ReconnectPolicy exponential() {
+        return exponential(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructs a policy that gives up after the provided number of attempts, starting from a one second delay up to a one minute delay
+     *
+     * @param maxAttempts the maximum number of consecutive attempts
+     * @return a non-null policy
+     */
+    public static ReconnectPolicy exponential(int maxAttempts) {
+        return new ReconnectPolicy(Duration.ofSeconds(1), Duration.ofMinutes(1), maxAttempts);
+    }
+
+    /**
+     * Returns the delay before the provided attempt
+     *
+     * @param attempt the number of the attempt, starting from one
+     * @return a non-null delay, or an empty optional if no more attempts should be made
+     */
+    public Optional<Duration> delay(int attempt) {
+        if (attempt > maxAttempts) {
+            return Optional.empty();
+        }
+
+        if (attempt <= 1) {
+            return Optional.of(Duration.ZERO);
+        }
+
+        // Half of the delay is fixed and half is random, so that attempts are spread out but never made back to back
+        var exponent = Math.min(attempt - 2, 30);
+        var initial = initialDelay.toMillis();
+        var max = maxDelay.toMillis();
+        var cap = initial > (max >> exponent) ? max : initial << exponent;
+        var half = cap / 2;
+        return Optional.of(Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(cap - half + 1)));
+    }
+}
@@ -92,6 +92,7 @@ public final class WebOptionsBuilder extends OptionsBuilder<WebOptionsBuilder> {
                     .keys(keys)
                     .errorHandler(errorHandler)
                     .socketExecutor(socketExecutor)
+                    .host(host)
                     .webVerificationSupport(qrHandler)
                     .build();
         }
@@ -114,6 +115,7 @@ public final class WebOptionsBuilder extends OptionsBuilder<WebOptionsBuilder> {
                     .keys(keys)
                     .errorHandler(errorHandler)
                     .socketExecutor(socketExecutor)
+                    .host(host)
                     .webVerificationSupport(pairingCodeHandler)
                     .build();
         }
@@ -139,6 +141,7 @@ public final class WebOptionsBuilder extends OptionsBuilder<WebOptionsBuilder> {
                     .keys(keys)
                     .errorHandler(errorHandler)
                     .socketExecutor(socketExecutor)
+                    .host(host)
                     .build();
         }
 
@@ -8,9 +8,7 @@ import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
 import com.google.zxing.common.HybridBinarizer;
 import com.google.zxing.qrcode.QRCodeReader;
 import it.auties.curve25519.Curve25519;
-import it.auties.linkpreview.LinkPreview;
 import it.auties.linkpreview.LinkPreviewMedia;
-import it.auties.linkpreview.LinkPreviewResult;
 import it.auties.whatsapp.binary.BinaryPatchType;
 import it.auties.whatsapp.controller.Keys;
 import it.auties.whatsapp.controller.Store;
@@ -74,6 +72,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.util.*;
@@ -98,7 +97,11 @@ public class Whatsapp {
     // This is to make sure that the instances remain in memory only as long as it's needed
     private static final Map<UUID, Whatsapp> instances = new ConcurrentHashMap<>();
 
+    // Link previews that aren't resolved within this time are skipped, the fetch keeps going in the background to populate the cache
+    private static final Duration LINK_PREVIEW_TIMEOUT = Duration.ofSeconds(2);
+
     private final SocketHandler socketHandler;
+    private final WhatsappHost host;
 
     /**
      * Checks if a connection exists
@@ -134,7 +137,7 @@ public class Whatsapp {
      * Advanced builder if you need more customization
      */
     @Builder(builderMethodName = "customBuilder")
-    private static Whatsapp builder(@NonNull Store store, @NonNull Keys keys, ErrorHandler errorHandler, WebVerificationSupport webVerificationSupport, Executor socketExecutor){
+    private static Whatsapp builder(@NonNull Store store, @NonNull Keys keys, ErrorHandler errorHandler, WebVerificationSupport webVerificationSupport, Executor socketExecutor, WhatsappHost host){
         Validate.isTrue(Objects.equals(store.uuid(), keys.uuid()),
                 "UUIDs for store and keys don't match: %s != %s", store.uuid(), keys.uuid());
         var knownInstance = instances.get(store.uuid());
@@ -143,8 +146,18 @@ public class Whatsapp {
         }
 
         var checkedSupport = getWebVerificationMethod(store, keys, webVerificationSupport);
-        var result = new Whatsapp(store, keys, errorHandler, checkedSupport, socketExecutor);
+        var result = new Whatsapp(store, keys, errorHandler, checkedSupport, socketExecutor, host);
         result.addDisconnectedListener(reason -> instances.remove(store.uuid()));
+        if(host != null){
+            host.register(result);
+            // A disconnected session still holds the resources of the host, so it's released only when it logs out
+            result.addDisconnectedListener(reason -> {
+                if(reason == DisconnectReason.LOGGED_OUT){
+                    host.unregister(result);
+                }
+            });
+        }
+
         return result;
     }
 
@@ -160,8 +173,9 @@ public class Whatsapp {
         return webVerificationSupport;
     }
 
-    private Whatsapp(@NonNull Store store, @NonNull Keys keys, ErrorHandler errorHandler, WebVerificationSupport webVerificationSupport, Executor socketExecutor) {
-        this.socketHandler = new SocketHandler(this, store, keys, errorHandler, webVerificationSupport, socketExecutor);
+    private Whatsapp(@NonNull Store store, @NonNull Keys keys, ErrorHandler errorHandler, WebVerificationSupport webVerificationSupport, Executor socketExecutor, WhatsappHost host) {
+        this.socketHandler = new SocketHandler(this, store, keys, errorHandler, webVerificationSupport, socketExecutor, host);
+        this.host = host;
         if(store.autodetectListeners()){
             return;
         }
@@ -196,6 +210,7 @@ public class Whatsapp {
      * @return a future
      */
     public synchronized CompletableFuture<Whatsapp> connect(){
+        registerOnHost();
         return socketHandler.connect()
                 .thenRunAsync(() -> instances.put(store().uuid(), this))
                 .thenApply(ignored -> this);
@@ -207,11 +222,19 @@ public class Whatsapp {
      * @return a future
      */
     public synchronized CompletableFuture<Void> connectAwaitingLogout(){
+        registerOnHost();
         return socketHandler.connect()
                 .thenRunAsync(() -> instances.put(store().uuid(), this))
                 .thenCompose(ignored -> socketHandler.logoutFuture());
     }
 
+    // A session that logged out is unregistered from its host, so it has to be registered again before it reuses the resources of the host
+    private void registerOnHost() {
+        if (host != null) {
+            host.register(this);
+        }
+    }
+
     /**
      * Returns whether the connection is active or not
      *
@@ -491,13 +514,13 @@ public class Whatsapp {
         } else if (content instanceof ButtonMessage buttonMessage) {
             return attributeButtonMessage(info, buttonMessage);
         } else if (content instanceof TextMessage textMessage) {
-            attributeTextMessage(textMessage);
+            return attributeTextMessage(textMessage);
         } else if (content instanceof PollCreationMessage pollCreationMessage) {
             attributePollCreationMessage(info, pollCreationMessage);
         } else if (content instanceof PollUpdateMessage pollUpdateMessage) {
             attributePollUpdateMessage(info, pollUpdateMessage);
         } else if (content instanceof GroupInviteMessage groupInviteMessage) {
-            attributeGroupInviteMessage(info, groupInviteMessage);
+            return attributeGroupInviteMessage(info, groupInviteMessage);
         }
 
         return CompletableFuture.completedFuture(null);
@@ -533,25 +556,20 @@ public class Whatsapp {
         info.message(info.message().unbox());
     }
 
-    private void attributeTextMessage(TextMessage textMessage) {
+    private CompletableFuture<Void> attributeTextMessage(TextMessage textMessage) {
         if (store().textPreviewSetting() == TextPreviewSetting.DISABLED) {
-            return;
-        }
-        var match = LinkPreview.createPreview(textMessage.text()).orElse(null);
-        if (match == null) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
+        return LinkPreviews.resolve(textMessage.text(), LINK_PREVIEW_TIMEOUT)
+                .thenAccept(result -> result.ifPresent(match -> attributeTextMessage(textMessage, match)));
+    }
+
+    private void attributeTextMessage(TextMessage textMessage, LinkPreviews.Preview match) {
         var uri = match.result().uri().toString();
         if (store().textPreviewSetting() == TextPreviewSetting.ENABLED_WITH_INFERENCE && !match.text()
                 .equals(uri)) {
             textMessage.text(textMessage.text().replace(match.text(), uri));
         }
-        var imageUri = match.result()
-                .images()
-                .stream()
-                .reduce(this::compareDimensions)
-                .map(LinkPreviewMedia::uri)
-                .orElse(null);
         var videoUri = match.result()
                 .videos()
                 .stream()
@@ -560,14 +578,15 @@ public class Whatsapp {
                 .orElse(null);
         textMessage.matchedText(uri);
         textMessage.canonicalUrl(Objects.requireNonNullElse(videoUri, match.result().uri()).toString());
-        textMessage.thumbnail(Medias.download(imageUri).orElse(null));
+        textMessage.thumbnail(match.thumbnail());
         textMessage.description(match.result().siteDescription());
         textMessage.title(match.result().title());
         textMessage.previewType(videoUri != null ? TextMessagePreviewType.VIDEO : TextMessagePreviewType.NONE);
     }
 
     private CompletableFuture<Void> attributeMediaMessage(MediaMessage mediaMessage) {
-        return Medias.upload(mediaMessage.decodedMedia().orElseThrow(), mediaMessage.mediaType().toAttachmentType(), store().mediaConnection())
+        return store().mediaConnectionAsync()
+                .thenComposeAsync(mediaConnection -> Medias.upload(mediaMessage.decodedMedia().orElseThrow(), mediaMessage.mediaType().toAttachmentType(), mediaConnection))
                 .thenAccept(upload -> attributeMediaMessage(mediaMessage, upload));
     }
 
@@ -647,24 +666,20 @@ public class Whatsapp {
     }
 
     // This is not needed probably, but Whatsapp uses a text message by default, so maybe it makes sense
-    private void attributeGroupInviteMessage(MessageInfo info, GroupInviteMessage groupInviteMessage) {
+    private CompletableFuture<Void> attributeGroupInviteMessage(MessageInfo info, GroupInviteMessage groupInviteMessage) {
         Validate.isTrue(groupInviteMessage.code() != null, "Invalid message code");
         var url = "https://chat.whatsapp.com/%s".formatted(groupInviteMessage.code());
-        var preview = LinkPreview.createPreview(URI.create(url))
-                .stream()
-                .map(LinkPreviewResult::images)
-                .map(Collection::stream)
-                .map(Stream::findFirst)
-                .flatMap(Optional::stream)
-                .findFirst()
-                .map(LinkPreviewMedia::uri)
-                .orElse(null);
+        return LinkPreviews.resolve(URI.create(url), LINK_PREVIEW_TIMEOUT)
+                .thenAccept(preview -> attributeGroupInviteMessage(info, groupInviteMessage, url, preview.orElse(null)));
+    }
+
+    private void attributeGroupInviteMessage(MessageInfo info, GroupInviteMessage groupInviteMessage, String url, LinkPreviews.Preview preview) {
         var replacement = TextMessage.builder()
                 .text(groupInviteMessage.caption() != null ? "%s: %s".formatted(groupInviteMessage.caption(), url) : url)
                 .description("WhatsApp Group Invite")
                 .title(groupInviteMessage.groupName())
                 .previewType(TextMessagePreviewType.NONE)
-                .thumbnail(Medias.download(preview).orElse(null))
+                .thumbnail(preview == null ? null : preview.thumbnail())
                 .matchedText(url)
                 .canonicalUrl(url)
                 .build();
@@ -716,7 +731,7 @@ public class Whatsapp {
     public CompletableFuture<MessageInfo> markRead(@NonNull MessageInfo info) {
         var type = store().findPrivacySetting(PrivacySettingType.READ_RECEIPTS)
                 .value() == PrivacySettingValue.EVERYONE ? "read" : "read-self";
-        socketHandler.sendReceipt(info.chatJid(), info.senderJid(), List.of(info.id()), type);
+        socketHandler.queueReceipt(info.chatJid(), info.senderJid(), info.id(), type);
         var count = info.chat().unreadMessagesCount();
         if (count > 0) {
             info.chat().unreadMessagesCount(count - 1);
@@ -1522,7 +1537,7 @@ public class Whatsapp {
         if (store().findPrivacySetting(PrivacySettingType.READ_RECEIPTS).value() != PrivacySettingValue.EVERYONE) {
             return CompletableFuture.completedFuture(info);
         }
-        socketHandler.sendReceipt(info.chatJid(), info.senderJid(), List.of(info.id()), "played");
+        socketHandler.queueReceipt(info.chatJid(), info.senderJid(), info.id(), "played");
         return CompletableFuture.completedFuture(info.status(MessageStatus.PLAYED));
     }
 
@@ -2441,7 +2456,8 @@ public class Whatsapp {
 
     private CompletableFuture<Void> sendHistoryProtocolMessage(ContactJid jid, HistorySync historySync, HistorySyncNotification.Type type) {
         var syncBytes = Protobuf.writeMessage(historySync);
-        return Medias.upload(syncBytes, AttachmentType.HISTORY_SYNC, store().mediaConnection())
+        return store().mediaConnectionAsync()
+                .thenComposeAsync(mediaConnection -> Medias.upload(syncBytes, AttachmentType.HISTORY_SYNC, mediaConnection))
                 .thenApplyAsync(upload -> createHistoryProtocolMessage(upload, type))
                 .thenComposeAsync(result -> socketHandler.sendPeerMessage(jid, result));
     }
@@ -2612,6 +2628,35 @@ public class Whatsapp {
                 .thenApplyAsync(result -> !result.hasNode("error"));
     }
 
+    /**
+     * Returns the delivery metrics of the registered listeners, for example how many events are waiting to be delivered
+     * Metrics are only available if an {@link EventBusSetting} was provided
+     *
+     * @return a non-null map
+     */
+    public Map<Listener, ListenerMetrics> listenerMetrics() {
+        return socketHandler.listenerMetrics();
+    }
+
+    /**
+     * Returns the metrics of the bounded maps used by this session to track message retries, pending replies and processed messages
+     * Each map holds its entries for a limited time and up to a fixed size, so these metrics can be used to tell how many entries were discarded
+     *
+     * @return a non-null map whose keys are "retries", "replies" and "processedMessages"
+     */
+    public Map<String, ExpiringMap.Metrics> trackingMetrics() {
+        return socketHandler.trackingMetrics();
+    }
+
+    /**
+     * Returns the metrics of the connections of this session, like how many times it reconnected and how long it took to be ready to send and receive messages
+     *
+     * @return a non-null metrics object
+     */
+    public ConnectionMetrics connectionMetrics() {
+        return socketHandler.connectionMetrics();
+    }
+
     /**
      * Registers a listener
      *
@@ -2631,6 +2676,7 @@ public class Whatsapp {
      */
     public Whatsapp removeListener(Listener listener) {
         store().removeListener(listener);
+        socketHandler.onListenerRemoved(listener);
         return this;
     }
 
@@ -2654,6 +2700,16 @@ public class Whatsapp {
         return addListener(onChatRecentMessages);
     }
 
+    /**
+     * Registers a listener for the recent messages of a batch of chats
+     *
+     * @param onChatsMessagesSync the listener to register
+     * @return the same instance
+     */
+    public Whatsapp addChatsMessagesSyncListener(OnChatsMessagesSync onChatsMessagesSync) {
+        return addListener(onChatsMessagesSync);
+    }
+
     /**
      * Registers a chats listener
      *
@@ -2684,6 +2740,16 @@ public class Whatsapp {
         return addListener(onContacts);
     }
 
+    /**
+     * Registers a listener for updates to a batch of contacts
+     *
+     * @param onContactsUpdate the listener to register
+     * @return the same instance
+     */
+    public Whatsapp addContactsUpdateListener(OnContactsUpdate onContactsUpdate) {
+        return addListener(onContactsUpdate);
+    }
+
     /**
      * Registers a message status listener
      *
@@ -2734,6 +2800,26 @@ public class Whatsapp {
         return addListener(onLoggedIn);
     }
 
+    /**
+     * Registers a ready to send listener
+     *
+     * @param onReadyToSend the listener to register
+     * @return the same instance
+     */
+    public Whatsapp addReadyToSendListener(OnReadyToSend onReadyToSend) {
+        return addListener(onReadyToSend);
+    }
+
+    /**
+     * Registers an initialized listener
+     *
+     * @param onInitialized the listener to register
+     * @return the same instance
+     */
+    public Whatsapp addInitializedListener(OnInitialized onInitialized) {
+        return addListener(onInitialized);
+    }
+
     /**
      * Registers a message deleted listener
      *
@@ -2874,6 +2960,16 @@ public class Whatsapp {
         return addListener(onChatRecentMessages);
     }
 
+    /**
+     * Registers a listener for the recent messages of a batch of chats
+     *
+     * @param onChatsMessagesSync the listener to register
+     * @return the same instance
+     */
+    public Whatsapp addChatsMessagesSyncListener(OnWhatsappChatsMessagesSync onChatsMessagesSync) {
+        return addListener(onChatsMessagesSync);
+    }
+
     /**
      * Registers a chats listener
      *
@@ -2904,6 +3000,16 @@ public class Whatsapp {
         return addListener(onContacts);
     }
 
+    /**
+     * Registers a listener for updates to a batch of contacts
+     *
+     * @param onContactsUpdate the listener to register
+     * @return the same instance
+     */
+    public Whatsapp addContactsUpdateListener(OnWhatsappContactsUpdate onContactsUpdate) {
+        return addListener(onContactsUpdate);
+    }
+
     /**
      * Registers a message status listener
      *
@@ -2954,6 +3060,26 @@ public class Whatsapp {
         return addListener(onLoggedIn);
     }
 
+    /**
+     * Registers a ready to send listener
+     *
+     * @param onReadyToSend the listener to register
+     * @return the same instance
+     */
+    public Whatsapp addReadyToSendListener(OnWhatsappReadyToSend onReadyToSend) {
+        return addListener(onReadyToSend);
+    }
+
+    /**
+     * Registers an initialized listener
+     *
+     * @param onInitialized the listener to register
+     * @return the same instance
+     */
+    public Whatsapp addInitializedListener(OnWhatsappInitialized onInitialized) {
+        return addListener(onInitialized);
+    }
+
     /**
      * Registers a message deleted listener
      *
@@ -0,0 +1,237 @@
+package it.auties.whatsapp.api;
+
+import it.auties.whatsapp.util.BoundedExecutor;
+import it.auties.whatsapp.util.TimerWheel;
+import it.auties.whatsapp.util.Validate;
+import lombok.Builder;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A host that runs many sessions in the same process.
+ * Without a host, every session creates its own executors and timers: sessions that use the same host share them instead.
+ * In particular:
+ * <ul>
+ *     <li>Tasks, like encoding messages and pulling app state, run on a shared pool of workers. Each session gets its own bounded queues on top of it, so a busy session cannot starve the others</li>
+ *     <li>Listeners are notified on a separate pool that grows on demand, so a listener that blocks cannot starve the workers that serve the other sessions</li>
+ *     <li>Timers, like the keep alive of the socket, are served by a single timer wheel</li>
+ *     <li>Sockets are served by threads with a small stack, which are reused when a session disconnects</li>
+ * </ul>
+ * Sessions are attached to a host using {@link OptionsBuilder#host(WhatsappHost)}.
+ * Closing the host disconnects all of its sessions.
+ */
+@SuppressWarnings("unused")
+public final class WhatsappHost implements AutoCloseable {
+    private static final int DEFAULT_MAX_SESSIONS = Integer.MAX_VALUE;
+    private static final int DEFAULT_MAX_CONCURRENCY = 4;
+    private static final int DEFAULT_MAX_QUEUED_TASKS = 10_000;
+    private static final long DEFAULT_SOCKET_STACK_SIZE = 256 * 1024;
+
+    private final ForkJoinPool workers;
+    private final TimerWheel timer;
+    private final ThreadPoolExecutor socketThreads;
+    private final ThreadPoolExecutor listenerThreads;
+    private final int maxSessions;
+    private final int maxConcurrency;
+    private final int maxQueuedTasks;
+    private final Set<Whatsapp> sessions;
+    private final Set<BoundedExecutor> executors;
+    private final LongAdder retiredRejectedTasks;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a new host
+     *
+     * @param workers         the number of threads shared by all sessions to run their tasks, by default the number of processors
+     * @param maxSessions     the maximum number of sessions that can be attached to this host, by default unlimited
+     * @param maxConcurrency  the maximum number of tasks of the same session that can run concurrently, by default four
+     * @param maxQueuedTasks  the maximum number of tasks that can be queued by each executor of a session, by default ten thousand
+     * @param socketStackSize the stack size in bytes of the threads that serve the sockets, by default 256 KiB
+     */
+    @Builder
+    private WhatsappHost(Integer workers, Integer maxSessions, Integer maxConcurrency, Integer maxQueuedTasks, Long socketStackSize) {
+        var workersCount = Objects.requireNonNullElseGet(workers, Runtime.getRuntime()::availableProcessors);
+        Validate.isTrue(workersCount > 0, "Invalid number of workers: %s", workersCount);
+        this.maxSessions = Objects.requireNonNullElse(maxSessions, DEFAULT_MAX_SESSIONS);
+        Validate.isTrue(this.maxSessions > 0, "Invalid maximum number of sessions: %s", this.maxSessions);
+        this.maxConcurrency = Objects.requireNonNullElse(maxConcurrency, DEFAULT_MAX_CONCURRENCY);
+        this.maxQueuedTasks = Objects.requireNonNullElse(maxQueuedTasks, DEFAULT_MAX_QUEUED_TASKS);
+        this.workers = new ForkJoinPool(workersCount, createWorkerFactory(), null, true);
+        this.timer = new TimerWheel(Duration.ofMillis(100), 512, this.workers);
+        this.socketThreads = createSocketThreads(Objects.requireNonNullElse(socketStackSize, DEFAULT_SOCKET_STACK_SIZE));
+        this.listenerThreads = createListenerThreads();
+        this.sessions = ConcurrentHashMap.newKeySet();
+        this.executors = ConcurrentHashMap.newKeySet();
+        this.retiredRejectedTasks = new LongAdder();
+    }
+
+    private ForkJoinPool.ForkJoinWorkerThreadFactory createWorkerFactory() {
+        var counter = new AtomicInteger();
+        return pool -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("whatsapp-host-worker-%s".formatted(counter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private ThreadPoolExecutor createSocketThreads(long stackSize) {
+        var counter = new AtomicInteger();
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            var thread = new Thread(null, runnable, "whatsapp-host-socket-%s".formatted(counter.incrementAndGet()), stackSize);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private ThreadPoolExecutor createListenerThreads() {
+        var counter = new AtomicInteger();
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            var thread = new Thread(runnable, "whatsapp-host-listener-%s".formatted(counter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Sessions are tracked by instance, as the uuid of a session changes when it's restored
+    synchronized void register(@NonNull Whatsapp whatsapp) {
+        Validate.isTrue(!closed, "Cannot register a session on a closed host", IllegalStateException.class);
+        if (sessions.contains(whatsapp)) {
+            return;
+        }
+
+        Validate.isTrue(sessions.size() < maxSessions, "Cannot host more than %s sessions", IllegalStateException.class, maxSessions);
+        sessions.add(whatsapp);
+    }
+
+    void unregister(@NonNull Whatsapp whatsapp) {
+        sessions.remove(whatsapp);
+    }
+
+    /**
+     * Returns the executor used to run the sockets of the sessions
+     * The executor cannot be shutdown by the sessions
+     *
+     * @return a non-null executor
+     */
+    public Executor socketExecutor() {
+        return socketThreads::execute;
+    }
+
+    /**
+     * Creates an executor for a task of a session that shares the workers of this host
+     *
+     * @param serial whether the tasks should be executed one at a time, in the order they were submitted
+     * @return a non-null executor service
+     */
+    public ExecutorService newSessionExecutor(boolean serial) {
+        var executor = new BoundedExecutor(workers, serial ? 1 : maxConcurrency, maxQueuedTasks);
+        executors.add(executor);
+        return executor;
+    }
+
+    /**
+     * Creates an executor to notify the listeners of a session
+     * Listeners may block, so their tasks run on threads that are created on demand instead of the shared workers
+     *
+     * @return a non-null executor service
+     */
+    public ExecutorService newListenerExecutor() {
+        var executor = new BoundedExecutor(listenerThreads, maxConcurrency, maxQueuedTasks);
+        executors.add(executor);
+        return executor;
+    }
+
+    /**
+     * Returns the timer wheel shared by the sessions of this host
+     *
+     * @return a non-null timer wheel
+     */
+    public TimerWheel timer() {
+        return timer;
+    }
+
+    /**
+     * Returns the sessions attached to this host
+     *
+     * @return a non-null collection
+     */
+    public Collection<Whatsapp> sessions() {
+        return Collections.unmodifiableCollection(sessions);
+    }
+
+    /**
+     * Returns the metrics of this host, aggregated across all of its sessions
+     *
+     * @return a non-null metrics object
+     */
+    public Metrics metrics() {
+        var queuedTasks = 0L;
+        var rejectedTasks = 0L;
+        for (var executor : executors) {
+            // The executors of the sessions that were disposed are dropped, but their rejected tasks still count
+            if (executor.isTerminated() && executors.remove(executor)) {
+                retiredRejectedTasks.add(executor.rejected());
+                continue;
+            }
+
+            queuedTasks += executor.queued();
+            rejectedTasks += executor.rejected();
+        }
+
+        rejectedTasks += retiredRejectedTasks.sum();
+
+        var connected = (int) sessions.stream()
+                .filter(Whatsapp::isConnected)
+                .count();
+        return new Metrics(sessions.size(), connected, workers.getActiveThreadCount(), socketThreads.getPoolSize(), queuedTasks, rejectedTasks, timer.pending());
+    }
+
+    /**
+     * Disconnects all the sessions attached to this host and releases its threads
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            this.closed = true;
+        }
+
+        var disconnections = sessions.stream()
+                .map(Whatsapp::disconnect)
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(disconnections)
+                .exceptionally(ignored -> null)
+                .join();
+        sessions.clear();
+        executors.forEach(BoundedExecutor::shutdownNow);
+        executors.clear();
+        timer.close();
+        workers.shutdown();
+        socketThreads.shutdown();
+        listenerThreads.shutdown();
+    }
+
+    /**
+     * A model class that describes the resources used by a host
+     *
+     * @param sessions          the number of sessions attached to the host
+     * @param connectedSessions the number of sessions that are connected
+     * @param activeWorkers     the number of shared workers that are running a task
+     * @param socketThreads     the number of threads that serve the sockets
+     * @param queuedTasks       the number of tasks that are waiting for a shared worker
+     * @param rejectedTasks     the number of tasks that were rejected because a session exceeded its queue
+     * @param pendingTimers     the number of timers that are waiting to expire
+     */
+    public record Metrics(int sessions, int connectedSessions, int activeWorkers, int socketThreads, long queuedTasks, long rejectedTasks, int pendingTimers) {
+
+    }
+}
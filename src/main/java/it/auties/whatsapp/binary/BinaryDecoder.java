@@ -2,14 +2,13 @@ package it.auties.whatsapp.binary;
 
 import io.netty.buffer.ByteBuf;
 import it.auties.whatsapp.model.contact.ContactJid;
+import it.auties.whatsapp.model.exchange.Attributes;
 import it.auties.whatsapp.model.exchange.Node;
 import it.auties.whatsapp.util.BytesHelper;
 import it.auties.whatsapp.util.Validate;
 
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.IntStream;
 
 import static it.auties.whatsapp.binary.BinaryTag.*;
@@ -147,13 +146,14 @@ public final class BinaryDecoder {
         return LIST_8.contentEquals(token) ? buffer.readUnsignedByte() : buffer.readUnsignedShort();
     }
 
-    private Map<String, Object> readAttributes(int size) {
-        var map = new HashMap<String, Object>();
-        for (var pair = size - 1; pair > 1; pair -= 2) {
-            var key = readString();
-            var value = read(true);
-            map.put(key, value);
+    private Attributes readAttributes(int size) {
+        var count = (size - 1) / 2;
+        var keys = new String[count];
+        var values = new Object[count];
+        for (var index = 0; index < count; index++) {
+            keys[index] = readString();
+            values[index] = read(true);
         }
-        return map;
+        return Attributes.ofDecoded(keys, values);
     }
 }
\ No newline at end of file
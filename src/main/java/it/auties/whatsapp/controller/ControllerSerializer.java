@@ -108,6 +108,27 @@ public interface ControllerSerializer {
      */
     void deleteSession(@NonNull Controller<?> controller);
 
+    /**
+     * Records a change to the signal state held by a {@link Keys} instance, so that it survives a crash without serializing all the keys again.
+     * Serializers that can't append changes incrementally can ignore this call: the change will be persisted by the next call to {@link #serializeKeys(Keys, boolean)}.
+     *
+     * @param keys   the non-null keys that changed
+     * @param change the non-null change
+     */
+    default void appendKeys(@NonNull Keys keys, @NonNull KeysChange change) {
+
+    }
+
+    /**
+     * Releases the resources held for a {@link Keys} instance, like open files, after it was serialized for the last time.
+     * Serializers that don't hold any resource can ignore this call.
+     *
+     * @param keys the non-null keys that were disposed
+     */
+    default void closeKeys(@NonNull Keys keys) {
+
+    }
+
     /**
      * Creates a link between the session and its metadata, usually phone number and alias
      *
@@ -16,6 +16,7 @@ import java.io.UncheckedIOException;
 import java.lang.System.Logger;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileTime;
 import java.util.*;
@@ -33,15 +34,20 @@ import static java.lang.System.Logger.Level.WARNING;
  * The default serializer
  * It uses smile to serialize all the data locally
  * The store and the keys are decoded synchronously, but the store's chat are decoded asynchronously to save time
+ * Changes to the signal state of the keys are appended to a journal as they happen, and the journal is compacted into the keys file periodically
  */
 public class DefaultControllerSerializer implements ControllerSerializer {
     private static final Path DEFAULT_DIRECTORY = Path.of(System.getProperty("user.home") + "/.whatsapp4j/");
     private static final String CHAT_PREFIX = "chat_";
+    private static final long KEYS_JOURNAL_COMPACTION_THRESHOLD = 4 * 1024 * 1024;
     private static final ControllerSerializer DEFAULT_SERIALIZER = new DefaultControllerSerializer();
 
     private final Path baseDirectory;
     private final Logger logger;
     private final Map<UUID, CompletableFuture<Void>> attributeStoreSerializers;
+    private final FsyncPolicy fsyncPolicy;
+    private final Map<UUID, KeysJournal> keysJournals;
+    private final Set<UUID> compactingKeys;
     private LinkedList<UUID> cachedUuids;
     private LinkedList<PhoneNumber> cachedPhoneNumbers;
 
@@ -62,9 +68,22 @@ public class DefaultControllerSerializer implements ControllerSerializer {
      * @param baseDirectory the non-null directory where data will be serialized
      */
     public DefaultControllerSerializer(@NonNull Path baseDirectory) {
+        this(baseDirectory, FsyncPolicy.PERIODIC);
+    }
+
+    /**
+     * Creates a provider using the specified path and fsync policy
+     *
+     * @param baseDirectory the non-null directory where data will be serialized
+     * @param fsyncPolicy   the non-null policy used to force changes to the signal state to the storage device
+     */
+    public DefaultControllerSerializer(@NonNull Path baseDirectory, @NonNull FsyncPolicy fsyncPolicy) {
         this.baseDirectory = baseDirectory;
         this.logger = System.getLogger("DefaultSerializer");
         this.attributeStoreSerializers = new ConcurrentHashMap<>();
+        this.fsyncPolicy = fsyncPolicy;
+        this.keysJournals = new ConcurrentHashMap<>();
+        this.compactingKeys = ConcurrentHashMap.newKeySet();
         try {
             Files.createDirectories(baseDirectory);
             Validate.isTrue(Files.isDirectory(baseDirectory), "Expected a directory as base path: %s", baseDirectory);
@@ -134,9 +153,40 @@ public class DefaultControllerSerializer implements ControllerSerializer {
             cachedUuids.add(keys.uuid());
         }
 
+        writeKeys(keys, async);
+    }
+
+    // The journal is rotated before the snapshot is taken, so every segment up to the returned index is covered by it
+    private CompletableFuture<Void> writeKeys(Keys keys, boolean async) {
+        var journal = getKeysJournal(keys);
+        var covered = journal.rotate();
         var path = getSessionFile(keys.clientType(), keys.uuid().toString(), "keys.smile");
         var preferences = SmileFile.of(path);
-        preferences.write(keys, async);
+        return preferences.write(keys, async, () -> journal.deleteUpTo(covered));
+    }
+
+    @Override
+    public void appendKeys(@NonNull Keys keys, @NonNull KeysChange change) {
+        var journal = getKeysJournal(keys);
+        journal.append(change);
+        if (journal.size() < KEYS_JOURNAL_COMPACTION_THRESHOLD || !compactingKeys.add(keys.uuid())) {
+            return;
+        }
+
+        writeKeys(keys, true).whenComplete((ignored, throwable) -> compactingKeys.remove(keys.uuid()));
+    }
+
+    // The journal is opened again if the keys change after being disposed
+    @Override
+    public void closeKeys(@NonNull Keys keys) {
+        var journal = keysJournals.remove(keys.uuid());
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private KeysJournal getKeysJournal(Keys keys) {
+        return keysJournals.computeIfAbsent(keys.uuid(), ignored -> new KeysJournal(getSessionDirectory(keys.clientType(), keys.uuid().toString()), fsyncPolicy));
     }
 
     @Override
@@ -212,7 +262,9 @@ public class DefaultControllerSerializer implements ControllerSerializer {
     private Optional<Keys> deserializeKeysFromId(ClientType type, String id) {
         var path = getSessionFile(type, id, "keys.smile");
         var preferences = SmileFile.of(path);
-        return preferences.read(Keys.class);
+        var result = preferences.read(Keys.class);
+        result.ifPresent(keys -> KeysJournal.read(getSessionDirectory(type, id)).forEach(keys::applyChange));
+        return result;
     }
 
     @Override
@@ -278,6 +330,11 @@ public class DefaultControllerSerializer implements ControllerSerializer {
 
     @Override
     public void deleteSession(@NonNull Controller<?> controller) {
+        var journal = keysJournals.remove(controller.uuid());
+        if (journal != null) {
+            journal.close();
+        }
+
         var folderPath = getSessionDirectory(controller.clientType(), controller.uuid().toString());
         deleteDirectory(folderPath.toFile());
         var phoneNumber = controller.phoneNumber().orElse(null);
@@ -427,12 +484,20 @@ public class DefaultControllerSerializer implements ControllerSerializer {
         }
 
         private CompletableFuture<Void> write(Object input, boolean async) {
+            return write(input, async, () -> {});
+        }
+
+        private CompletableFuture<Void> write(Object input, boolean async, Runnable onWritten) {
             if (!async) {
                 writeSync(input);
+                onWritten.run();
                 return CompletableFuture.completedFuture(null);
             }
 
-            return CompletableFuture.runAsync(() -> writeSync(input)).exceptionallyAsync(throwable -> {
+            return CompletableFuture.runAsync(() -> {
+                writeSync(input);
+                onWritten.run();
+            }).exceptionallyAsync(throwable -> {
                 logger.log(ERROR, "Cannot serialize smile file", throwable);
                 return null;
             });
@@ -448,8 +513,12 @@ public class DefaultControllerSerializer implements ControllerSerializer {
                 try (var byteArrayOutputStream = new ByteArrayOutputStream()) {
                     try (var stream = new GZIPOutputStream(byteArrayOutputStream)) {
                         Smile.writeValueAsBytes(stream, input);
-                        Files.write(file, byteArrayOutputStream.toByteArray());
                     }
+
+                    // Replace the file atomically, so that a crash while writing never leaves a truncated file behind
+                    var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+                    Files.write(temporary, byteArrayOutputStream.toByteArray());
+                    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
                 }
             } catch (IOException exception) {
                 throw new UncheckedIOException("Cannot complete file write", exception);
@@ -0,0 +1,25 @@
+package it.auties.whatsapp.controller;
+
+/**
+ * The constants of this enumerated type describe when the changes appended to the keys journal of {@link DefaultControllerSerializer} are forced to the storage device.
+ * Changes are always handed to the operating system before the call that caused them returns, so they survive a crash of the process regardless of this policy.
+ */
+public enum FsyncPolicy {
+    /**
+     * Changes are never forced: the operating system decides when they reach the storage device.
+     * A power loss can discard the most recent changes
+     */
+    NEVER,
+
+    /**
+     * Changes are forced at most once per second.
+     * A power loss can discard up to a second of changes
+     */
+    PERIODIC,
+
+    /**
+     * Every batch of changes is forced before the calls that appended it return.
+     * Concurrent changes share the same force, but this policy is still noticeably slower on most devices
+     */
+    ALWAYS
+}
@@ -15,8 +15,11 @@ import it.auties.whatsapp.model.signal.sender.SenderKeyName;
 import it.auties.whatsapp.model.signal.sender.SenderKeyRecord;
 import it.auties.whatsapp.model.signal.session.Session;
 import it.auties.whatsapp.model.signal.session.SessionAddress;
+import it.auties.whatsapp.model.signal.session.SessionState;
+import it.auties.whatsapp.model.signal.session.SkippedMessageKeys;
 import it.auties.whatsapp.model.sync.AppStateSyncKey;
 import it.auties.whatsapp.model.sync.LTHashState;
+import io.netty.util.collection.IntObjectHashMap;
 import it.auties.whatsapp.util.BytesHelper;
 import it.auties.whatsapp.util.KeyHelper;
 import it.auties.whatsapp.util.Spec;
@@ -31,6 +34,7 @@ import lombok.extern.jackson.Jacksonized;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.Objects.requireNonNullElseGet;
@@ -91,11 +95,24 @@ public final class Keys extends Controller<Keys> {
     private long signedKeyIndexTimestamp;
 
     /**
-     * Whether these keys have generated pre keys assigned to them
+     * The pre keys that were uploaded to the server and were not used yet
      */
     @Default
     @NonNull
-    private ArrayList<SignalPreKeyPair> preKeys = new ArrayList<>();
+    private CopyOnWriteArrayList<SignalPreKeyPair> preKeys = new CopyOnWriteArrayList<>();
+
+    /**
+     * The id of the last pre key that was generated, pre keys that were used are deleted so their ids must not be reused
+     */
+    @Default
+    private int lastPreKeyId = 0;
+
+    /**
+     * The pre keys indexed by id, built lazily from {@link #preKeys}
+     */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    private IntObjectHashMap<SignalPreKeyPair> preKeysIndex;
 
     /**
      * The companion secret key
@@ -445,6 +462,16 @@ public final class Keys extends Controller<Keys> {
         return !preKeys.isEmpty();
     }
 
+    private IntObjectHashMap<SignalPreKeyPair> preKeysIndex() {
+        if (preKeysIndex == null) {
+            var index = new IntObjectHashMap<SignalPreKeyPair>(Math.max(preKeys.size(), 8));
+            preKeys.forEach(preKey -> index.put(preKey.id(), preKey));
+            this.preKeysIndex = index;
+        }
+
+        return preKeysIndex;
+    }
+
     /**
      * Queries the first {@link SenderKeyRecord} that matches {@code name}
      *
@@ -469,6 +496,25 @@ public final class Keys extends Controller<Keys> {
         return Optional.ofNullable(sessions.get(address));
     }
 
+    /**
+     * Returns how many message keys that were derived ahead of their messages are held by the sessions and sender keys
+     *
+     * @return a non-null metrics object
+     */
+    public SkippedMessageKeys.Metrics skippedMessageKeysMetrics() {
+        var sessionKeys = sessions.values()
+                .stream()
+                .map(Session::states)
+                .flatMap(Collection::stream)
+                .mapToLong(SessionState::skippedMessageKeysCount)
+                .sum();
+        var senderKeysCount = senderKeys.values()
+                .stream()
+                .mapToLong(SenderKeyRecord::skippedMessageKeysCount)
+                .sum();
+        return new SkippedMessageKeys.Metrics(sessionKeys + senderKeysCount, SkippedMessageKeys.evicted());
+    }
+
     /**
      * Queries the trusted key that matches {@code id}
      *
@@ -486,8 +532,8 @@ public final class Keys extends Controller<Keys> {
      * @param id the non-null id to search
      * @return a non-null pre key
      */
-    public Optional<SignalPreKeyPair> findPreKeyById(Integer id) {
-        return id == null ? Optional.empty() : preKeys.stream().filter(preKey -> preKey.id() == id).findFirst();
+    public synchronized Optional<SignalPreKeyPair> findPreKeyById(Integer id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(preKeysIndex().get(id));
     }
 
     /**
@@ -546,6 +592,21 @@ public final class Keys extends Controller<Keys> {
      */
     public Keys putSession(@NonNull SessionAddress address, @NonNull Session record) {
         sessions.put(address, record);
+        appendChange(KeysChange.Type.SESSION, address.toString(), record);
+        return this;
+    }
+
+    /**
+     * Adds the provided name and record to the known sender keys
+     * As records are mutable, this method should also be called after a record is changed so that the change is persisted
+     *
+     * @param name   the non-null name
+     * @param record the non-null record
+     * @return this
+     */
+    public Keys putSenderKey(@NonNull SenderKeyName name, @NonNull SenderKeyRecord record) {
+        senderKeys.put(name, record);
+        appendChange(KeysChange.Type.SENDER_KEY, name.toString(), record);
         return this;
     }
 
@@ -557,10 +618,15 @@ public final class Keys extends Controller<Keys> {
      * @return this
      */
     public Keys putState(@NonNull ContactJid device, @NonNull LTHashState state) {
+        putStateDirect(device, state);
+        appendChange(KeysChange.Type.HASH_STATE, device.toString(), state);
+        return this;
+    }
+
+    private void putStateDirect(ContactJid device, LTHashState state) {
         var oldData = Objects.requireNonNullElseGet(hashStates.get(device), HashMap<BinaryPatchType, LTHashState>::new);
         oldData.put(state.name(), state);
         hashStates.put(device, oldData);
-        return this;
     }
 
     /**
@@ -600,11 +666,66 @@ public final class Keys extends Controller<Keys> {
      * @param preKey the key to add
      * @return this
      */
-    public Keys addPreKey(SignalPreKeyPair preKey) {
-        preKeys.add(preKey);
+    public Keys addPreKey(@NonNull SignalPreKeyPair preKey) {
+        addPreKeyDirect(preKey);
+        appendChange(KeysChange.Type.PRE_KEY, String.valueOf(preKey.id()), preKey);
         return this;
     }
 
+    private synchronized void addPreKeyDirect(SignalPreKeyPair preKey) {
+        if (preKeysIndex().put(preKey.id(), preKey) == null) {
+            preKeys.add(preKey);
+        }
+
+        this.lastPreKeyId = Math.max(lastPreKeyId, preKey.id());
+    }
+
+    /**
+     * Removes a pre key after it was used to establish a session, as the server never hands out the same pre key twice
+     *
+     * @param id the id of the pre key
+     * @return whether a pre key was removed
+     */
+    public boolean removePreKey(int id) {
+        if (!removePreKeyDirect(id)) {
+            return false;
+        }
+
+        appendChange(KeysChange.Type.CONSUMED_PRE_KEY, String.valueOf(id), id);
+        return true;
+    }
+
+    private synchronized boolean removePreKeyDirect(int id) {
+        var removed = preKeysIndex().remove(id);
+        if (removed == null) {
+            return false;
+        }
+
+        preKeys.remove(removed);
+        return true;
+    }
+
+    private void appendChange(KeysChange.Type type, String key, Object value) {
+        if (serializer != null) {
+            serializer.appendKeys(this, new KeysChange(type, key, value));
+        }
+    }
+
+    /**
+     * Applies a change that was read back from a journal, without journaling it again
+     *
+     * @param change the non-null change
+     */
+    void applyChange(@NonNull KeysChange change) {
+        switch (change.type()) {
+            case SESSION -> sessions.put(SessionAddress.of(change.key()), (Session) change.value());
+            case SENDER_KEY -> senderKeys.put(SenderKeyName.of(change.key()), (SenderKeyRecord) change.value());
+            case HASH_STATE -> putStateDirect(ContactJid.of(change.key()), (LTHashState) change.value());
+            case PRE_KEY -> addPreKeyDirect((SignalPreKeyPair) change.value());
+            case CONSUMED_PRE_KEY -> removePreKeyDirect((Integer) change.value());
+        }
+    }
+
     /**
      * Returns write counter
      *
@@ -630,8 +751,13 @@ public final class Keys extends Controller<Keys> {
      *
      * @return an integer
      */
-    public int lastPreKeyId() {
-        return preKeys.isEmpty() ? 0 : preKeys.get(preKeys.size() - 1).id();
+    public synchronized int lastPreKeyId() {
+        // Sessions serialized before this counter was introduced only have their pre keys
+        var lastKnownId = preKeys.stream()
+                .mapToInt(SignalPreKeyPair::id)
+                .max()
+                .orElse(0);
+        return Math.max(lastPreKeyId, lastKnownId);
     }
 
     @JsonSetter
@@ -673,6 +799,7 @@ public final class Keys extends Controller<Keys> {
     @Override
     public void dispose() {
         serialize(false);
+        serializer.closeKeys(this);
     }
 
     @Override
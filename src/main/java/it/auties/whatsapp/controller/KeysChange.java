@@ -0,0 +1,63 @@
+package it.auties.whatsapp.controller;
+
+import it.auties.whatsapp.model.signal.keypair.SignalPreKeyPair;
+import it.auties.whatsapp.model.signal.sender.SenderKeyRecord;
+import it.auties.whatsapp.model.signal.session.Session;
+import it.auties.whatsapp.model.sync.LTHashState;
+import lombok.NonNull;
+
+/**
+ * A model class that represents a change to the signal state held by {@link Keys}
+ * Changes hold the whole new value of the entry, so applying the same change more than once is harmless
+ *
+ * @param type  the type of the entry that changed
+ * @param key   the serialized key of the entry
+ * @param value the new value of the entry
+ */
+public record KeysChange(@NonNull Type type, @NonNull String key, @NonNull Object value) {
+    public KeysChange {
+        if (!type.valueType().isInstance(value)) {
+            throw new IllegalArgumentException("Expected a value of type %s for %s, got %s".formatted(type.valueType().getName(), type, value.getClass().getName()));
+        }
+    }
+
+    /**
+     * The type of entry that changed
+     */
+    public enum Type {
+        /**
+         * A signal session, keyed by its address
+         */
+        SESSION(Session.class),
+
+        /**
+         * A sender key record, keyed by its name
+         */
+        SENDER_KEY(SenderKeyRecord.class),
+
+        /**
+         * An app state hash state, keyed by the jid of its device
+         */
+        HASH_STATE(LTHashState.class),
+
+        /**
+         * A pre key, keyed by its id
+         */
+        PRE_KEY(SignalPreKeyPair.class),
+
+        /**
+         * A pre key that was used to establish a session and was deleted, keyed by its id
+         */
+        CONSUMED_PRE_KEY(Integer.class);
+
+        private final Class<?> valueType;
+
+        Type(Class<?> valueType) {
+            this.valueType = valueType;
+        }
+
+        public Class<?> valueType() {
+            return valueType;
+        }
+    }
+}
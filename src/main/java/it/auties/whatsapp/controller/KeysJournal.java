@@ -0,0 +1,360 @@
+package it.auties.whatsapp.controller;
+
+import it.auties.whatsapp.util.Smile;
+import it.auties.whatsapp.util.TimerWheel;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+// An append-only log of the changes to the signal state of a session, split in numbered segments next to the keys snapshot
+// Each frame is made of the length of the payload, its crc and the payload: a torn frame at the end of a segment is ignored when replaying
+// Writers that append concurrently share the same write, and the same force, as the first of them that gets the lock writes everything that is queued
+// With the periodic policy, changes that weren't forced by a later append are forced by a timer at the end of the interval
+final class KeysJournal implements Closeable {
+    private static final String SEGMENT_PREFIX = "keys.wal.";
+    private static final int FRAME_HEADER_LENGTH = Integer.BYTES * 2;
+    private static final long PERIODIC_FORCE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final Path directory;
+    private final FsyncPolicy policy;
+    private final ReentrantLock queueLock;
+    private final ReentrantLock writeLock;
+    private List<byte[]> queue;
+    private long appended;
+    private long written;
+    private int segment;
+    private FileChannel channel;
+    private long segmentSize;
+    private long lastForce;
+    private boolean unforced;
+    private TimerWheel.Timeout forceTimeout;
+
+    KeysJournal(Path directory, FsyncPolicy policy) {
+        this.directory = directory;
+        this.policy = policy;
+        this.queueLock = new ReentrantLock();
+        this.writeLock = new ReentrantLock();
+        this.queue = new ArrayList<>();
+        // Never append to a segment written by a previous process: its tail might be torn
+        this.segment = listSegments(directory).stream()
+                .mapToInt(KeysJournal::parseSegmentIndex)
+                .max()
+                .orElse(-1) + 1;
+        this.lastForce = System.nanoTime();
+    }
+
+    void append(KeysChange change) {
+        var frame = encodeFrame(change);
+        long sequence;
+        queueLock.lock();
+        try {
+            queue.add(frame);
+            sequence = ++appended;
+        } finally {
+            queueLock.unlock();
+        }
+
+        commit(sequence);
+    }
+
+    private void commit(long sequence) {
+        writeLock.lock();
+        try {
+            if (written >= sequence) {
+                return;
+            }
+
+            writeQueued();
+            if (shouldForce()) {
+                force();
+            } else if (policy == FsyncPolicy.PERIODIC) {
+                scheduleForce();
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot append to keys journal", exception);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void writeQueued() throws IOException {
+        List<byte[]> frames;
+        long sequence;
+        queueLock.lock();
+        try {
+            frames = queue;
+            sequence = appended;
+            this.queue = new ArrayList<>();
+        } finally {
+            queueLock.unlock();
+        }
+
+        if (frames.isEmpty()) {
+            return;
+        }
+
+        var buffers = frames.stream()
+                .map(ByteBuffer::wrap)
+                .toArray(ByteBuffer[]::new);
+        var channel = openSegment();
+        var remaining = frames.stream().mapToLong(frame -> frame.length).sum();
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+
+        this.segmentSize = channel.size();
+        this.written = sequence;
+        this.unforced = true;
+    }
+
+    private boolean shouldForce() {
+        return switch (policy) {
+            case NEVER -> false;
+            case PERIODIC -> System.nanoTime() - lastForce >= PERIODIC_FORCE_INTERVAL;
+            case ALWAYS -> true;
+        };
+    }
+
+    private void force() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+        }
+
+        this.lastForce = System.nanoTime();
+        this.unforced = false;
+        cancelForce();
+    }
+
+    private void scheduleForce() {
+        if (forceTimeout != null) {
+            return;
+        }
+
+        var delay = Math.max(0, lastForce + PERIODIC_FORCE_INTERVAL - System.nanoTime());
+        this.forceTimeout = TimerWheel.shared().schedule(this::onForceTimeout, Duration.ofNanos(delay));
+    }
+
+    private void cancelForce() {
+        if (forceTimeout != null) {
+            forceTimeout.cancel();
+            this.forceTimeout = null;
+        }
+    }
+
+    private void onForceTimeout() {
+        writeLock.lock();
+        try {
+            this.forceTimeout = null;
+            if (unforced) {
+                force();
+            }
+        } catch (IOException ignored) {
+            // The changes will be forced by the next append or when the segment is closed
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private FileChannel openSegment() throws IOException {
+        if (channel == null) {
+            Files.createDirectories(directory);
+            this.channel = FileChannel.open(getSegmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            this.segmentSize = channel.size();
+        }
+
+        return channel;
+    }
+
+    /**
+     * Returns the size of the segment that is being written
+     */
+    long size() {
+        writeLock.lock();
+        try {
+            return segmentSize;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the current segment, so that the changes appended from now on are written to a new one
+     *
+     * @return the index of the last segment whose changes are all older than the rotation
+     */
+    int rotate() {
+        writeLock.lock();
+        try {
+            writeQueued();
+            closeSegment();
+            return segment++;
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot rotate keys journal", exception);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes all the segments up to the provided index, included
+     */
+    void deleteUpTo(int index) {
+        for (var path : listSegments(directory)) {
+            if (parseSegmentIndex(path) > index) {
+                continue;
+            }
+
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException exception) {
+                throw new UncheckedIOException("Cannot delete keys journal segment %s".formatted(path), exception);
+            }
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        if (channel == null) {
+            return;
+        }
+
+        if (policy != FsyncPolicy.NEVER) {
+            force();
+        }
+
+        cancelForce();
+        channel.close();
+        this.channel = null;
+        this.segmentSize = 0;
+    }
+
+    @Override
+    public void close() {
+        writeLock.lock();
+        try {
+            writeQueued();
+            closeSegment();
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot close keys journal", exception);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Path getSegmentPath(int index) {
+        return directory.resolve(SEGMENT_PREFIX + index);
+    }
+
+    /**
+     * Reads all the changes stored in a directory, from the oldest to the newest
+     */
+    static List<KeysChange> read(Path directory) {
+        var results = new ArrayList<KeysChange>();
+        for (var path : listSegments(directory)) {
+            readSegment(path, results);
+        }
+
+        return results;
+    }
+
+    private static void readSegment(Path path, List<KeysChange> results) {
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (true) {
+                var frame = readFrame(input);
+                if (frame.isEmpty()) {
+                    return;
+                }
+
+                results.add(decodeChange(frame.get()));
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot read keys journal segment %s".formatted(path), exception);
+        }
+    }
+
+    private static Optional<byte[]> readFrame(DataInputStream input) throws IOException {
+        try {
+            var length = input.readInt();
+            var checksum = input.readInt();
+            if (length < 0) {
+                return Optional.empty();
+            }
+
+            var payload = input.readNBytes(length);
+            if (payload.length != length || computeChecksum(payload) != checksum) {
+                return Optional.empty();
+            }
+
+            return Optional.of(payload);
+        } catch (EOFException exception) {
+            return Optional.empty();
+        }
+    }
+
+    private static byte[] encodeFrame(KeysChange change) {
+        try {
+            var payload = new ByteArrayOutputStream();
+            var output = new DataOutputStream(payload);
+            output.writeByte(change.type().ordinal());
+            output.writeUTF(change.key());
+            output.write(Smile.writeValueAsBytes(change.value()));
+            var bytes = payload.toByteArray();
+            return ByteBuffer.allocate(FRAME_HEADER_LENGTH + bytes.length)
+                    .putInt(bytes.length)
+                    .putInt(computeChecksum(bytes))
+                    .put(bytes)
+                    .array();
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot encode keys change", exception);
+        }
+    }
+
+    private static KeysChange decodeChange(byte[] payload) throws IOException {
+        var input = new DataInputStream(new ByteArrayInputStream(payload));
+        var type = KeysChange.Type.values()[input.readUnsignedByte()];
+        var key = input.readUTF();
+        var value = Smile.readValue(input.readAllBytes(), type.valueType());
+        return new KeysChange(type, key, value);
+    }
+
+    private static int computeChecksum(byte[] payload) {
+        var crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static List<Path> listSegments(Path directory) {
+        if (Files.notExists(directory)) {
+            return List.of();
+        }
+
+        try (var walker = Files.list(directory)) {
+            return walker.filter(entry -> entry.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(entry -> parseSegmentIndex(entry) >= 0)
+                    .sorted(Comparator.comparingInt(KeysJournal::parseSegmentIndex))
+                    .toList();
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot list keys journal segments", exception);
+        }
+    }
+
+    private static int parseSegmentIndex(Path path) {
+        try {
+            return Integer.parseInt(path.getFileName().toString().substring(SEGMENT_PREFIX.length()));
+        } catch (NumberFormatException exception) {
+            return -1;
+        }
+    }
+}
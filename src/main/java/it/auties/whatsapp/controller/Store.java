@@ -2,6 +2,8 @@ package it.auties.whatsapp.controller;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import it.auties.whatsapp.api.ClientType;
+import it.auties.whatsapp.api.EventBusSetting;
+import it.auties.whatsapp.api.ReconnectPolicy;
 import it.auties.whatsapp.api.TextPreviewSetting;
 import it.auties.whatsapp.api.WebHistoryLength;
 import it.auties.whatsapp.crypto.AesGcm;
@@ -15,6 +17,7 @@ import it.auties.whatsapp.model.companion.CompanionDevice;
 import it.auties.whatsapp.model.contact.Contact;
 import it.auties.whatsapp.model.contact.ContactJid;
 import it.auties.whatsapp.model.contact.ContactJidProvider;
+import it.auties.whatsapp.model.contact.ContactStatus;
 import it.auties.whatsapp.model.exchange.Node;
 import it.auties.whatsapp.model.exchange.Request;
 import it.auties.whatsapp.model.info.ContextInfo;
@@ -140,6 +143,42 @@ public final class Store extends Controller<Store> {
     @Setter
     private String businessEmail;
 
+    /**
+     * The setting used to deliver events to listeners in order, if any
+     *
+     * @return an optional
+     */
+    public Optional<EventBusSetting> eventBusSetting(){
+        return Optional.ofNullable(eventBusSetting);
+    }
+
+    /**
+     * Returns the timer wheel used to schedule the periodic and delayed work of this session
+     *
+     * @return a non-null timer wheel
+     */
+    public TimerWheel timer(){
+        return Objects.requireNonNullElseGet(timer, TimerWheel::shared);
+    }
+
+    /**
+     * Returns whether a timer wheel was explicitly set for this session
+     *
+     * @return a boolean
+     */
+    public boolean hasTimer(){
+        return timer != null;
+    }
+
+    /**
+     * Returns the policy used to reconnect this session when the connection is lost
+     *
+     * @return a non-null policy
+     */
+    public ReconnectPolicy reconnectPolicy(){
+        return Objects.requireNonNullElseGet(reconnectPolicy, ReconnectPolicy::exponential);
+    }
+
     /**
      * The category of this account, if it's a business account
      */
@@ -261,11 +300,13 @@ public final class Store extends Controller<Store> {
 
     /**
      * The non-null list of replies waiting to be fulfilled
+     * Replies that don't arrive within a day, or that are pushed out by newer ones, are completed exceptionally
      */
     @NonNull
     @JsonIgnore
     @Default
-    private ConcurrentHashMap<String, CompletableFuture<MessageInfo>> replyHandlers = new ConcurrentHashMap<>();
+    private ExpiringMap<String, CompletableFuture<MessageInfo>> replyHandlers = new ExpiringMap<>(Duration.ofDays(1), 1024, TimerWheel.shared(),
+            (id, future) -> future.completeExceptionally(new TimeoutException("No reply received for message %s".formatted(id))));
 
     /**
      * The non-null list of listeners
@@ -275,6 +316,14 @@ public final class Store extends Controller<Store> {
     @Default
     private final KeySetView<Listener, Boolean> listeners = ConcurrentHashMap.newKeySet();
 
+    /**
+     * The non-null dispatch table of listeners, indexed by the name of the events that they override
+     */
+    @NonNull
+    @JsonIgnore
+    @Default
+    private final ConcurrentHashMap<String, KeySetView<Listener, Boolean>> listenersByEvent = new ConcurrentHashMap<>();
+
     /**
      * The request tag, used to create messages
      */
@@ -297,11 +346,11 @@ public final class Store extends Controller<Store> {
     private MediaConnection mediaConnection;
 
     /**
-     * The media connection latch associated with this store
+     * The future completed when the next media connection is available, used to queue uploads while a refresh is in flight
      */
     @JsonIgnore
     @Default
-    private CountDownLatch mediaConnectionLatch = new CountDownLatch(1);
+    private CompletableFuture<MediaConnection> pendingMediaConnection = new CompletableFuture<>();
 
     /**
      * The request tag, used to create messages
@@ -347,6 +396,37 @@ public final class Store extends Controller<Store> {
     @Default
     private boolean automaticPresenceUpdates = true;
 
+    /**
+     * The window within which presence updates for the same contact in the same chat are merged before listeners are notified
+     * Listeners are only notified about net changes, regardless of this value
+     */
+    @Getter
+    @Setter
+    @Default
+    @NonNull
+    private Duration presenceCoalescingWindow = Duration.ZERO;
+
+    /**
+     * The setting used to deliver events to listeners in order, null if events should be delivered concurrently
+     */
+    @JsonIgnore
+    @Setter
+    private EventBusSetting eventBusSetting;
+
+    /**
+     * The timer wheel used to schedule the periodic and delayed work of this session, null if the shared one should be used
+     */
+    @JsonIgnore
+    @Setter
+    private TimerWheel timer;
+
+    /**
+     * The policy used to reconnect this session when the connection is lost, null if the default one should be used
+     */
+    @JsonIgnore
+    @Setter
+    private ReconnectPolicy reconnectPolicy;
+
     /**
      * The release channel to use when connecting to Whatsapp
      * This should allow the use of beta features
@@ -746,6 +826,56 @@ public final class Store extends Controller<Store> {
                 .collect(Collectors.toUnmodifiableSet());
     }
 
+    /**
+     * Queries the messages whose id is one of the provided ones in the specified chat
+     *
+     * @param provider the chat to search in
+     * @param ids      the ids to search
+     * @return a non-null list
+     */
+    public List<MessageInfo> findMessagesById(ContactJidProvider provider, @NonNull Collection<String> ids) {
+        if (provider == null || ids.isEmpty()) {
+            return List.of();
+        }
+
+        return findChatByJid(provider.toJid())
+                .map(chat -> chat.findMessagesById(ids))
+                .orElseGet(List::of);
+    }
+
+    /**
+     * Queries the status whose id is one of the provided ones
+     *
+     * @param ids the ids of the status
+     * @return a non-null list
+     */
+    public List<MessageInfo> findStatusById(@NonNull Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        var remaining = new HashSet<>(ids);
+        return status.values()
+                .stream()
+                .flatMap(Collection::stream)
+                .filter(status -> remaining.remove(status.id()))
+                .toList();
+    }
+
+    /**
+     * Queries the last known presence of a contact in a chat.
+     * The presence is always up to date, even if listeners were not notified about every transition.
+     *
+     * @param chat    the chat to search in
+     * @param contact the contact whose presence should be returned
+     * @return a non-null optional
+     */
+    public Optional<ContactStatus> findPresence(@NonNull ContactJidProvider chat, @NonNull ContactJidProvider contact) {
+        return findChatByJid(chat.toJid())
+                .map(Chat::presences)
+                .map(presences -> presences.get(contact.toJid()));
+    }
+
     /**
      * Queries the first status whose id matches the one provided
      *
@@ -842,11 +972,11 @@ public final class Store extends Controller<Store> {
                 .flatMap(ContextInfo::quotedMessageId)
                 .map(id -> {
                     var future = replyHandlers.remove(id);
-                    if (future == null) {
+                    if (future.isEmpty()) {
                         return false;
                     }
 
-                    future.complete(response);
+                    future.get().complete(response);
                     return true;
                 })
                 .orElse(false);
@@ -1123,25 +1253,62 @@ public final class Store extends Controller<Store> {
      */
     public MediaConnection mediaConnection(@NonNull Duration timeout) {
         try {
-            var result = mediaConnectionLatch.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
-            if (!result) {
-                throw new RuntimeException("Cannot get media connection");
-            }
-            return mediaConnection;
-        } catch (InterruptedException exception) {
-            throw new RuntimeException("Cannot lock on media connection", exception);
+            return mediaConnectionAsync(timeout).join();
+        } catch (CompletionException exception) {
+            throw new RuntimeException("Cannot get media connection", exception.getCause());
         }
     }
 
+    /**
+     * Returns the media connection associated with this store, if it hasn't expired
+     *
+     * @return an optional
+     */
+    public synchronized Optional<MediaConnection> activeMediaConnection() {
+        return mediaConnection != null && !mediaConnection.isExpired() ? Optional.of(mediaConnection) : Optional.empty();
+    }
+
+    /**
+     * Returns a future that completes with a media connection that hasn't expired.
+     * If the current connection is still valid, the returned future is already completed.
+     * Otherwise, it completes as soon as the media connection is refreshed, without blocking any thread in the meanwhile.
+     *
+     * @return a non-null future
+     */
+    public CompletableFuture<MediaConnection> mediaConnectionAsync() {
+        return mediaConnectionAsync(Duration.ofMinutes(2));
+    }
+
+    /**
+     * Returns a future that completes with a media connection that hasn't expired.
+     * If the current connection is still valid, the returned future is already completed.
+     * Otherwise, it completes as soon as the media connection is refreshed, without blocking any thread in the meanwhile.
+     *
+     * @param timeout the non-null timeout for the connection to be filled
+     * @return a non-null future
+     */
+    public synchronized CompletableFuture<MediaConnection> mediaConnectionAsync(@NonNull Duration timeout) {
+        if (mediaConnection != null && !mediaConnection.isExpired()) {
+            return CompletableFuture.completedFuture(mediaConnection);
+        }
+
+        return pendingMediaConnection.copy()
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Writes a media connection
      *
      * @param mediaConnection a media connection
      * @return the same instance
      */
-    public Store mediaConnection(MediaConnection mediaConnection) {
+    public synchronized Store mediaConnection(MediaConnection mediaConnection) {
         this.mediaConnection = mediaConnection;
-        mediaConnectionLatch.countDown();
+        if (mediaConnection != null) {
+            var pending = pendingMediaConnection;
+            this.pendingMediaConnection = new CompletableFuture<>();
+            pending.complete(mediaConnection);
+        }
         return this;
     }
 
@@ -1195,6 +1362,15 @@ public final class Store extends Controller<Store> {
         return result;
     }
 
+    /**
+     * Returns the number of replies waiting to be fulfilled and how many were discarded
+     *
+     * @return a non-null metrics object
+     */
+    public ExpiringMap.Metrics pendingRepliesMetrics() {
+        return replyHandlers.metrics();
+    }
+
     /**
      * Returns the profile picture of this user if present
      *
@@ -1292,6 +1468,17 @@ public final class Store extends Controller<Store> {
         return Collections.unmodifiableSet(listeners);
     }
 
+    /**
+     * Returns an immutable collection of the listeners that override an event
+     *
+     * @param event the non-null name of the event, that is the name of the method in {@link Listener}
+     * @return a non-null collection
+     */
+    public Collection<Listener> listeners(@NonNull String event){
+        var result = listenersByEvent.get(event);
+        return result == null ? List.of() : Collections.unmodifiableSet(result);
+    }
+
     /**
      * Registers a listener
      *
@@ -1299,7 +1486,10 @@ public final class Store extends Controller<Store> {
      * @return the same instance
      */
     public Store addListener(@NonNull Listener listener) {
-        listeners.add(listener);
+        if (listeners.add(listener)) {
+            ListenerIntrospector.events(listener)
+                    .forEach(event -> listenersByEvent.computeIfAbsent(event, ignored -> ConcurrentHashMap.newKeySet()).add(listener));
+        }
         return this;
     }
 
@@ -1310,7 +1500,7 @@ public final class Store extends Controller<Store> {
      * @return the same instance
      */
     public Store addListeners(@NonNull Collection<Listener> listeners) {
-        this.listeners.addAll(listeners);
+        listeners.forEach(this::addListener);
         return this;
     }
 
@@ -1321,7 +1511,14 @@ public final class Store extends Controller<Store> {
      * @return the same instance
      */
     public Store removeListener(@NonNull Listener listener) {
-        listeners.remove(listener);
+        if (listeners.remove(listener)) {
+            ListenerIntrospector.events(listener).forEach(event -> {
+                var entries = listenersByEvent.get(event);
+                if (entries != null) {
+                    entries.remove(listener);
+                }
+            });
+        }
         return this;
     }
 
@@ -1332,6 +1529,7 @@ public final class Store extends Controller<Store> {
      */
     public Store removeListener() {
         listeners.clear();
+        listenersByEvent.clear();
         return this;
     }
 
@@ -1459,8 +1657,6 @@ public final class Store extends Controller<Store> {
 
     public void dispose() {
         serialize(false);
-        mediaConnectionLatch.countDown();
-        mediaConnectionLatch = new CountDownLatch(1);
     }
 
     @Override
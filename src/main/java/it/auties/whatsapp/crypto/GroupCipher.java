@@ -6,9 +6,11 @@ import it.auties.whatsapp.model.signal.sender.SenderKeyName;
 import it.auties.whatsapp.model.signal.sender.SenderKeyState;
 import it.auties.whatsapp.model.signal.sender.SenderMessageKey;
 import it.auties.whatsapp.util.Spec.Signal;
+import it.auties.whatsapp.util.Validate;
 import lombok.NonNull;
 
 import java.util.NoSuchElementException;
+import java.util.Optional;
 
 public record GroupCipher(@NonNull SenderKeyName name, @NonNull Keys keys) {
     public CipheredMessageResult encrypt(byte[] data) {
@@ -16,13 +18,15 @@ public record GroupCipher(@NonNull SenderKeyName name, @NonNull Keys keys) {
             return new CipheredMessageResult(null, Signal.UNAVAILABLE);
         }
 
-        var currentState = keys.findSenderKeyByName(name).findState();
+        var record = keys.findSenderKeyByName(name);
+        var currentState = record.findState();
         var messageKey = currentState.chainKey().toMessageKey();
         var ciphertext = AesCbc.encrypt(messageKey.iv(), data, messageKey.cipherKey());
         var senderKeyMessage = new SenderKeyMessage(currentState.id(), messageKey.iteration(), ciphertext, currentState.signingKey()
                 .privateKey());
         var next = currentState.chainKey().next();
         currentState.chainKey(next);
+        keys.putSenderKey(name, record);
         return new CipheredMessageResult(senderKeyMessage.serialized(), Signal.SKMSG);
     }
 
@@ -30,14 +34,25 @@ public record GroupCipher(@NonNull SenderKeyName name, @NonNull Keys keys) {
         var record = keys.findSenderKeyByName(name);
         var senderKeyMessage = SenderKeyMessage.ofSerialized(data);
         var senderKeyStates = record.findStateById(senderKeyMessage.id());
-        for (var senderKeyState : senderKeyStates) {
-            try {
-                var senderKey = getSenderKey(senderKeyState, senderKeyMessage.iteration());
-                return AesCbc.decrypt(senderKey.iv(), senderKeyMessage.cipherText(), senderKey.cipherKey());
-            } catch (Throwable ignored) {
-            }
+        var result = senderKeyStates.stream()
+                .map(senderKeyState -> tryDecrypt(senderKeyMessage, senderKeyState))
+                .flatMap(Optional::stream)
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("Cannot decode message with any session"));
+        // The record is saved outside of the loop, so that a failure while persisting it is never mistaken for a wrong state
+        keys.putSenderKey(name, record);
+        return result;
+    }
+
+    private Optional<byte[]> tryDecrypt(SenderKeyMessage senderKeyMessage, SenderKeyState senderKeyState) {
+        try {
+            var senderKey = getSenderKey(senderKeyState, senderKeyMessage.iteration());
+            var result = AesCbc.decrypt(senderKey.iv(), senderKeyMessage.cipherText(), senderKey.cipherKey());
+            senderKeyState.removeSenderMessageKey(senderKeyMessage.iteration());
+            return Optional.of(result);
+        } catch (Throwable throwable) {
+            return Optional.empty();
         }
-        throw new RuntimeException("Cannot decode message with any session");
     }
 
     private SenderMessageKey getSenderKey(SenderKeyState senderKeyState, int iteration) {
@@ -46,6 +61,8 @@ public record GroupCipher(@NonNull SenderKeyName name, @NonNull Keys keys) {
                     .orElseThrow(() -> new NoSuchElementException("Received message with old counter: got %s, expected more than %s".formatted(iteration, senderKeyState.chainKey()
                             .iteration())));
         }
+        Validate.isTrue(iteration - senderKeyState.chainKey().iteration() <= Signal.MAX_MESSAGES,
+                "Message overflow: expected <= %s, got %s", Signal.MAX_MESSAGES, iteration - senderKeyState.chainKey().iteration());
         var lastChainKey = senderKeyState.chainKey();
         while (lastChainKey.iteration() < iteration) {
             senderKeyState.addSenderMessageKey(lastChainKey.toMessageKey());
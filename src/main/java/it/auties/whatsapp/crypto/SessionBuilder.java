@@ -38,10 +38,11 @@ public record SessionBuilder(@NonNull SessionAddress address, @NonNull Keys keys
                 signedPreKey.id()
         );
         state.pendingPreKey(pendingPreKey);
-        keys.findSessionByAddress(address)
+        var session = keys.findSessionByAddress(address)
                 .map(Session::closeCurrentState)
-                .orElseGet(this::createSession)
-                .addState(state);
+                .orElseGet(Session::new);
+        session.addState(state);
+        keys.putSession(address, session);
     }
 
     public SessionState createState(boolean isInitiator, SignalKeyPair ourEphemeralKey, SignalKeyPair ourSignedKey, byte[] theirIdentityPubKey, byte[] theirEphemeralPubKey, byte[] theirSignedPubKey, int registrationId, int version) {
@@ -63,12 +64,6 @@ public record SessionBuilder(@NonNull SessionAddress address, @NonNull Keys keys
         return isInitiator ? calculateSendingRatchet(state, theirSignedPubKey) : state;
     }
 
-    private Session createSession() {
-        var session = new Session();
-        keys.putSession(address, session);
-        return session;
-    }
-
     private byte[] createStateSecret(boolean isInitiator, byte[] signedSecret, byte[] identitySecret, byte[] signedIdentitySecret, byte[] ephemeralSecret) {
         var header = new byte[32];
         Arrays.fill(header, (byte) 0xff);
@@ -29,7 +29,8 @@ public record SessionCipher(@NonNull SessionAddress address, @NonNull Keys keys)
         if(data == null){
             return new CipheredMessageResult(null, Signal.UNAVAILABLE);
         }
-        var currentState = loadSession().currentState()
+        var session = loadSession();
+        var currentState = session.currentState()
                 .orElseThrow(() -> new NoSuchElementException("Missing session for address %s".formatted(address)));
         Validate.isTrue(keys.hasTrust(address, currentState.remoteIdentityKey()), "Untrusted key", SecurityException.class);
         var chain = currentState.findChain(currentState.ephemeralKeyPair().encodedPublicKey())
@@ -42,6 +43,7 @@ public record SessionCipher(@NonNull SessionAddress address, @NonNull Keys keys)
         var encrypted = AesCbc.encrypt(iv, data, secrets[0]);
         var encryptedMessageType = getMessageType(currentState);
         var encryptedMessage = encrypt(currentState, chain, secrets[1], encrypted);
+        saveSession(session);
         return new CipheredMessageResult(encryptedMessage, encryptedMessageType);
     }
 
@@ -85,12 +87,13 @@ public record SessionCipher(@NonNull SessionAddress address, @NonNull Keys keys)
                 .get() <= MAX_MESSAGES, "Message overflow: expected <= %s, got %s", MAX_MESSAGES, counter - chain.counter()
                 .get());
         Validate.isTrue(chain.key().get() != null, "Closed chain");
-        var messagesHmac = Hmac.calculateSha256(new byte[]{1}, chain.key().get());
-        chain.messageKeys().put(chain.counter().get() + 1, messagesHmac);
-        var keyHmac = Hmac.calculateSha256(new byte[]{2}, chain.key().get());
-        chain.key().set(keyHmac);
-        chain.counter().getAndIncrement();
-        fillMessageKeys(chain, counter);
+        while (chain.counter().get() < counter) {
+            var messagesHmac = Hmac.calculateSha256(new byte[]{1}, chain.key().get());
+            chain.messageKeys().put(chain.counter().get() + 1, messagesHmac);
+            var keyHmac = Hmac.calculateSha256(new byte[]{2}, chain.key().get());
+            chain.key().set(keyHmac);
+            chain.counter().getAndIncrement();
+        }
     }
 
     public byte[] decrypt(SignalPreKeyMessage message) {
@@ -99,7 +102,14 @@ public record SessionCipher(@NonNull SessionAddress address, @NonNull Keys keys)
         builder.createIncoming(session, message);
         var state = session.findState(message.version(), message.baseKey())
                 .orElseThrow(() -> new NoSuchElementException("Missing state"));
-        return decrypt(message.signalMessage(), state);
+        var result = decrypt(message.signalMessage(), state);
+        saveSession(session);
+        // The pre key is deleted only after the session is saved, so a crash in between never leaves a message that cannot be decrypted
+        if (message.preKeyId() != null) {
+            keys.removePreKey(message.preKeyId());
+        }
+
+        return result;
     }
 
     private Optional<Session> createSession() {
@@ -110,12 +120,23 @@ public record SessionCipher(@NonNull SessionAddress address, @NonNull Keys keys)
 
     public byte[] decrypt(SignalMessage message) {
         var session = loadSession();
-        return session.states()
-                .stream()
-                .map(state -> tryDecrypt(message, state))
-                .flatMap(Optional::stream)
-                .findFirst()
+        var result = session.currentState()
+                .flatMap(state -> tryDecrypt(message, state))
+                .or(() -> tryDecryptArchived(message, session))
                 .orElseThrow(() -> new NoSuchElementException("Cannot decrypt message: no suitable session found"));
+        saveSession(session);
+        return result;
+    }
+
+    private Optional<byte[]> tryDecryptArchived(SignalMessage message, Session session) {
+        for (var state : session.archivedStates()) {
+            var result = tryDecrypt(message, state);
+            if (result.isPresent()) {
+                return result;
+            }
+        }
+
+        return Optional.empty();
     }
 
     private Optional<byte[]> tryDecrypt(SignalMessage message, SessionState state) {
@@ -146,6 +167,7 @@ public record SessionCipher(@NonNull SessionAddress address, @NonNull Keys keys)
         Validate.isTrue(Arrays.equals(message.signature(), hmac), "message_decryption", HmacValidationException.class);
         var iv = Arrays.copyOf(secrets[2], IV_LENGTH);
         var plaintext = AesCbc.decrypt(iv, message.ciphertext(), secrets[0]);
+        chain.messageKeys().remove(message.counter());
         state.pendingPreKey(null);
         return plaintext;
     }
@@ -180,7 +202,17 @@ public record SessionCipher(@NonNull SessionAddress address, @NonNull Keys keys)
     }
 
     private Session loadSession() {
-        return loadSession(() -> keys.findSessionByAddress(new SessionAddress(address.name(), 0)));
+        return loadSession(() -> keys.findSessionByAddress(getFallbackAddress()));
+    }
+
+    private SessionAddress getFallbackAddress() {
+        return new SessionAddress(address.name(), 0);
+    }
+
+    // Sessions are changed in place: putting them back persists the ratchet step
+    private void saveSession(Session session) {
+        var owner = keys.findSessionByAddress(address).orElse(null) == session ? address : getFallbackAddress();
+        keys.putSession(owner, session);
     }
 
     private Session loadSession(Supplier<Optional<Session>> defaultSupplier) {
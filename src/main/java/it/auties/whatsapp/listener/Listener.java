@@ -1,6 +1,7 @@
 package it.auties.whatsapp.listener;
 
 import it.auties.whatsapp.api.DisconnectReason;
+import it.auties.whatsapp.api.InitializationReport;
 import it.auties.whatsapp.api.SocketEvent;
 import it.auties.whatsapp.api.Whatsapp;
 import it.auties.whatsapp.controller.Store;
@@ -86,6 +87,41 @@ public interface Listener {
     default void onLoggedIn() {
     }
 
+    /**
+     * Called when the session is ready to send messages after logging in, that is when the media connection, the pre keys and the groups that were used last are available.
+     * This event is called before {@link Listener#onInitialized(Whatsapp, InitializationReport)}, and it can be called before {@link Listener#onLoggedIn(Whatsapp)}.
+     *
+     * @param whatsapp an instance to the calling api
+     */
+    default void onReadyToSend(Whatsapp whatsapp) {
+    }
+
+    /**
+     * Called when the session is ready to send messages after logging in, that is when the media connection, the pre keys and the groups that were used last are available.
+     * This event is called before {@link Listener#onInitialized(InitializationReport)}, and it can be called before {@link Listener#onLoggedIn()}.
+     */
+    default void onReadyToSend() {
+    }
+
+    /**
+     * Called when all the steps that initialize the session after logging in are done.
+     * The report describes how long each step took, so it can be used to measure the time needed to send the first message.
+     *
+     * @param whatsapp an instance to the calling api
+     * @param report   the non-null report of the initialization
+     */
+    default void onInitialized(Whatsapp whatsapp, InitializationReport report) {
+    }
+
+    /**
+     * Called when all the steps that initialize the session after logging in are done.
+     * The report describes how long each step took, so it can be used to measure the time needed to send the first message.
+     *
+     * @param report the non-null report of the initialization
+     */
+    default void onInitialized(InitializationReport report) {
+    }
+
     /**
      * Called when an updated list of properties is received. This method is called both when a
      * connection is established with WhatsappWeb and when new props are available. In the latter case
@@ -198,6 +234,25 @@ public interface Listener {
     default void onContacts(Collection<Contact> contacts) {
     }
 
+    /**
+     * Called when the name of a batch of contacts is updated, for example when the push names are synced
+     * This event is fired once for the whole batch, {@link Listener#onAction(Whatsapp, Action, MessageIndexInfo)} is still fired for each contact
+     *
+     * @param whatsapp an instance to the calling api
+     * @param contacts the non-null contacts that were updated
+     */
+    default void onContactsUpdate(Whatsapp whatsapp, Collection<Contact> contacts) {
+    }
+
+    /**
+     * Called when the name of a batch of contacts is updated, for example when the push names are synced
+     * This event is fired once for the whole batch, {@link Listener#onAction(Action, MessageIndexInfo)} is still fired for each contact
+     *
+     * @param contacts the non-null contacts that were updated
+     */
+    default void onContactsUpdate(Collection<Contact> contacts) {
+    }
+
     /**
      * Called when the socket receives an update regarding the presence of a contact
      *
@@ -267,6 +322,29 @@ public interface Listener {
     default void onChatMessagesSync(Chat chat, boolean last) {
     }
 
+    /**
+     * Called when the socket receives the messages for a batch of chats. This method is only called when the QR
+     * is first scanned and history is being synced. The chats synced within a short window are delivered together, while
+     * {@link Listener#onChatMessagesSync(Whatsapp, Chat, boolean)} is fired for each chat.
+     *
+     * @param whatsapp an instance to the calling api
+     * @param chats    the non-null chats
+     * @param last     whether the messages in these chats are complete or there are more coming
+     */
+    default void onChatsMessagesSync(Whatsapp whatsapp, Collection<Chat> chats, boolean last) {
+    }
+
+    /**
+     * Called when the socket receives the messages for a batch of chats. This method is only called when the QR
+     * is first scanned and history is being synced. The chats synced within a short window are delivered together, while
+     * {@link Listener#onChatMessagesSync(Chat, boolean)} is fired for each chat.
+     *
+     * @param chats the non-null chats
+     * @param last  whether the messages in these chats are complete or there are more coming
+     */
+    default void onChatsMessagesSync(Collection<Chat> chats, boolean last) {
+    }
+
     /**
      * Called when the socket receives the sync percentage for the full or recent chunk of messages.
      * This method is only called when the QR is first scanned and history is being synced.
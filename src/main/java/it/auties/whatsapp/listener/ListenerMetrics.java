@@ -0,0 +1,17 @@
+package it.auties.whatsapp.listener;
+
+import java.time.Duration;
+
+/**
+ * A model class that describes how much a listener is lagging behind the events fired by the socket.
+ * Metrics are only collected when an {@link it.auties.whatsapp.api.EventBusSetting} is used.
+ *
+ * @param queued    the number of events waiting to be delivered
+ * @param delivered the number of events that were delivered
+ * @param dropped   the number of events that were discarded because the queue was full
+ * @param coalesced the number of events that were replaced by a newer event of the same type
+ * @param lag       the time the oldest queued event has been waiting for
+ */
+public record ListenerMetrics(int queued, long delivered, long dropped, long coalesced, Duration lag) {
+
+}
@@ -0,0 +1,16 @@
+package it.auties.whatsapp.listener;
+
+import it.auties.whatsapp.model.chat.Chat;
+
+import java.util.Collection;
+
+public interface OnChatsMessagesSync extends Listener {
+    /**
+     * Called when the socket receives the recent messages for a batch of chats
+     *
+     * @param chats the chats
+     * @param last  whether the messages in these chats are complete or there are more coming
+     */
+    @Override
+    void onChatsMessagesSync(Collection<Chat> chats, boolean last);
+}
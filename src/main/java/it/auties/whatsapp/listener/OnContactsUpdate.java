@@ -0,0 +1,15 @@
+package it.auties.whatsapp.listener;
+
+import it.auties.whatsapp.model.contact.Contact;
+
+import java.util.Collection;
+
+public interface OnContactsUpdate extends Listener {
+    /**
+     * Called when the name of a batch of contacts is updated
+     *
+     * @param contacts the contacts
+     */
+    @Override
+    void onContactsUpdate(Collection<Contact> contacts);
+}
@@ -0,0 +1,14 @@
+package it.auties.whatsapp.listener;
+
+import it.auties.whatsapp.api.InitializationReport;
+
+public interface OnInitialized extends Listener {
+    /**
+     * Called when all the steps that initialize the session after logging in are done.
+     * The report describes how long each step took, so it can be used to measure the time needed to send the first message.
+     *
+     * @param report the non-null report of the initialization
+     */
+    @Override
+    void onInitialized(InitializationReport report);
+}
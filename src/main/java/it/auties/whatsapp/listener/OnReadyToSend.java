@@ -0,0 +1,10 @@
+package it.auties.whatsapp.listener;
+
+public interface OnReadyToSend extends Listener {
+    /**
+     * Called when the session is ready to send messages after logging in, that is when the media connection, the pre keys and the groups that were used last are available.
+     * This event can be called before {@link OnLoggedIn#onLoggedIn()}.
+     */
+    @Override
+    void onReadyToSend();
+}
@@ -0,0 +1,18 @@
+package it.auties.whatsapp.listener;
+
+import it.auties.whatsapp.api.Whatsapp;
+import it.auties.whatsapp.model.chat.Chat;
+
+import java.util.Collection;
+
+public interface OnWhatsappChatsMessagesSync extends Listener {
+    /**
+     * Called when the socket receives the recent messages for a batch of chats
+     *
+     * @param whatsapp an instance to the calling api
+     * @param chats    the chats
+     * @param last     whether the messages in these chats are complete or there are more coming
+     */
+    @Override
+    void onChatsMessagesSync(Whatsapp whatsapp, Collection<Chat> chats, boolean last);
+}
@@ -0,0 +1,17 @@
+package it.auties.whatsapp.listener;
+
+import it.auties.whatsapp.api.Whatsapp;
+import it.auties.whatsapp.model.contact.Contact;
+
+import java.util.Collection;
+
+public interface OnWhatsappContactsUpdate extends Listener {
+    /**
+     * Called when the name of a batch of contacts is updated
+     *
+     * @param whatsapp an instance to the calling api
+     * @param contacts the contacts
+     */
+    @Override
+    void onContactsUpdate(Whatsapp whatsapp, Collection<Contact> contacts);
+}
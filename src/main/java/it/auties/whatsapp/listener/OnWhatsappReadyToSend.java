@@ -0,0 +1,14 @@
+package it.auties.whatsapp.listener;
+
+import it.auties.whatsapp.api.Whatsapp;
+
+public interface OnWhatsappReadyToSend extends Listener {
+    /**
+     * Called when the session is ready to send messages after logging in, that is when the media connection, the pre keys and the groups that were used last are available.
+     * This event can be called before {@link OnWhatsappLoggedIn#onLoggedIn(Whatsapp)}.
+     *
+     * @param whatsapp an instance to the calling api
+     */
+    @Override
+    void onReadyToSend(Whatsapp whatsapp);
+}
@@ -12,6 +12,9 @@ import java.lang.annotation.Target;
  * {@link Whatsapp}. For this annotation to be recognized, the target class should implement
  * {@link Listener} and provide a no argument constructor. If any of those conditions aren't met, a
  * {@link RuntimeException} will be thrown.
+ * Annotated classes are listed in an index at compile time by {@link it.auties.whatsapp.util.ListenerIndexProcessor}, which runs automatically when this library is on the annotation processor path.
+ * If no index is available at runtime, the classpath is scanned instead, which is considerably slower.
+ * If listeners are packaged in a fat jar, see {@link it.auties.whatsapp.util.ListenerScanner#INDEX_PATH} for how to merge their indexes, and {@link it.auties.whatsapp.util.ListenerScanner#FORCE_SCAN_PROPERTY} for how to always scan the classpath.
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.TYPE})
@@ -594,6 +594,27 @@ public final class Chat implements ProtobufMessage, ContactJidProvider {
         return info.message().hasCategory(MessageCategory.SERVER) || info.hasStub();
     }
 
+    /**
+     * Returns the messages in this chat whose id is one of the provided ones.
+     * The messages are scanned once starting from the newest, as the scan stops as soon as all the ids were found
+     *
+     * @param ids the non-null ids to look for
+     * @return a non-null list
+     */
+    public List<MessageInfo> findMessagesById(@NonNull Collection<String> ids) {
+        var remaining = new HashSet<>(ids);
+        var results = new ArrayList<MessageInfo>(remaining.size());
+        var descendingIterator = historySyncMessages.descendingIterator();
+        while (descendingIterator.hasNext() && !remaining.isEmpty()){
+            var info = descendingIterator.next().messageInfo();
+            if(remaining.remove(info.id())){
+                results.add(info);
+            }
+        }
+
+        return results;
+    }
+
     private Optional<MessageInfo> findMessageBy(Function<MessageInfo, Boolean> filter, boolean newest) {
         var descendingIterator = newest ? historySyncMessages.descendingIterator() : historySyncMessages.iterator();
         while (descendingIterator.hasNext()){
@@ -855,6 +876,7 @@ public final class Chat implements ProtobufMessage, ContactJidProvider {
      * @return the old value associated with the provided jid
      */
     public Optional<GroupParticipant> removeParticipant(@NonNull ContactJid jid){
+        participantsPreKeys.remove(jid);
         return Optional.ofNullable(participants.remove(jid));
     }
 
@@ -4,10 +4,13 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonValue;
 import it.auties.protobuf.base.ProtobufConverter;
 import it.auties.whatsapp.model.signal.session.SessionAddress;
+import it.auties.whatsapp.util.BoundedCache;
 import lombok.*;
 import lombok.experimental.Accessors;
 
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -18,6 +21,26 @@ import java.util.Objects;
 @Builder
 @With
 public record ContactJid(String user, @NonNull Server server, int device, int agent) implements ContactJidProvider {
+    /**
+     * The maximum number of jids, for each server, that are kept in memory after being parsed
+     */
+    private static final int CACHE_SIZE = 4096;
+
+    /**
+     * The number of stripes of the cache of each server, so that threads that parse different jids rarely contend
+     */
+    private static final int CACHE_STRIPES = 16;
+
+    /**
+     * Canonical instances of the jids that were parsed recently, so that hot users and groups share the same instance
+     */
+    private static final Map<Server, BoundedCache<String, ContactJid>> CACHE = createCache();
+
+    /**
+     * Canonical instances of the jids that represent a server
+     */
+    private static final Map<Server, ContactJid> SERVERS = createServers();
+
     /**
      * Default constructor
      */
@@ -27,6 +50,23 @@ public record ContactJid(String user, @NonNull Server server, int device, int ag
         this.device = device;
         this.agent = agent;
     }
+
+    private static Map<Server, BoundedCache<String, ContactJid>> createCache() {
+        var result = new EnumMap<Server, BoundedCache<String, ContactJid>>(Server.class);
+        for (var server : Server.values()) {
+            result.put(server, new BoundedCache<>(CACHE_SIZE, CACHE_STRIPES));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static Map<Server, ContactJid> createServers() {
+        var result = new EnumMap<Server, ContactJid>(Server.class);
+        for (var server : Server.values()) {
+            result.put(server, new ContactJid(null, server, 0, 0));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
     /**
      * Constructs a new ContactId that represents a server
      *
@@ -34,7 +74,7 @@ public record ContactJid(String user, @NonNull Server server, int device, int ag
      * @return a non-null contact jid
      */
     public static ContactJid ofServer(@NonNull Server server) {
-        return of(null, server);
+        return SERVERS.get(server);
     }
 
     /**
@@ -45,27 +85,25 @@ public record ContactJid(String user, @NonNull Server server, int device, int ag
      * @return a non-null contact jid
      */
     public static ContactJid of(String jid, @NonNull Server server) {
-        var complexUser = withoutServer(jid);
-        if (complexUser == null) {
-            return new ContactJid(null, server, 0, 0);
-        }
-        if (complexUser.contains(":")) {
-            var simpleUser = complexUser.split(":", 2);
-            var user = simpleUser[0];
-            var device = Integer.parseUnsignedInt(simpleUser[1]);
-            if (user.contains("_")) {
-                var simpleUserAgent = user.split("_", 2);
-                var agent = tryParseAgent(simpleUserAgent[1]);
-                return new ContactJid(simpleUserAgent[0], server, device, agent);
-            }
-            return new ContactJid(user, server, device, 0);
+        if (jid == null) {
+            return ofServer(server);
         }
-        if (!complexUser.contains("_")) {
-            return new ContactJid(complexUser, server, 0, 0);
+
+        return CACHE.get(server).computeIfAbsent(jid, ignored -> parse(withoutServer(jid), server));
+    }
+
+    private static ContactJid parse(String complexUser, Server server) {
+        var deviceSeparator = complexUser.indexOf(':');
+        var userEnd = deviceSeparator == -1 ? complexUser.length() : deviceSeparator;
+        var agentSeparator = complexUser.indexOf('_');
+        if (agentSeparator >= userEnd) {
+            agentSeparator = -1;
         }
-        var simpleUserAgent = complexUser.split("_", 2);
-        var agent = tryParseAgent(simpleUserAgent[1]);
-        return new ContactJid(simpleUserAgent[0], server, 0, agent);
+
+        var user = complexUser.substring(0, agentSeparator == -1 ? userEnd : agentSeparator);
+        var device = deviceSeparator == -1 ? 0 : Integer.parseUnsignedInt(complexUser, deviceSeparator + 1, complexUser.length(), 10);
+        var agent = agentSeparator == -1 ? 0 : tryParseAgent(complexUser, agentSeparator + 1, userEnd);
+        return new ContactJid(user, server, device, agent);
     }
 
     /**
@@ -78,15 +116,25 @@ public record ContactJid(String user, @NonNull Server server, int device, int ag
         if (jid == null) {
             return null;
         }
+
+        var separator = jid.indexOf('@');
+        if (separator == -1) {
+            return jid;
+        }
+
+        if (separator == jid.lastIndexOf('@') && Server.isAddress(jid, separator + 1)) {
+            return jid.substring(0, separator);
+        }
+
         for (var server : Server.values()) {
-            jid = jid.replace("@%s".formatted(server), "");
+            jid = jid.replace("@" + server.address(), "");
         }
         return jid;
     }
 
-    private static int tryParseAgent(String string) {
+    private static int tryParseAgent(String string, int start, int end) {
         try {
-            return Integer.parseUnsignedInt(string);
+            return Integer.parseUnsignedInt(string, start, end, 10);
         } catch (NumberFormatException exception) {
             return 0;
         }
@@ -226,11 +274,22 @@ public record ContactJid(String user, @NonNull Server server, int device, int ag
     @JsonValue
     @Override
     public String toString() {
-        var user = Objects.requireNonNullElse(user(), "");
-        var agent = agent() != 0 ? "_%s".formatted(agent()) : "";
-        var device = device() != 0 ? ":%s".formatted(device()) : "";
-        var leading = "%s%s%s".formatted(user, agent, device);
-        return leading.isEmpty() ? server().toString() : "%s@%s".formatted(leading, server());
+        var hasUser = user() != null && !user().isEmpty();
+        if (!hasUser && agent() == 0 && device() == 0) {
+            return server().address();
+        }
+
+        var result = new StringBuilder();
+        if (hasUser) {
+            result.append(user());
+        }
+        if (agent() != 0) {
+            result.append('_').append(agent());
+        }
+        if (device() != 0) {
+            result.append(':').append(device());
+        }
+        return result.append('@').append(server().address()).toString();
     }
 
     /**
@@ -366,10 +425,27 @@ public record ContactJid(String user, @NonNull Server server, int device, int ag
 
         @JsonCreator
         public static Server of(String address) {
-            return Arrays.stream(values())
-                    .filter(entry -> address != null && address.endsWith(entry.address()))
-                    .findFirst()
-                    .orElse(WHATSAPP);
+            if (address == null) {
+                return WHATSAPP;
+            }
+
+            for (var entry : values()) {
+                if (address.endsWith(entry.address())) {
+                    return entry;
+                }
+            }
+
+            return WHATSAPP;
+        }
+
+        private static boolean isAddress(String jid, int offset) {
+            for (var entry : values()) {
+                if (jid.length() - offset == entry.address().length() && jid.startsWith(entry.address(), offset)) {
+                    return true;
+                }
+            }
+
+            return false;
         }
 
         public ContactJid toJid() {
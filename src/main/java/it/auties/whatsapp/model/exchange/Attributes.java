@@ -18,11 +18,12 @@ import static java.util.Map.ofEntries;
 import static java.util.Objects.requireNonNull;
 
 /**
- * A utility class that wraps a map and provides easy methods to interact with its content
+ * A utility class that wraps a map and provides easy methods to interact with its content.
+ * The attributes of decoded nodes are immutable, while the ones created using the static factories can be modified.
  *
  * @param toMap the non-null wrapped map
  */
-public record Attributes(@JsonValue @NonNull ConcurrentHashMap<String, Object> toMap) {
+public record Attributes(@JsonValue @NonNull Map<String, Object> toMap) {
     /**
      * Constructs a new map using the non-null provided entries
      *
@@ -46,6 +47,18 @@ public record Attributes(@JsonValue @NonNull ConcurrentHashMap<String, Object> t
         return new Attributes(modifiableMap);
     }
 
+    /**
+     * Constructs a new immutable map from the attributes of a decoded node.
+     * The arrays are not copied, so they must not be modified after this call.
+     *
+     * @param keys   the non-null keys
+     * @param values the non-null values, one for each key
+     * @return a new instance of Attributes
+     */
+    public static Attributes ofDecoded(String @NonNull [] keys, Object @NonNull [] values) {
+        return new Attributes(new CompactAttributeMap(keys, values));
+    }
+
     /**
      * Constructs a new map using the provided non-null map
      *
@@ -175,7 +188,7 @@ public record Attributes(@JsonValue @NonNull ConcurrentHashMap<String, Object> t
      * @return the non-null value
      */
     public Optional<Integer> getOptionalInt(String key) {
-        return get(key, Object.class).map(this::parseInt);
+        return Optional.ofNullable(parse(key, Integer.class, this::parseInt));
     }
 
     private int parseInt(Object value) {
@@ -205,7 +218,7 @@ public record Attributes(@JsonValue @NonNull ConcurrentHashMap<String, Object> t
      * @return the non-null value
      */
     public Optional<Long> getOptionalLong(@NonNull String key) {
-        return get(key, Object.class).map(this::parseLong);
+        return Optional.ofNullable(parse(key, Long.class, this::parseLong));
     }
 
     private long parseLong(Object value) {
@@ -300,7 +313,17 @@ public record Attributes(@JsonValue @NonNull ConcurrentHashMap<String, Object> t
      * @return a non-null optional
      */
     public Optional<ContactJid> getJid(@NonNull String key) {
-        return get(key, Object.class).map(this::parseJid);
+        return Optional.ofNullable(parse(key, ContactJid.class, this::parseJid));
+    }
+
+    // The attributes of decoded nodes cache the parsed value, as the same attribute is usually read more than once
+    private <T> T parse(String key, Class<T> type, Function<Object, T> parser) {
+        if (toMap instanceof CompactAttributeMap compactMap) {
+            return compactMap.parse(key, type, parser);
+        }
+
+        var value = toMap.get(key);
+        return value == null ? null : parser.apply(value);
     }
 
     private ContactJid parseJid(Object value) {
@@ -315,10 +338,15 @@ public record Attributes(@JsonValue @NonNull ConcurrentHashMap<String, Object> t
 
     /**
      * Copies this object
+     * The copy of the attributes of a decoded node can be modified
      *
      * @return a non-null instance
      */
     public Attributes copy() {
+        if (toMap instanceof CompactAttributeMap) {
+            return ofNullable(toMap);
+        }
+
         return new Attributes(toMap);
     }
 
@@ -0,0 +1,112 @@
+package it.auties.whatsapp.model.exchange;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * An immutable map that holds the attributes of a decoded node in two parallel arrays.
+ * Nodes usually have a handful of attributes, so a linear scan is faster and much smaller than hashing.
+ * Keys that are binary tokens are shared string instances, so most lookups are resolved by identity.
+ * The values that are parsed by the typed accessors of {@link Attributes} are cached next to the raw values.
+ */
+final class CompactAttributeMap extends AbstractMap<String, Object> {
+    private final String[] keys;
+    private final Object[] values;
+    private final Object[] parsed;
+
+    CompactAttributeMap(String[] keys, Object[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Mismatched keys and values: %s != %s".formatted(keys.length, values.length));
+        }
+
+        this.keys = keys;
+        this.values = values;
+        this.parsed = new Object[keys.length];
+    }
+
+    private int indexOf(Object key) {
+        for (var index = 0; index < keys.length; index++) {
+            if (keys[index] == key) {
+                return index;
+            }
+        }
+
+        for (var index = 0; index < keys.length; index++) {
+            if (keys[index].equals(key)) {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    <T> T parse(String key, Class<T> type, Function<Object, T> parser) {
+        var index = indexOf(key);
+        if (index == -1 || values[index] == null) {
+            return null;
+        }
+
+        var cached = parsed[index];
+        if (type.isInstance(cached)) {
+            return type.cast(cached);
+        }
+
+        var result = parser.apply(values[index]);
+        parsed[index] = result;
+        return result;
+    }
+
+    @Override
+    public Object get(Object key) {
+        var index = indexOf(key);
+        return index == -1 ? null : values[index];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) != -1;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < keys.length;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+
+                        var entry = new SimpleImmutableEntry<>(keys[index], values[index]);
+                        index++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+}
@@ -12,14 +12,11 @@ import it.auties.whatsapp.util.Protobuf;
 import lombok.NonNull;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
 import java.util.function.Function;
 
-import static java.util.concurrent.CompletableFuture.delayedExecutor;
-import static java.util.concurrent.TimeUnit.SECONDS;
-
 /**
  * An abstract model class that represents a request made from the client to the server.
  */
@@ -27,18 +24,12 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 public record Request(String id, @NonNull Object body, @NonNull CompletableFuture<Node> future,
                       Function<Node, Boolean> filter, Throwable caller) {
     /**
-     * The timeout in seconds before a Request wrapping a Node fails
-     */
-    private static final int TIMEOUT = 60;
-
-    /**
-     * The delayed executor used to cancel futures
+     * The timeout before a Request wrapping a Node fails
      */
-    private static final Executor EXECUTOR = delayedExecutor(TIMEOUT, SECONDS);
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
 
     private Request(String id, Function<Node, Boolean> filter, @NonNull Object body) {
         this(id, body, new CompletableFuture<>(), filter, trace(body));
-        EXECUTOR.execute(this::cancelTimedFuture);
     }
 
     private static Throwable trace(Object body) {
@@ -92,6 +83,7 @@ public record Request(String id, @NonNull Object body, @NonNull CompletableFutur
      * @return this request
      */
     public CompletableFuture<Node> send(@NonNull SocketSession session, @NonNull Keys keys, @NonNull Store store, boolean prologue, boolean response) {
+        scheduleTimeout(store);
         var ciphered = encryptMessage(keys);
         var buffer = BytesHelper.newBuffer();
         buffer.writeBytes(prologue ? keys.prologue() : new byte[0]);
@@ -104,6 +96,12 @@ public record Request(String id, @NonNull Object body, @NonNull CompletableFutur
         return future;
     }
 
+    // The timeout is cancelled as soon as the request completes, so answered requests don't linger in the timer
+    private void scheduleTimeout(Store store) {
+        var timeout = store.timer().schedule(this::cancelTimedFuture, TIMEOUT);
+        future.whenComplete((result, throwable) -> timeout.cancel());
+    }
+
     private byte[] encryptMessage(Keys keys) {
         var encodedBody = body();
         var body = getBody(encodedBody);
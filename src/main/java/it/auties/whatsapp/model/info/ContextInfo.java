@@ -1,6 +1,7 @@
 package it.auties.whatsapp.model.info;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import it.auties.protobuf.base.ProtobufMessage;
 import it.auties.protobuf.base.ProtobufProperty;
 import it.auties.whatsapp.model.chat.Chat;
@@ -8,6 +9,7 @@ import it.auties.whatsapp.model.chat.ChatDisappear;
 import it.auties.whatsapp.model.contact.Contact;
 import it.auties.whatsapp.model.contact.ContactJid;
 import it.auties.whatsapp.model.message.model.*;
+import it.auties.whatsapp.util.Protobuf;
 import lombok.*;
 import lombok.Builder.Default;
 import lombok.experimental.Accessors;
@@ -28,7 +30,7 @@ import static it.auties.protobuf.base.ProtobufType.*;
 @Jacksonized
 @Builder
 @Accessors(fluent = true)
-@ToString(exclude = "quotedMessageChat")
+@ToString(exclude = {"quotedMessageChat", "encodedQuotedMessage"})
 public final class ContextInfo implements Info, ProtobufMessage {
     /**
      * The jid of the message that this ContextualMessage quotes
@@ -50,9 +52,17 @@ public final class ContextInfo implements Info, ProtobufMessage {
     private Contact quotedMessageSender;
 
     /**
-     * The message container that this ContextualMessage quotes
+     * The encoded message container that this ContextualMessage quotes.
+     * The quoted message is kept in its wire format, so that it can be serialized again without being decoded.
      */
-    @ProtobufProperty(index = 3, type = MESSAGE, implementation = MessageContainer.class)
+    @ProtobufProperty(index = 3, type = BYTES)
+    @Setter(AccessLevel.NONE)
+    private byte[] encodedQuotedMessage;
+
+    /**
+     * The message container that this ContextualMessage quotes, decoded the first time that it's accessed
+     */
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     @Setter(AccessLevel.NONE)
     private MessageContainer quotedMessage;
 
@@ -206,6 +216,7 @@ public final class ContextInfo implements Info, ProtobufMessage {
         this.quotedMessageChatJid = quotedMessage.chat().jid();
         this.quotedMessageChat = quotedMessage.chat();
         this.quotedMessage = quotedMessage.message();
+        this.encodedQuotedMessage = Protobuf.writeMessage(quotedMessage.message());
     }
 
     /**
@@ -251,7 +262,7 @@ public final class ContextInfo implements Info, ProtobufMessage {
      * @return a boolean
      */
     public boolean hasQuotedMessage() {
-        return quotedMessageId().isPresent() && quotedMessage().isPresent() && quotedMessageChat().isPresent();
+        return quotedMessageId().isPresent() && (quotedMessage != null || encodedQuotedMessage != null) && quotedMessageChat().isPresent();
     }
 
     /**
@@ -265,13 +276,31 @@ public final class ContextInfo implements Info, ProtobufMessage {
 
     /**
      * Returns the quoted message
+     * The message is decoded from its wire format: changes made to the returned container are serialized only after it's set again using {@link ContextInfo#quotedMessage(MessageContainer)}
      *
      * @return an optional
      */
     public Optional<MessageContainer> quotedMessage() {
+        if (quotedMessage == null && encodedQuotedMessage != null) {
+            this.quotedMessage = Protobuf.readMessage(encodedQuotedMessage, MessageContainer.class);
+        }
+
         return Optional.ofNullable(quotedMessage);
     }
 
+    /**
+     * Sets the message container that this ContextualMessage quotes
+     * The wire format of the message is updated as well, so that it's serialized with its latest content
+     *
+     * @param quotedMessage the quoted message, can be null
+     * @return the same instance
+     */
+    public ContextInfo quotedMessage(MessageContainer quotedMessage) {
+        this.quotedMessage = quotedMessage;
+        this.encodedQuotedMessage = quotedMessage == null ? null : Protobuf.writeMessage(quotedMessage);
+        return this;
+    }
+
     /**
      * Returns the chat of the quoted message
      *
@@ -280,4 +309,19 @@ public final class ContextInfo implements Info, ProtobufMessage {
     public Optional<Chat> quotedMessageChat() {
         return Optional.ofNullable(quotedMessageChat);
     }
-}
\ No newline at end of file
+
+    public static class ContextInfoBuilder {
+        /**
+         * Sets the message container that this ContextualMessage quotes
+         *
+         * @param quotedMessage the quoted message, can be null
+         * @return the same builder
+         */
+        @JsonProperty("quotedMessage")
+        public ContextInfoBuilder quotedMessage(MessageContainer quotedMessage) {
+            this.quotedMessage = quotedMessage;
+            this.encodedQuotedMessage = quotedMessage == null ? null : Protobuf.writeMessage(quotedMessage);
+            return this;
+        }
+    }
+}
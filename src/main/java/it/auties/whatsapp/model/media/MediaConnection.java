@@ -4,6 +4,7 @@ import it.auties.whatsapp.model.exchange.Node;
 import lombok.NonNull;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public record MediaConnection(@NonNull String auth, int ttl, int maxBuckets, long timestamp,
                               @NonNull List<@NonNull String> hosts) {
@@ -20,4 +21,12 @@ public record MediaConnection(@NonNull String auth, int ttl, int maxBuckets, lon
                 .toList();
         return new MediaConnection(auth, ttl, maxBuckets, timestamp, hosts);
     }
+
+    public long expiration() {
+        return timestamp + TimeUnit.SECONDS.toMillis(ttl);
+    }
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() >= expiration();
+    }
 }
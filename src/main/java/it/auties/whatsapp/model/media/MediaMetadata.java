@@ -0,0 +1,11 @@
+package it.auties.whatsapp.model.media;
+
+/**
+ * A model class that represents the metadata of an audio or video file
+ *
+ * @param duration   the duration in seconds of the media, zero if unknown
+ * @param dimensions the dimensions of the first video track, {@link MediaDimensions#DEFAULT} if unknown
+ */
+public record MediaMetadata(int duration, MediaDimensions dimensions) {
+    public static final MediaMetadata EMPTY = new MediaMetadata(0, MediaDimensions.DEFAULT);
+}
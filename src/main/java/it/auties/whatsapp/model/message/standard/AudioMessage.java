@@ -6,6 +6,7 @@ import it.auties.whatsapp.model.info.ContextInfo;
 import it.auties.whatsapp.model.info.MessageInfo;
 import it.auties.whatsapp.model.message.model.MediaMessage;
 import it.auties.whatsapp.model.message.model.MediaMessageType;
+import it.auties.whatsapp.util.AudioDecoder;
 import it.auties.whatsapp.util.Clock;
 import it.auties.whatsapp.util.Medias;
 import lombok.*;
@@ -116,7 +117,7 @@ public final class AudioMessage extends MediaMessage {
 
     /**
      * Constructs a new builder to create a AudioMessage. The result can be later sent using {@link Whatsapp#sendMessage(MessageInfo)}
-     * {@link AudioMessage#duration} is computed automatically if ffprobe is installed on the host machine
+     * {@link AudioMessage#duration} is read from the container headers, or computed by ffprobe if the container isn't supported
      *
      * @param media        the non-null image that the new message holds
      * @param mimeType     the mime type of the new message, by default
@@ -124,10 +125,12 @@ public final class AudioMessage extends MediaMessage {
      * @param contextInfo  the context info that the new message wraps
      * @param voiceMessage whether the new message should be considered as a voice message or as a
      *                     normal audio, by default the latter is used
+     * @param audioDecoder the decoder used to read the samples of the audio to compute its waveform,
+     *                     by default the audio is read as raw pcm samples
      * @return a non-null new message
      */
     @Builder(builderClassName = "SimpleAudioMessageBuilder", builderMethodName = "simpleBuilder")
-    private static AudioMessage customBuilder(byte[] media, ContextInfo contextInfo, String mimeType, boolean voiceMessage) {
+    private static AudioMessage customBuilder(byte[] media, ContextInfo contextInfo, String mimeType, boolean voiceMessage, AudioDecoder audioDecoder) {
         return AudioMessage.builder()
                 .decodedMedia(media)
                 .mediaKeyTimestamp(Clock.nowSeconds())
@@ -135,7 +138,7 @@ public final class AudioMessage extends MediaMessage {
                 .duration(Medias.getDuration(media))
                 .mimetype(getMimeType(media, mimeType))
                 .voiceMessage(voiceMessage)
-                .waveform(Medias.getAudioWaveForm(media).orElse(null))
+                .waveform(Medias.getAudioWaveForm(media, Objects.requireNonNullElse(audioDecoder, AudioDecoder.RAW_FLOAT)).orElse(null))
                 .build();
     }
 
@@ -163,7 +163,7 @@ public final class DocumentMessage extends MediaMessage implements InteractiveHe
                 .fileName(fileName)
                 .pageCount(pageCount > 0 ? pageCount : Medias.getPagesCount(media, extension).orElse(1))
                 .title(title)
-                .thumbnail(thumbnail != null ? null : Medias.getThumbnail(media, extension).orElse(null))
+                .thumbnail(thumbnail != null ? thumbnail : Medias.getThumbnail(media, extension).orElse(null))
                 .thumbnailWidth(Spec.Whatsapp.THUMBNAIL_WIDTH)
                 .thumbnailHeight(Spec.Whatsapp.THUMBNAIL_HEIGHT)
                 .contextInfo(Objects.requireNonNullElseGet(contextInfo, ContextInfo::new))
@@ -170,7 +170,7 @@ public final class VideoMessage extends MediaMessage implements InteractiveHeade
      * Constructs a new builder to create a VideoMessage that wraps a video
      * The result can be later sent using {@link Whatsapp#sendMessage(MessageInfo)}
      * {@link VideoMessage#thumbnail} is computed automatically if ffmpeg is installed on the host machine
-     * {@link VideoMessage#duration} is computed automatically if ffprobe is installed on the host machine
+     * {@link VideoMessage#duration} is read from the container headers, or computed by ffprobe if the container isn't supported
      *
      * @param media       the non-null video that the new message wraps
      * @param mimeType    the mime type of the new message, by default
@@ -182,17 +182,16 @@ public final class VideoMessage extends MediaMessage implements InteractiveHeade
      */
     @Builder(builderClassName = "SimpleVideoMessageBuilder", builderMethodName = "simpleVideoBuilder")
     private static VideoMessage videoBuilder(byte[] media, String mimeType, String caption, byte[] thumbnail, ContextInfo contextInfo) {
-        var dimensions = Medias.getDimensions(media, true);
-        var duration = Medias.getDuration(media);
+        var metadata = Medias.getMetadata(media);
         return VideoMessage.builder()
                 .decodedMedia(media)
                 .mediaKeyTimestamp(Clock.nowSeconds())
                 .mimetype(requireNonNullElse(mimeType, VIDEO.defaultMimeType()))
                 .thumbnail(thumbnail != null ? thumbnail : Medias.getThumbnail(media, Medias.Format.VIDEO).orElse(null))
                 .caption(caption)
-                .width(dimensions.width())
-                .height(dimensions.height())
-                .duration(duration)
+                .width(metadata.dimensions().width())
+                .height(metadata.dimensions().height())
+                .duration(metadata.duration())
                 .contextInfo(Objects.requireNonNullElseGet(contextInfo, ContextInfo::new))
                 .build();
     }
@@ -203,7 +202,7 @@ public final class VideoMessage extends MediaMessage implements InteractiveHeade
      * This is because Whatsapp doesn't support standard gifs
      * The result can be later sent using {@link Whatsapp#sendMessage(MessageInfo)}
      * {@link VideoMessage#thumbnail} is computed automatically if ffmpeg is installed on the host machine
-     * {@link VideoMessage#duration} is computed automatically if ffprobe is installed on the host machine
+     * {@link VideoMessage#duration} is read from the container headers, or computed by ffprobe if the container isn't supported
      *
      * @param media          the non-null video that the new message wraps
      * @param mimeType       the mime type of the new message, by default
@@ -217,17 +216,16 @@ public final class VideoMessage extends MediaMessage implements InteractiveHeade
     @Builder(builderClassName = "SimpleGifBuilder", builderMethodName = "simpleGifBuilder")
     private static VideoMessage gifBuilder(byte[] media, String mimeType, String caption, VideoMessageAttribution gifAttribution, byte[] thumbnail, ContextInfo contextInfo) {
         Validate.isTrue(isNotGif(media, mimeType), "Cannot create a VideoMessage with mime type image/gif: gif messages on whatsapp are videos played as gifs");
-        var dimensions = Medias.getDimensions(media, true);
-        var duration = Medias.getDuration(media);
+        var metadata = Medias.getMetadata(media);
         return VideoMessage.builder()
                 .decodedMedia(media)
                 .mediaKeyTimestamp(Clock.nowSeconds())
                 .mimetype(requireNonNullElse(mimeType, VIDEO.defaultMimeType()))
                 .thumbnail(thumbnail != null ? thumbnail : Medias.getThumbnail(media, Medias.Format.VIDEO).orElse(null))
                 .caption(caption)
-                .width(dimensions.width())
-                .height(dimensions.height())
-                .duration(duration)
+                .width(metadata.dimensions().width())
+                .height(metadata.dimensions().height())
+                .duration(metadata.duration())
                 .gifPlayback(true)
                 .gifAttribution(requireNonNullElse(gifAttribution, VideoMessageAttribution.NONE))
                 .contextInfo(Objects.requireNonNullElseGet(contextInfo, ContextInfo::new))
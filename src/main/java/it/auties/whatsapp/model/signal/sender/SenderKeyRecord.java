@@ -41,6 +41,14 @@ public class SenderKeyRecord implements ProtobufMessage {
         states.put(id, oldList);
     }
 
+    public int skippedMessageKeysCount() {
+        return states.values()
+                .stream()
+                .flatMap(Collection::stream)
+                .mapToInt(state -> state.messageKeys().size())
+                .sum();
+    }
+
     public boolean isEmpty() {
         return states.isEmpty();
     }
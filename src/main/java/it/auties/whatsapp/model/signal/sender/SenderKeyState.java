@@ -2,6 +2,7 @@ package it.auties.whatsapp.model.signal.sender;
 
 import it.auties.protobuf.base.ProtobufMessage;
 import it.auties.whatsapp.model.signal.keypair.SignalKeyPair;
+import it.auties.whatsapp.model.signal.session.SkippedMessageKeys;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -10,7 +11,6 @@ import lombok.extern.jackson.Jacksonized;
 
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 
 @AllArgsConstructor
 @Builder
@@ -20,14 +20,14 @@ import java.util.concurrent.ConcurrentHashMap;
 public class SenderKeyState implements ProtobufMessage {
     private final int id;
     private final SignalKeyPair signingKey;
-    private final ConcurrentHashMap<Integer, SenderMessageKey> messageKeys;
+    private final SkippedMessageKeys<SenderMessageKey> messageKeys;
     private SenderChainKey chainKey;
 
     public SenderKeyState(int id, int iteration, byte[] seed, SignalKeyPair signingKey) {
         this.id = id;
         this.chainKey = new SenderChainKey(iteration, seed);
         this.signingKey = signingKey;
-        this.messageKeys = new ConcurrentHashMap<>();
+        this.messageKeys = new SkippedMessageKeys<>();
     }
 
     public void addSenderMessageKey(SenderMessageKey senderMessageKey) {
@@ -38,6 +38,10 @@ public class SenderKeyState implements ProtobufMessage {
         return Optional.ofNullable(messageKeys.get(iteration));
     }
 
+    public void removeSenderMessageKey(int iteration) {
+        messageKeys.remove(iteration);
+    }
+
     @Override
     public int hashCode() {
         return Objects.hashCode(this.id());
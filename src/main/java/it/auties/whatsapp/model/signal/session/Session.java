@@ -1,46 +1,143 @@
 package it.auties.whatsapp.model.signal.session;
 
-import lombok.Builder;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.NonNull;
-import lombok.extern.jackson.Jacksonized;
 
-import java.util.Objects;
-import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.*;
 
-@Builder
-@Jacksonized
-public record Session(Set<@NonNull SessionState> states) {
-    public Session(Set<SessionState> states) {
-        this.states = Objects.requireNonNullElseGet(states, ConcurrentHashMap::newKeySet);
-    }
+/**
+ * A model class that represents a signal session with a device.
+ * A session has at most one open state, which is used to encrypt messages, and keeps the states that were closed before it in an archive,
+ * so that messages that were encrypted with them can still be decrypted.
+ * As in the reference implementation of the Signal protocol, at most {@link #MAX_ARCHIVED_STATES} archived states are kept:
+ * when the limit is exceeded, the oldest ones are discarded.
+ */
+public final class Session {
+    /**
+     * The maximum number of archived states held by a session
+     */
+    public static final int MAX_ARCHIVED_STATES = 40;
+
+    @JsonIgnore
+    private SessionState currentState;
+
+    // Ordered from the oldest to the newest state
+    @JsonIgnore
+    private final LinkedHashMap<StateKey, SessionState> archivedStates;
 
     public Session() {
-        this(ConcurrentHashMap.newKeySet());
+        this.archivedStates = new LinkedHashMap<>();
+    }
+
+    @JsonCreator
+    public Session(@JsonProperty("states") Collection<@NonNull SessionState> states) {
+        this();
+        if (states == null) {
+            return;
+        }
+
+        for (var state : states) {
+            if (currentState == null && !state.closed()) {
+                this.currentState = state;
+                continue;
+            }
+
+            archiveState(state);
+        }
+    }
+
+    /**
+     * Returns all the states of this session, from the oldest to the newest
+     *
+     * @return a non-null list
+     */
+    @JsonProperty("states")
+    public synchronized List<SessionState> states() {
+        var results = new ArrayList<SessionState>(archivedStates.size() + 1);
+        results.addAll(archivedStates.values());
+        if (currentState != null) {
+            results.add(currentState);
+        }
+
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Returns the archived states of this session, from the newest to the oldest
+     *
+     * @return a non-null list
+     */
+    public synchronized List<SessionState> archivedStates() {
+        var results = new ArrayList<>(archivedStates.values());
+        Collections.reverse(results);
+        return Collections.unmodifiableList(results);
     }
 
-    public Session closeCurrentState() {
-        var currentState = currentState();
-        currentState.ifPresent(value -> value.closed(true));
+    public synchronized Session closeCurrentState() {
+        if (currentState == null) {
+            return this;
+        }
+
+        currentState.closed(true);
+        archiveState(currentState);
+        this.currentState = null;
         return this;
     }
 
-    public Optional<SessionState> currentState() {
-        return states.stream()
-                .filter(state -> !state.closed())
-                .findFirst();
+    public synchronized Optional<SessionState> currentState() {
+        return Optional.ofNullable(currentState);
+    }
+
+    public synchronized boolean hasState(int version, byte[] baseKey) {
+        return findStateUnsafe(version, baseKey) != null;
     }
 
-    public boolean hasState(int version, byte[] baseKey) {
-        return states.stream().anyMatch(state -> state.contentEquals(version, baseKey));
+    public synchronized Optional<SessionState> findState(int version, byte[] baseKey) {
+        return Optional.ofNullable(findStateUnsafe(version, baseKey));
     }
 
-    public Optional<SessionState> findState(int version, byte[] baseKey) {
-        return states.stream().filter(state -> state.contentEquals(version, baseKey)).findFirst();
+    private SessionState findStateUnsafe(int version, byte[] baseKey) {
+        if (currentState != null && currentState.contentEquals(version, baseKey)) {
+            return currentState;
+        }
+
+        return archivedStates.get(new StateKey(version, baseKey));
     }
 
-    public void addState(SessionState state) {
-        states.add(state);
+    public synchronized void addState(@NonNull SessionState state) {
+        if (currentState != null && !currentState.equals(state)) {
+            archiveState(currentState);
+        }
+
+        archivedStates.remove(StateKey.of(state));
+        this.currentState = state;
+    }
+
+    private void archiveState(SessionState state) {
+        archivedStates.put(StateKey.of(state), state);
+        var iterator = archivedStates.values().iterator();
+        while (archivedStates.size() > MAX_ARCHIVED_STATES) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    // States are identified by their version and base key, so arrays need to be compared by content
+    private record StateKey(int version, byte[] baseKey) {
+        private static StateKey of(SessionState state) {
+            return new StateKey(state.version(), state.baseKey());
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof StateKey that && version == that.version() && Arrays.equals(baseKey, that.baseKey());
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * version + Arrays.hashCode(baseKey);
+        }
     }
 }
@@ -4,16 +4,15 @@ import lombok.Builder;
 import lombok.NonNull;
 import lombok.extern.jackson.Jacksonized;
 
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 @Builder
 @Jacksonized
 public record SessionChain(AtomicInteger counter, AtomicReference<byte[]> key,
-                           ConcurrentHashMap<Integer, byte[]> messageKeys) {
+                           SkippedMessageKeys<byte[]> messageKeys) {
     public SessionChain(int counter, byte @NonNull [] key) {
-        this(new AtomicInteger(counter), new AtomicReference<>(key), new ConcurrentHashMap<>());
+        this(new AtomicInteger(counter), new AtomicReference<>(key), new SkippedMessageKeys<>());
     }
 
     public boolean hasMessageKey(int counter) {
@@ -1,5 +1,7 @@
 package it.auties.whatsapp.model.signal.session;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
 import it.auties.whatsapp.model.signal.keypair.SignalKeyPair;
 import lombok.*;
 import lombok.Builder.Default;
@@ -31,7 +33,7 @@ public class SessionState {
 
     @NonNull
     @Default
-    private final ConcurrentHashMap<String, SessionChain> chains = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ChainKey, SessionChain> chains = new ConcurrentHashMap<>();
 
     @Getter
     @Setter
@@ -58,21 +60,28 @@ public class SessionState {
     @Setter
     private boolean closed;
 
+    public int skippedMessageKeysCount() {
+        return chains.values()
+                .stream()
+                .mapToInt(chain -> chain.messageKeys().size())
+                .sum();
+    }
+
     public boolean hasChain(byte[] senderEphemeral) {
-        return chains.containsKey(HexFormat.of().formatHex(senderEphemeral));
+        return chains.containsKey(new ChainKey(senderEphemeral));
     }
 
     public Optional<SessionChain> findChain(byte[] senderEphemeral) {
-        return Optional.ofNullable(chains.get(HexFormat.of().formatHex(senderEphemeral)));
+        return Optional.ofNullable(chains.get(new ChainKey(senderEphemeral)));
     }
 
     public SessionState addChain(byte[] senderEphemeral, SessionChain chain) {
-        chains.put(HexFormat.of().formatHex(senderEphemeral), chain);
+        chains.put(new ChainKey(senderEphemeral), chain);
         return this;
     }
 
     public void removeChain(byte[] senderEphemeral) {
-        Objects.requireNonNull(chains.remove(HexFormat.of().formatHex(senderEphemeral)), "Cannot remove chain");
+        Objects.requireNonNull(chains.remove(new ChainKey(senderEphemeral)), "Cannot remove chain");
     }
 
     public boolean hasPreKey() {
@@ -91,4 +100,33 @@ public class SessionState {
     public boolean contentEquals(int version, byte[] baseKey) {
         return version() == version && Arrays.equals(baseKey(), baseKey);
     }
+
+    /**
+     * The key of a chain, that is the ephemeral key of its sender.
+     * Chains are looked up by the raw bytes of the key, but keys are serialized as hex strings
+     *
+     * @param key the raw ephemeral key
+     */
+    public record ChainKey(byte @NonNull [] key) {
+        @JsonCreator
+        public static ChainKey of(String serialized) {
+            return new ChainKey(HexFormat.of().parseHex(serialized));
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ChainKey that && Arrays.equals(key, that.key());
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(key);
+        }
+
+        @JsonValue
+        @Override
+        public String toString() {
+            return HexFormat.of().formatHex(key);
+        }
+    }
 }
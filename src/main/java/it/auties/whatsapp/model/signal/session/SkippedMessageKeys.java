@@ -0,0 +1,126 @@
+package it.auties.whatsapp.model.signal.session;
+
+import io.netty.util.collection.IntObjectHashMap;
+import it.auties.whatsapp.util.Spec;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A map that holds the message keys of a chain that were derived before the message that uses them arrived, for example because messages were delivered out of order.
+ * Keys are deleted once they are used and, as in the reference implementation of the Signal protocol, at most {@link Spec.Signal#MAX_MESSAGES} keys are kept:
+ * when the limit is exceeded, the keys of the oldest messages are discarded.
+ * Keys are indexed by counter in a primitive map, but are serialized as a regular map.
+ *
+ * @param <V> the type of the message keys
+ */
+public final class SkippedMessageKeys<V> extends AbstractMap<Integer, V> {
+    private static final AtomicLong EVICTED = new AtomicLong();
+
+    private final IntObjectHashMap<V> keys;
+    private final int maxSize;
+    // Counters grow with every message, so the oldest key is the one with the lowest counter
+    private int oldest;
+
+    public SkippedMessageKeys() {
+        this(Spec.Signal.MAX_MESSAGES);
+    }
+
+    public SkippedMessageKeys(int maxSize) {
+        this.keys = new IntObjectHashMap<>();
+        this.maxSize = maxSize;
+        this.oldest = Integer.MAX_VALUE;
+    }
+
+    public synchronized V get(int counter) {
+        return keys.get(counter);
+    }
+
+    public synchronized boolean containsKey(int counter) {
+        return keys.containsKey(counter);
+    }
+
+    public synchronized V put(int counter, V value) {
+        var previous = keys.put(counter, value);
+        this.oldest = Math.min(oldest, counter);
+        while (keys.size() > maxSize) {
+            evictOldest();
+        }
+
+        return previous;
+    }
+
+    private void evictOldest() {
+        while (!keys.containsKey(oldest)) {
+            oldest++;
+        }
+
+        keys.remove(oldest++);
+        EVICTED.incrementAndGet();
+    }
+
+    public synchronized V remove(int counter) {
+        return keys.remove(counter);
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Integer counter ? get(counter.intValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer counter && containsKey(counter.intValue());
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        return put(key.intValue(), value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Integer counter ? remove(counter.intValue()) : null;
+    }
+
+    @Override
+    public synchronized int size() {
+        return keys.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        keys.clear();
+        this.oldest = Integer.MAX_VALUE;
+    }
+
+    // A snapshot, so that the keys can be serialized while messages are being decrypted
+    @Override
+    public synchronized Set<Entry<Integer, V>> entrySet() {
+        var entries = new LinkedHashSet<Entry<Integer, V>>(keys.size());
+        for (var entry : keys.entries()) {
+            entries.add(new SimpleImmutableEntry<>(entry.key(), entry.value()));
+        }
+
+        return Collections.unmodifiableSet(entries);
+    }
+
+    /**
+     * Returns the number of message keys that were discarded by all the instances of this class since the process started
+     *
+     * @return an unsigned long
+     */
+    public static long evicted() {
+        return EVICTED.get();
+    }
+
+    /**
+     * A model class that describes how many skipped message keys are held in memory
+     *
+     * @param retained the number of skipped message keys that are held
+     * @param evicted  the number of skipped message keys that were discarded because the limit was exceeded, since the process started
+     */
+    public record Metrics(long retained, long evicted) {
+
+    }
+}
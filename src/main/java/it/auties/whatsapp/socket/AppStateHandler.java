@@ -52,7 +52,7 @@ class AppStateHandler {
 
     private synchronized ExecutorService getOrCreateAppService(){
         if(executor == null || executor.isShutdown()){
-            executor = Executors.newSingleThreadExecutor();
+            executor = socketHandler.newSerialExecutor();
         }
 
         return executor;
@@ -0,0 +1,88 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.api.ConnectionMetrics;
+import it.auties.whatsapp.api.ReconnectPolicy;
+
+import java.time.Duration;
+import java.util.Optional;
+
+// Tracks the reconnection attempts of a session and how long each connection takes to be established
+// A connection is established as soon as the session logs in, even if some of the steps needed to send messages fail afterwards
+final class ConnectionTracker {
+    // A connection that drops before this period is treated as a failed attempt, so that a connection that flaps keeps backing off
+    private static final long STABLE_PERIOD = Duration.ofSeconds(30).toNanos();
+
+    private long connectingSince;
+    private long readySince;
+    private int attempts;
+    private boolean resumable;
+    private long connections;
+    private long reconnections;
+    private long resumptions;
+    private long lastTimeToReady;
+    private long totalTimeToReady;
+    private long maxTimeToReady;
+
+    synchronized void onConnecting() {
+        if (connectingSince == 0) {
+            this.connectingSince = System.nanoTime();
+        }
+    }
+
+    synchronized Optional<Duration> nextAttempt(ReconnectPolicy policy) {
+        if (readySince != 0 && System.nanoTime() - readySince >= STABLE_PERIOD) {
+            this.attempts = 0;
+        }
+
+        this.readySince = 0;
+        var delay = policy.delay(++attempts);
+        if (delay.isEmpty()) {
+            this.attempts = 0;
+            this.connectingSince = 0;
+            return Optional.empty();
+        }
+
+        reconnections++;
+        onConnecting();
+        return delay;
+    }
+
+    // The state of the previous connection can be reused only if the session was logged in with the same keys and is reconnecting after losing the connection
+    synchronized boolean isResuming() {
+        return resumable && attempts > 0;
+    }
+
+    synchronized void onEstablished() {
+        if (isResuming()) {
+            resumptions++;
+        }
+
+        if (connectingSince != 0) {
+            this.lastTimeToReady = System.nanoTime() - connectingSince;
+            this.totalTimeToReady += lastTimeToReady;
+            this.maxTimeToReady = Math.max(maxTimeToReady, lastTimeToReady);
+            connections++;
+        }
+
+        this.connectingSince = 0;
+        this.readySince = System.nanoTime();
+        this.resumable = true;
+    }
+
+    synchronized void onStopped() {
+        this.connectingSince = 0;
+        this.readySince = 0;
+        this.attempts = 0;
+    }
+
+    synchronized void onReset() {
+        onStopped();
+        this.resumable = false;
+    }
+
+    synchronized ConnectionMetrics metrics() {
+        var average = connections == 0 ? 0 : totalTimeToReady / connections;
+        return new ConnectionMetrics(connections, reconnections, resumptions, attempts,
+                Duration.ofNanos(lastTimeToReady), Duration.ofNanos(average), Duration.ofNanos(maxTimeToReady));
+    }
+}
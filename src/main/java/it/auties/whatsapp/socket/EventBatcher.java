@@ -0,0 +1,61 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.util.TimerWheel;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Events of the same kind that are fired within a short window, like the chats of consecutive history sync chunks, are delivered as a single batch
+// Items are delivered in the order they were added
+final class EventBatcher<T> {
+    private static final Duration WINDOW = Duration.ofMillis(250);
+    private static final int MAX_BATCH_SIZE = 4096;
+
+    private final Supplier<TimerWheel> timer;
+    private final Consumer<List<T>> emitter;
+    private List<T> pending;
+    private TimerWheel.Timeout timeout;
+
+    EventBatcher(Supplier<TimerWheel> timer, Consumer<List<T>> emitter) {
+        this.timer = timer;
+        this.emitter = emitter;
+    }
+
+    // Batches are emitted while holding the lock, so that a full batch and an expired one can't be delivered out of order
+    synchronized void add(T item) {
+        if (pending == null) {
+            this.pending = new ArrayList<>();
+            this.timeout = timer.get().schedule(this::flush, WINDOW);
+        }
+
+        pending.add(item);
+        if (pending.size() >= MAX_BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    synchronized void flush() {
+        if (timeout != null) {
+            timeout.cancel();
+            this.timeout = null;
+        }
+
+        var items = pending;
+        this.pending = null;
+        if (items != null) {
+            emitter.accept(items);
+        }
+    }
+
+    synchronized void clear() {
+        if (timeout != null) {
+            timeout.cancel();
+            this.timeout = null;
+        }
+
+        this.pending = null;
+    }
+}
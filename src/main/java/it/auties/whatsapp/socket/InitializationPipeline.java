@@ -0,0 +1,213 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.api.ErrorHandler.Location;
+import it.auties.whatsapp.api.InitializationReport;
+import it.auties.whatsapp.api.InitializationReport.Result;
+import it.auties.whatsapp.util.Validate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+// Runs the steps that initialize a session after it logs in: each step starts as soon as the steps it depends on succeed, and critical steps are started first
+// The session is ready to send messages only if all the critical steps succeed
+final class InitializationPipeline {
+    private final boolean resumed;
+    private final BiConsumer<Location, Throwable> errorHandler;
+    private final Map<String, Step> steps;
+    private long startedAt;
+    private long readyAt;
+
+    InitializationPipeline(boolean resumed, BiConsumer<Location, Throwable> errorHandler) {
+        this.resumed = resumed;
+        this.errorHandler = errorHandler;
+        this.steps = new LinkedHashMap<>();
+    }
+
+    InitializationPipeline add(String name, boolean critical, Location location, Supplier<? extends CompletableFuture<?>> task, String... dependencies) {
+        return add(name, critical, false, location, task, dependencies);
+    }
+
+    // A step that runs once its dependencies are done, even if some of them failed or were skipped
+    InitializationPipeline addAfter(String name, Location location, Supplier<? extends CompletableFuture<?>> task, String... dependencies) {
+        return add(name, false, true, location, task, dependencies);
+    }
+
+    // Dependencies must be added before the steps that use them, so the graph can't have cycles
+    private InitializationPipeline add(String name, boolean critical, boolean lenient, Location location, Supplier<? extends CompletableFuture<?>> task, String... dependencies) {
+        Validate.isTrue(startedAt == 0, "Cannot add a step to a pipeline that was already started", IllegalStateException.class);
+        Validate.isTrue(!steps.containsKey(name), "Duplicated step: %s", name);
+        var resolved = new ArrayList<Step>(dependencies.length);
+        for (var dependency : dependencies) {
+            var step = steps.get(dependency);
+            Validate.isTrue(step != null, "Unknown dependency for step %s: %s", name, dependency);
+            Validate.isTrue(!critical || step.critical, "Critical step %s cannot depend on non-critical step %s", name, dependency);
+            resolved.add(step);
+        }
+
+        steps.put(name, new Step(name, critical, lenient, location, task, resolved));
+        return this;
+    }
+
+    boolean contains(String name) {
+        return steps.containsKey(name);
+    }
+
+    void start() {
+        synchronized (this) {
+            Validate.isTrue(startedAt == 0, "Pipeline was already started", IllegalStateException.class);
+            this.startedAt = System.nanoTime();
+        }
+
+        steps.values()
+                .stream()
+                .filter(step -> step.critical)
+                .forEach(this::schedule);
+        steps.values()
+                .stream()
+                .filter(step -> !step.critical)
+                .forEach(this::schedule);
+    }
+
+    private void schedule(Step step) {
+        if (step.dependencies.isEmpty()) {
+            run(step);
+            return;
+        }
+
+        var dependencies = step.dependencies
+                .stream()
+                .map(dependency -> dependency.settled)
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(dependencies).thenRunAsync(() -> {
+            if (step.lenient || step.dependencies.stream().allMatch(dependency -> dependency.result == Result.SUCCESS)) {
+                run(step);
+            } else {
+                complete(step, Result.SKIPPED);
+            }
+        });
+    }
+
+    private void run(Step step) {
+        synchronized (this) {
+            step.startedAt = System.nanoTime();
+        }
+
+        try {
+            step.task.get().whenComplete((ignored, throwable) -> onCompletion(step, throwable));
+        } catch (Throwable throwable) {
+            onCompletion(step, throwable);
+        }
+    }
+
+    private void onCompletion(Step step, Throwable throwable) {
+        if (throwable == null) {
+            complete(step, Result.SUCCESS);
+            return;
+        }
+
+        complete(step, Result.FAILURE);
+        if (step.location != null) {
+            errorHandler.accept(step.location, throwable);
+        }
+    }
+
+    private void complete(Step step, Result result) {
+        synchronized (this) {
+            step.completedAt = System.nanoTime();
+            step.result = result;
+        }
+
+        step.settled.complete(null);
+    }
+
+    // Completes when all the steps are done, whether they succeeded or not
+    CompletableFuture<Void> settled(String... names) {
+        var futures = Arrays.stream(names)
+                .map(steps::get)
+                .filter(Objects::nonNull)
+                .map(step -> step.settled)
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures);
+    }
+
+    // Completes with whether all the critical steps succeeded, as soon as they are done
+    CompletableFuture<Boolean> ready() {
+        var futures = steps.values()
+                .stream()
+                .filter(step -> step.critical)
+                .map(step -> step.settled)
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures)
+                .thenApply(ignored -> onReady());
+    }
+
+    private synchronized boolean onReady() {
+        if (readyAt == 0) {
+            this.readyAt = System.nanoTime();
+        }
+
+        return isReady();
+    }
+
+    private boolean isReady() {
+        return steps.values()
+                .stream()
+                .filter(step -> step.critical)
+                .allMatch(step -> step.result == Result.SUCCESS);
+    }
+
+    CompletableFuture<InitializationReport> completion() {
+        var futures = steps.values()
+                .stream()
+                .map(step -> step.settled)
+                .toArray(CompletableFuture[]::new);
+        return ready().thenCompose(ignored -> CompletableFuture.allOf(futures))
+                .thenApply(ignored -> report());
+    }
+
+    private synchronized InitializationReport report() {
+        var completedAt = steps.values()
+                .stream()
+                .mapToLong(step -> step.completedAt)
+                .max()
+                .orElse(startedAt);
+        var results = steps.values()
+                .stream()
+                .map(step -> step.toReport(startedAt))
+                .sorted(Comparator.comparing(InitializationReport.Step::startedAfter))
+                .toList();
+        return new InitializationReport(resumed, isReady(), Duration.ofNanos(readyAt - startedAt), Duration.ofNanos(completedAt - startedAt), results);
+    }
+
+    private static final class Step {
+        private final String name;
+        private final boolean critical;
+        private final boolean lenient;
+        private final Location location;
+        private final Supplier<? extends CompletableFuture<?>> task;
+        private final List<Step> dependencies;
+        private final CompletableFuture<Void> settled;
+        private long startedAt;
+        private long completedAt;
+        private volatile Result result;
+
+        private Step(String name, boolean critical, boolean lenient, Location location, Supplier<? extends CompletableFuture<?>> task, List<Step> dependencies) {
+            this.name = name;
+            this.critical = critical;
+            this.lenient = lenient;
+            this.location = location;
+            this.task = task;
+            this.dependencies = dependencies;
+            this.settled = new CompletableFuture<>();
+        }
+
+        // Skipped steps are never started, so they are reported as started and completed at the same time
+        private InitializationReport.Step toReport(long pipelineStartedAt) {
+            var start = startedAt == 0 ? completedAt : startedAt;
+            return new InitializationReport.Step(name, critical, Duration.ofNanos(start - pipelineStartedAt), Duration.ofNanos(completedAt - start), result);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.api.EventBusOverflowPolicy;
+import it.auties.whatsapp.api.EventBusSetting;
+import it.auties.whatsapp.listener.Listener;
+import it.auties.whatsapp.listener.ListenerMetrics;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+// Every listener has a bounded mailbox that is drained by at most one task at a time, so events are delivered in order
+// Listeners can fire events, for example by sending a message, so the threads that drain a mailbox never wait for another mailbox to have room
+class ListenerEventBus {
+    // Events that describe a state: only the latest one matters to a listener that is lagging behind
+    private static final Set<String> COALESCABLE_EVENTS = Set.of("onContactPresence", "onChats", "onContacts", "onStatus",
+            "onHistorySyncProgress", "onMetadata", "onFeatures", "onLinkedDevices");
+    private static final int DRAIN_BATCH_SIZE = 64;
+
+    private final EventBusSetting setting;
+    private final Executor executor;
+    private final BiConsumer<Consumer<Listener>, Listener> invoker;
+    private final Map<Listener, Mailbox> mailboxes;
+    private final ThreadLocal<Boolean> inDrain;
+
+    ListenerEventBus(EventBusSetting setting, Executor executor, BiConsumer<Consumer<Listener>, Listener> invoker) {
+        this.setting = setting;
+        this.executor = executor;
+        this.invoker = invoker;
+        this.mailboxes = new ConcurrentHashMap<>();
+        this.inDrain = ThreadLocal.withInitial(() -> false);
+    }
+
+    void publish(Collection<Listener> listeners, String event, Object key, Consumer<Listener> consumer) {
+        var coalescingKey = COALESCABLE_EVENTS.contains(event) ? "%s:%s".formatted(event, key) : null;
+        for (var listener : listeners) {
+            mailboxes.computeIfAbsent(listener, Mailbox::new)
+                    .offer(new Envelope(coalescingKey, consumer, System.nanoTime()));
+        }
+    }
+
+    Map<Listener, ListenerMetrics> metrics() {
+        return mailboxes.values()
+                .stream()
+                .collect(Collectors.toUnmodifiableMap(mailbox -> mailbox.listener, Mailbox::metrics));
+    }
+
+    // Events that were queued for the listener are discarded
+    void remove(Listener listener) {
+        var mailbox = mailboxes.remove(listener);
+        if (mailbox != null) {
+            mailbox.clear();
+        }
+    }
+
+    private record Envelope(String coalescingKey, Consumer<Listener> consumer, long timestamp) {
+
+    }
+
+    private final class Mailbox {
+        private final Listener listener;
+        private final ArrayDeque<Envelope> queue;
+        private final ReentrantLock lock;
+        private final Condition notFull;
+        private boolean draining;
+        private long delivered;
+        private long dropped;
+        private long coalesced;
+
+        private Mailbox(Listener listener) {
+            this.listener = listener;
+            this.queue = new ArrayDeque<>();
+            this.lock = new ReentrantLock();
+            this.notFull = lock.newCondition();
+        }
+
+        private void offer(Envelope envelope) {
+            lock.lock();
+            try {
+                if (!enqueue(envelope) || draining) {
+                    return;
+                }
+
+                this.draining = true;
+            } finally {
+                lock.unlock();
+            }
+
+            executor.execute(this::drain);
+        }
+
+        private boolean enqueue(Envelope envelope) {
+            if (setting.overflowPolicy() == EventBusOverflowPolicy.COALESCE && coalesce(envelope)) {
+                return false;
+            }
+
+            while (queue.size() >= setting.queueSize()) {
+                if (setting.overflowPolicy() != EventBusOverflowPolicy.BLOCK) {
+                    queue.pollFirst();
+                    dropped++;
+                    continue;
+                }
+
+                if (inDrain.get()) {
+                    dropped++;
+                    return false;
+                }
+
+                try {
+                    notFull.await();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    dropped++;
+                    return false;
+                }
+            }
+
+            queue.addLast(envelope);
+            return true;
+        }
+
+        private boolean coalesce(Envelope envelope) {
+            if (envelope.coalescingKey() == null) {
+                return false;
+            }
+
+            var iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                var queued = iterator.next();
+                if (Objects.equals(queued.coalescingKey(), envelope.coalescingKey())) {
+                    iterator.remove();
+                    queue.addLast(envelope);
+                    coalesced++;
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        // A drain can run inside another one if the executor rejects it and runs it in the calling thread
+        private void drain() {
+            var nested = inDrain.get();
+            inDrain.set(true);
+            try {
+                drainBatch();
+            } finally {
+                inDrain.set(nested);
+            }
+        }
+
+        private void drainBatch() {
+            for (var index = 0; index < DRAIN_BATCH_SIZE; index++) {
+                Envelope envelope;
+                lock.lock();
+                try {
+                    envelope = queue.pollFirst();
+                    if (envelope == null) {
+                        this.draining = false;
+                        return;
+                    }
+
+                    notFull.signal();
+                } finally {
+                    lock.unlock();
+                }
+
+                invoker.accept(envelope.consumer(), listener);
+                lock.lock();
+                try {
+                    delivered++;
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            // Yield the thread so that a busy listener doesn't starve the others
+            executor.execute(this::drain);
+        }
+
+        private ListenerMetrics metrics() {
+            lock.lock();
+            try {
+                var oldest = queue.peekFirst();
+                var lag = oldest == null ? Duration.ZERO : Duration.ofNanos(System.nanoTime() - oldest.timestamp());
+                return new ListenerMetrics(queue.size(), delivered, dropped, coalesced, lag);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void clear() {
+            lock.lock();
+            try {
+                queue.clear();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -35,6 +35,7 @@ import it.auties.whatsapp.util.*;
 
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
@@ -46,7 +47,10 @@ import static it.auties.whatsapp.model.sync.HistorySync.Type.*;
 import static it.auties.whatsapp.util.Spec.Signal.*;
 
 class MessageHandler {
-    private static final int HISTORY_SYNC_TIMEOUT = 10;
+    private static final Duration HISTORY_SYNC_TIMEOUT = Duration.ofSeconds(10);
+    // The server redelivers messages whose ack got lost, usually right after a reconnection
+    private static final Duration PROCESSED_MESSAGES_TIME_TO_LIVE = Duration.ofHours(1);
+    private static final int MAX_PROCESSED_MESSAGES = 8192;
 
     private final SocketHandler socketHandler;
     private final Map<ContactJid, List<PastParticipant>> pastParticipantsQueue;
@@ -54,8 +58,9 @@ class MessageHandler {
     private final Logger logger;
     private final Set<ContactJid> attributedGroups;
     private final EnumSet<HistorySync.Type> historySyncTypes;
+    private final ExpiringMap<String, MessageKey> processedMessages;
     private ExecutorService executor;
-    private CompletableFuture<?> historySyncTask;
+    private TimerWheel.Timeout historySyncTask;
 
     protected MessageHandler(SocketHandler socketHandler) {
         this.socketHandler = socketHandler;
@@ -64,11 +69,12 @@ class MessageHandler {
         this.attributedGroups = ConcurrentHashMap.newKeySet();
         this.logger = System.getLogger("MessageHandler");
         this.historySyncTypes = EnumSet.noneOf(HistorySync.Type.class);
+        this.processedMessages = new ExpiringMap<>(PROCESSED_MESSAGES_TIME_TO_LIVE, MAX_PROCESSED_MESSAGES);
     }
 
     private synchronized ExecutorService getOrCreateMessageService(){
         if(executor == null || executor.isShutdown()){
-            executor = Executors.newSingleThreadExecutor();
+            executor = socketHandler.newSerialExecutor();
         }
 
         return executor;
@@ -365,6 +371,14 @@ class MessageHandler {
     public synchronized void decode(Node node) {
         getOrCreateMessageService().execute(() -> {
             try {
+                var processed = findProcessedMessage(node);
+                if (processed.isPresent()) {
+                    // The message was already decoded, but the receipt is sent again as the previous one might have been lost
+                    var key = processed.get();
+                    sendReceipt(node, key.id(), key.chatJid(), key.senderJid().orElse(null), key.fromMe());
+                    return;
+                }
+
                 var businessName = getBusinessName(node);
                 var encrypted = node.findNodes("enc");
                 if (node.hasNode("unavailable") && !node.hasNode("enc")) {
@@ -378,6 +392,25 @@ class MessageHandler {
         });
     }
 
+    private Optional<MessageKey> findProcessedMessage(Node node) {
+        var id = node.attributes().getNullableString("id");
+        var from = node.attributes().getJid("from").orElse(null);
+        if (id == null || from == null) {
+            return Optional.empty();
+        }
+
+        var participant = node.attributes().getJid("participant").orElse(null);
+        return processedMessages.get(getProcessedMessageKey(from, participant, id));
+    }
+
+    private String getProcessedMessageKey(ContactJid from, ContactJid participant, String id) {
+        return "%s:%s:%s".formatted(from, participant, id);
+    }
+
+    protected ExpiringMap.Metrics processedMessagesMetrics() {
+        return processedMessages.metrics();
+    }
+
     private String getBusinessName(Node node) {
         return node.attributes()
                 .getOptionalString("verified_name")
@@ -500,6 +533,7 @@ class MessageHandler {
             attributeMessageReceipt(info);
             socketHandler.store().attribute(info);
             saveMessage(info, offline);
+            processedMessages.put(getProcessedMessageKey(from, participant, id), key);
             sendReceipt(infoNode, id, key.chatJid(), key.senderJid().orElse(null), key.fromMe());
             socketHandler.onReply(info);
         } catch (Throwable throwable) {
@@ -512,7 +546,7 @@ class MessageHandler {
         var category = infoNode.attributes().getString("category");
         var receiptType = getReceiptType(category, fromMe);
         socketHandler.sendMessageAck(infoNode);
-        socketHandler.sendReceipt(chatJid, participant, List.of(id), receiptType);
+        socketHandler.queueReceipt(chatJid, participant, id, receiptType);
     }
 
     private String getReceiptType(String category, boolean fromMe) {
@@ -683,11 +717,12 @@ class MessageHandler {
     }
 
     private void scheduleTimeoutSync(HistorySync history) {
-        var executor = CompletableFuture.delayedExecutor(HISTORY_SYNC_TIMEOUT, TimeUnit.SECONDS);
         if(historySyncTask != null){
-            historySyncTask.cancel(true);
+            historySyncTask.cancel();
         }
-        this.historySyncTask = CompletableFuture.runAsync(() -> handleChatsSync(history, true), executor);
+        this.historySyncTask = socketHandler.store()
+                .timer()
+                .schedule(() -> handleChatsSync(history, true), HISTORY_SYNC_TIMEOUT);
     }
 
     private void onMessageDeleted(MessageInfo info, MessageInfo message) {
@@ -732,7 +767,7 @@ class MessageHandler {
                 .orElseGet(() -> createNewContact(jid));
         contact.chosenName(pushName.name());
         var action = new ContactAction(pushName.name(), null, null);
-        socketHandler.onAction(action, MessageIndexInfo.of("contact", jid, null, true));
+        socketHandler.onContactUpdate(contact, action, MessageIndexInfo.of("contact", jid, null, true));
     }
 
     private Contact createNewContact(ContactJid jid) {
@@ -756,17 +791,18 @@ class MessageHandler {
         }
 
         handleConversations(history);
+        var conversations = new HashSet<>(history.conversations());
         for (var cached : historyCache) {
             var chat = socketHandler.store()
                     .findChatByJid(cached.jid())
                     .orElse(cached);
-            var done = forceDone || !history.conversations().contains(cached);
+            var done = forceDone || !conversations.contains(cached);
             if(done){
                 chat.endOfHistoryTransferType(EndOfHistoryTransferType.COMPLETE_AND_NO_MORE_MESSAGE_REMAIN_ON_PRIMARY);
             }
             socketHandler.onChatRecentMessages(chat, done);
         }
-        historyCache.removeIf(entry -> !history.conversations().contains(entry));
+        historyCache.removeIf(entry -> !conversations.contains(entry));
     }
 
     private void handleConversations(HistorySync history) {
@@ -804,10 +840,14 @@ class MessageHandler {
 
     protected void dispose() {
         historyCache.clear();
+        processedMessages.clear();
         if(executor != null && !executor.isShutdown()) {
             executor.shutdownNow();
         }
-        historySyncTask = null;
+        if(historySyncTask != null){
+            historySyncTask.cancel();
+            historySyncTask = null;
+        }
         historySyncTypes.clear();
     }
 
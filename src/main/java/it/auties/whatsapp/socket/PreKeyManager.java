@@ -0,0 +1,121 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.model.exchange.Node;
+import it.auties.whatsapp.model.signal.keypair.SignalKeyPair;
+import it.auties.whatsapp.model.signal.keypair.SignalPreKeyPair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static it.auties.whatsapp.util.Spec.Signal.KEY_BUNDLE_TYPE;
+
+// Key pairs are generated ahead of time by a background task, started as soon as the manager is created, so that uploading pre keys never waits on curve25519
+// Ids are only assigned when the keys are uploaded, which keeps them sequential and consistent with the ones stored in the keys
+final class PreKeyManager {
+    private static final int MIN_SERVER_PRE_KEYS = 5;
+    private static final int UPLOAD_CHUNK = 30;
+    private static final int POOL_SIZE = UPLOAD_CHUNK * 2;
+
+    private final SocketHandler socketHandler;
+    private final Queue<SignalKeyPair> pool;
+    private final AtomicBoolean refilling;
+    private final AtomicReference<CompletableFuture<Void>> uploading;
+
+    PreKeyManager(SocketHandler socketHandler) {
+        this.socketHandler = socketHandler;
+        this.pool = new ConcurrentLinkedQueue<>();
+        this.refilling = new AtomicBoolean();
+        this.uploading = new AtomicReference<>();
+        refill();
+    }
+
+    void refill() {
+        if (pool.size() >= POOL_SIZE || !refilling.compareAndSet(false, true)) {
+            return;
+        }
+
+        CompletableFuture.runAsync(() -> {
+            try {
+                while (pool.size() < POOL_SIZE) {
+                    pool.add(SignalKeyPair.random());
+                }
+            } finally {
+                refilling.set(false);
+            }
+        });
+    }
+
+    CompletableFuture<Void> onServerCount(long count) {
+        return count < MIN_SERVER_PRE_KEYS ? upload() : CompletableFuture.completedFuture(null);
+    }
+
+    // Failures are left to the caller, so that a failed query is never mistaken for a successful one
+    CompletableFuture<Void> queryServerCount() {
+        refill();
+        return socketHandler.sendQuery("get", "encrypt", Node.of("count"))
+                .thenComposeAsync(result -> onServerCount(parseCount(result)));
+    }
+
+    private long parseCount(Node node) {
+        return node.findNode("count")
+                .orElseThrow(() -> new NoSuchElementException("Missing count in pre keys response"))
+                .attributes()
+                .getLong("value");
+    }
+
+    // Concurrent callers share the upload that is in flight, and the keys are prepared on a background thread in case the pool is empty
+    CompletableFuture<Void> upload() {
+        var upload = new CompletableFuture<Void>();
+        var running = uploading.compareAndExchange(null, upload);
+        if (running != null) {
+            return running;
+        }
+
+        CompletableFuture.supplyAsync(this::createPreKeys)
+                .thenCompose(this::sendPreKeys)
+                .whenComplete((ignored, throwable) -> {
+                    uploading.set(null);
+                    if (throwable != null) {
+                        upload.completeExceptionally(throwable);
+                    } else {
+                        upload.complete(null);
+                    }
+                });
+        return upload;
+    }
+
+    private List<Node> createPreKeys() {
+        var keys = socketHandler.keys();
+        var startId = keys.lastPreKeyId() + 1;
+        var preKeys = new ArrayList<Node>(UPLOAD_CHUNK);
+        for (var id = startId; id < startId + UPLOAD_CHUNK; id++) {
+            var keyPair = takeKeyPair();
+            var preKey = new SignalPreKeyPair(id, keyPair.publicKey(), keyPair.privateKey());
+            keys.addPreKey(preKey);
+            preKeys.add(preKey.toNode());
+        }
+
+        refill();
+        return preKeys;
+    }
+
+    private CompletableFuture<Node> sendPreKeys(List<Node> preKeys) {
+        var keys = socketHandler.keys();
+        return socketHandler.sendQuery("set", "encrypt",
+                Node.of("registration", keys.encodedRegistrationId()),
+                Node.of("type", KEY_BUNDLE_TYPE),
+                Node.of("identity", keys.identityKeyPair().publicKey()),
+                Node.of("list", preKeys), keys.signedKeyPair().toNode());
+    }
+
+    private SignalKeyPair takeKeyPair() {
+        var keyPair = pool.poll();
+        return keyPair != null ? keyPair : SignalKeyPair.random();
+    }
+}
@@ -0,0 +1,85 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.model.chat.Chat;
+import it.auties.whatsapp.model.contact.ContactJid;
+import it.auties.whatsapp.model.contact.ContactStatus;
+import it.auties.whatsapp.util.BoundedCache;
+import it.auties.whatsapp.util.TimerWheel;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Remembers the last presence that listeners were notified about for each contact in each chat
+// Transitions that happen within the coalescing window are merged, and only the net change, if any, is delivered
+final class PresenceCoalescer {
+    private static final int MAX_TRACKED_PRESENCES = 8192;
+
+    private final Supplier<TimerWheel> timer;
+    private final Emitter emitter;
+    private final BoundedCache<Key, ContactStatus> emitted;
+    private final Map<Key, Update> pending;
+
+    PresenceCoalescer(Supplier<TimerWheel> timer, Emitter emitter) {
+        this.timer = timer;
+        this.emitter = emitter;
+        this.emitted = new BoundedCache<>(MAX_TRACKED_PRESENCES);
+        this.pending = new ConcurrentHashMap<>();
+    }
+
+    void update(Chat chat, ContactJid contact, ContactStatus status, Duration window) {
+        var key = new Key(chat.jid(), contact);
+        if (window.isZero() || window.isNegative()) {
+            emitIfChanged(key, chat, status);
+            return;
+        }
+
+        if (pending.put(key, new Update(chat, status)) != null) {
+            return;
+        }
+
+        timer.get().schedule(() -> flush(key), window);
+    }
+
+    private void flush(Key key) {
+        var update = pending.remove(key);
+        if (update == null) {
+            return;
+        }
+
+        emitIfChanged(key, update.chat(), update.status());
+    }
+
+    private void emitIfChanged(Key key, Chat chat, ContactStatus status) {
+        synchronized (this) {
+            var last = emitted.get(key).orElse(null);
+            if (Objects.equals(last, status)) {
+                return;
+            }
+
+            emitted.put(key, status);
+        }
+
+        emitter.emit(chat, key.contact(), status);
+    }
+
+    void clear() {
+        pending.clear();
+        emitted.clear();
+    }
+
+    @FunctionalInterface
+    interface Emitter {
+        void emit(Chat chat, ContactJid contact, ContactStatus status);
+    }
+
+    private record Key(ContactJid chat, ContactJid contact) {
+
+    }
+
+    private record Update(Chat chat, ContactStatus status) {
+
+    }
+}
@@ -0,0 +1,105 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.model.contact.ContactJid;
+import it.auties.whatsapp.util.TimerWheel;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Outgoing receipts for the same chat, participant and type that are queued within a short window are sent as a single list receipt
+// While the session is reconnecting, receipts are held and sent once the new connection is logged in, as the old one can't deliver them anymore
+final class ReceiptAggregator {
+    private static final Duration WINDOW = Duration.ofMillis(50);
+    private static final int MAX_BATCH_SIZE = 64;
+
+    private final Supplier<TimerWheel> timer;
+    private final Consumer<Batch> sender;
+    private final Map<Key, List<String>> pending;
+    private final List<Batch> held;
+    private boolean holding;
+
+    ReceiptAggregator(Supplier<TimerWheel> timer, Consumer<Batch> sender) {
+        this.timer = timer;
+        this.sender = sender;
+        this.pending = new LinkedHashMap<>();
+        this.held = new ArrayList<>();
+    }
+
+    void queue(ContactJid jid, ContactJid participant, String messageId, String type) {
+        var key = new Key(jid, participant, type);
+        List<String> full = null;
+        synchronized (this) {
+            var ids = pending.get(key);
+            if (ids == null) {
+                ids = new ArrayList<>();
+                pending.put(key, ids);
+                scheduleFlush(key);
+            }
+
+            ids.add(messageId);
+            if (ids.size() >= MAX_BATCH_SIZE) {
+                full = pending.remove(key);
+                if (holding) {
+                    held.add(new Batch(key, full));
+                    return;
+                }
+            }
+        }
+
+        if (full != null) {
+            sender.accept(new Batch(key, full));
+        }
+    }
+
+    private void scheduleFlush(Key key) {
+        timer.get().schedule(() -> flush(key), WINDOW);
+    }
+
+    private void flush(Key key) {
+        List<String> ids;
+        synchronized (this) {
+            if (holding) {
+                return;
+            }
+
+            ids = pending.remove(key);
+        }
+
+        if (ids != null) {
+            sender.accept(new Batch(key, ids));
+        }
+    }
+
+    void flush() {
+        List<Batch> batches;
+        synchronized (this) {
+            batches = new ArrayList<>(held);
+            pending.forEach((key, ids) -> batches.add(new Batch(key, ids)));
+            held.clear();
+            pending.clear();
+            this.holding = false;
+        }
+
+        batches.forEach(sender);
+    }
+
+    synchronized void hold() {
+        this.holding = true;
+    }
+
+    synchronized void clear() {
+        held.clear();
+        pending.clear();
+        this.holding = false;
+    }
+
+    record Key(ContactJid jid, ContactJid participant, String type) {
+
+    }
+
+    record Batch(Key key, List<String> messageIds) {
+
+    }
+}
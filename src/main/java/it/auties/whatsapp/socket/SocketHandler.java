@@ -8,6 +8,7 @@ import it.auties.whatsapp.controller.Keys;
 import it.auties.whatsapp.controller.Store;
 import it.auties.whatsapp.crypto.AesGcm;
 import it.auties.whatsapp.listener.Listener;
+import it.auties.whatsapp.listener.ListenerMetrics;
 import it.auties.whatsapp.model.action.Action;
 import it.auties.whatsapp.model.business.BusinessCategory;
 import it.auties.whatsapp.model.call.Call;
@@ -19,8 +20,10 @@ import it.auties.whatsapp.model.contact.ContactJid.Server;
 import it.auties.whatsapp.model.contact.ContactJidProvider;
 import it.auties.whatsapp.model.contact.ContactStatus;
 import it.auties.whatsapp.model.exchange.*;
+import it.auties.whatsapp.model.info.ContextInfo;
 import it.auties.whatsapp.model.info.MessageIndexInfo;
 import it.auties.whatsapp.model.info.MessageInfo;
+import it.auties.whatsapp.model.message.model.ContextualMessage;
 import it.auties.whatsapp.model.message.model.MessageContainer;
 import it.auties.whatsapp.model.message.model.MessageKey;
 import it.auties.whatsapp.model.message.model.MessageStatus;
@@ -33,6 +36,7 @@ import it.auties.whatsapp.model.signal.auth.HandshakeMessage;
 import it.auties.whatsapp.model.sync.ActionValueSync;
 import it.auties.whatsapp.model.sync.PatchRequest;
 import it.auties.whatsapp.util.Clock;
+import it.auties.whatsapp.util.ExpiringMap;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
@@ -41,6 +45,7 @@ import lombok.experimental.Accessors;
 
 import java.net.SocketException;
 import java.net.URI;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.concurrent.*;
@@ -57,6 +62,7 @@ public class SocketHandler implements SocketListener {
     private static final Set<UUID> connectedUuids = ConcurrentHashMap.newKeySet();
     private static final Set<Long> connectedPhoneNumbers = ConcurrentHashMap.newKeySet();
     private static final Set<String> connectedAlias = ConcurrentHashMap.newKeySet();
+    private static final long RECONNECT_CHECKPOINT_INTERVAL = Duration.ofMinutes(1).toNanos();
 
     private SocketSession session;
 
@@ -82,6 +88,8 @@ public class SocketHandler implements SocketListener {
     @NonNull
     private final Executor socketExecutor;
 
+    private final WhatsappHost host;
+
     @NonNull
     @Getter
     @Setter(AccessLevel.PROTECTED)
@@ -103,8 +111,20 @@ public class SocketHandler implements SocketListener {
 
     private ExecutorService listenersService;
 
+    private ListenerEventBus eventBus;
+
+    private final ReceiptAggregator receiptAggregator;
+
+    private final PresenceCoalescer presenceCoalescer;
+    private final EventBatcher<ChatSync> chatsSyncBatcher;
+    private final EventBatcher<ContactUpdate> contactsUpdateBatcher;
+
+    private final ConnectionTracker connectionTracker;
+
     private Node lastNode;
 
+    private volatile long lastCheckpoint;
+
     public static boolean isConnected(@NonNull UUID uuid){
         return connectedUuids.contains(uuid);
     }
@@ -117,39 +137,160 @@ public class SocketHandler implements SocketListener {
         return connectedAlias.contains(id);
     }
 
-    public SocketHandler(@NonNull Whatsapp whatsapp, @NonNull Store store, @NonNull Keys keys, ErrorHandler errorHandler, WebVerificationSupport webVerificationSupport, Executor socketExecutor) {
+    public SocketHandler(@NonNull Whatsapp whatsapp, @NonNull Store store, @NonNull Keys keys, ErrorHandler errorHandler, WebVerificationSupport webVerificationSupport, Executor socketExecutor, WhatsappHost host) {
         this.whatsapp = whatsapp;
         this.store = store;
         this.keys = keys;
+        this.host = host;
         this.state = SocketState.WAITING;
         this.authHandler = new AuthHandler(this);
         this.streamHandler = new StreamHandler(this, webVerificationSupport);
         this.messageHandler = new MessageHandler(this);
         this.appStateHandler = new AppStateHandler(this);
         this.errorHandler = Objects.requireNonNullElse(errorHandler, ErrorHandler.toTerminal());
-        this.socketExecutor = Objects.requireNonNullElse(socketExecutor, DEFAULT_EXECUTOR);
+        this.socketExecutor = Objects.requireNonNullElseGet(socketExecutor, () -> host != null ? host.socketExecutor() : DEFAULT_EXECUTOR);
+        if (host != null && !store.hasTimer()) {
+            store.timer(host.timer());
+        }
+        this.receiptAggregator = new ReceiptAggregator(() -> this.store.timer(), batch -> sendReceipt(batch.key().jid(), batch.key().participant(), batch.messageIds(), batch.key().type()));
+        this.presenceCoalescer = new PresenceCoalescer(() -> this.store.timer(), this::onContactPresence);
+        this.chatsSyncBatcher = new EventBatcher<>(() -> this.store.timer(), this::onChatsRecentMessages);
+        this.contactsUpdateBatcher = new EventBatcher<>(() -> this.store.timer(), this::onContactsUpdate);
+        this.connectionTracker = new ConnectionTracker();
     }
 
+    // The keys are persisted only when the session is really closed, as signal changes are already journaled
+    // While reconnecting, the store is saved in the background at most once per interval, so that a crash doesn't lose everything since the session started
     private void onShutdown(boolean reconnect) {
+        if (reconnect) {
+            checkpointStore();
+            return;
+        }
+
         if (state != SocketState.LOGGED_OUT && state != SocketState.RESTORE) {
             keys.dispose();
             store.dispose();
         }
-        if (!reconnect) {
-            dispose();
+        dispose();
+    }
+
+    private void checkpointStore() {
+        var now = System.nanoTime();
+        if (lastCheckpoint != 0 && now - lastCheckpoint < RECONNECT_CHECKPOINT_INTERVAL) {
+            return;
         }
+
+        this.lastCheckpoint = now;
+        store.serialize(true);
     }
 
     protected void onSocketEvent(SocketEvent event) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onSocketEvent", listener -> {
             listener.onSocketEvent(whatsapp, event);
             listener.onSocketEvent(event);
         });
     }
 
-    private void callListenersAsync(Consumer<Listener> consumer) {
-        var service = getOrCreateListenersService();
-        store.listeners().forEach(listener -> service.execute(() -> invokeListenerSafe(consumer, listener)));
+    private void callListenersAsync(String event, Consumer<Listener> consumer) {
+        callListenersAsync(event, null, consumer);
+    }
+
+    private void callListenersAsync(String event, Object key, Consumer<Listener> consumer) {
+        var listeners = store.listeners(event);
+        if (listeners.isEmpty()) {
+            return;
+        }
+
+        dispatchListeners(listeners, event, key, consumer);
+    }
+
+    private void callListenersAsync(List<String> events, Object key, Consumer<Listener> consumer) {
+        var listeners = events.stream()
+                .map(store::listeners)
+                .flatMap(Collection::stream)
+                .distinct()
+                .toList();
+        if (listeners.isEmpty()) {
+            return;
+        }
+
+        dispatchListeners(listeners, events.get(0), key, consumer);
+    }
+
+    private void dispatchListeners(Collection<Listener> listeners, String event, Object key, Consumer<Listener> consumer) {
+        var eventBus = getOrCreateEventBus();
+        if (eventBus != null) {
+            eventBus.publish(listeners, event, key, consumer);
+            return;
+        }
+
+        listeners.forEach(listener -> executeListenerTask(() -> invokeListenerSafe(consumer, listener)));
+    }
+
+    // If a session exceeds the quota of its host, its listeners are notified by the thread that fired the event: this slows down only the session that is falling behind
+    private void executeListenerTask(Runnable task) {
+        try {
+            getOrCreateListenersService().execute(task);
+        } catch (RejectedExecutionException exception) {
+            task.run();
+        }
+    }
+
+    private synchronized ListenerEventBus getOrCreateEventBus() {
+        var setting = store.eventBusSetting().orElse(null);
+        if (setting == null) {
+            return null;
+        }
+
+        if (eventBus == null) {
+            this.eventBus = new ListenerEventBus(setting, this::executeListenerTask, (consumer, listener) -> invokeListenerSafe(consumer, listener));
+        }
+
+        return eventBus;
+    }
+
+    public void onListenerRemoved(Listener listener) {
+        var eventBus = this.eventBus;
+        if (eventBus != null) {
+            eventBus.remove(listener);
+        }
+    }
+
+    /**
+     * Returns the delivery metrics of the listeners
+     * Metrics are only available if an {@link it.auties.whatsapp.api.EventBusSetting} is used
+     *
+     * @return a non-null map
+     */
+    public Map<Listener, ListenerMetrics> listenerMetrics() {
+        var eventBus = this.eventBus;
+        return eventBus == null ? Map.of() : eventBus.metrics();
+    }
+
+    /**
+     * Returns the reconnection attempts and the time to ready of the connections of this session
+     *
+     * @return a non-null metrics object
+     */
+    public ConnectionMetrics connectionMetrics() {
+        return connectionTracker.metrics();
+    }
+
+    protected boolean isResuming() {
+        return connectionTracker.isResuming();
+    }
+
+    /**
+     * Returns the metrics of the bounded maps used to track retries, pending replies and processed messages
+     *
+     * @return a non-null map
+     */
+    public Map<String, ExpiringMap.Metrics> trackingMetrics() {
+        return Map.of(
+                "retries", streamHandler.retriesMetrics(),
+                "replies", store.pendingRepliesMetrics(),
+                "processedMessages", messageHandler.processedMessagesMetrics()
+        );
     }
 
     @Override
@@ -205,7 +346,7 @@ public class SocketHandler implements SocketListener {
     }
 
     private void onNodeReceived(Node deciphered) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onNodeReceived", listener -> {
             listener.onNodeReceived(whatsapp, deciphered);
             listener.onNodeReceived(deciphered);
         });
@@ -249,6 +390,7 @@ public class SocketHandler implements SocketListener {
             this.logoutFuture = new CompletableFuture<>();
         }
 
+        connectionTracker.onConnecting();
         this.session = new SocketSession(store.proxy().orElse(null), socketExecutor);
         return session.connect(this)
                 .thenCompose(ignored -> loginFuture);
@@ -262,11 +404,18 @@ public class SocketHandler implements SocketListener {
         return logoutFuture;
     }
 
+    // Queued receipts are sent before a clean disconnection, held while reconnecting and dropped with the session
     public CompletableFuture<Void> disconnect(DisconnectReason reason) {
+        switch (reason) {
+            case DISCONNECTED -> receiptAggregator.flush();
+            case RECONNECTING -> receiptAggregator.hold();
+            case LOGGED_OUT, RESTORE -> receiptAggregator.clear();
+        }
         state(SocketState.of(reason));
         keys.clearReadWriteKey();
         return switch (reason) {
             case DISCONNECTED -> {
+                connectionTracker.onStopped();
                 if(session != null) {
                     session.close();
                 }
@@ -276,9 +425,10 @@ public class SocketHandler implements SocketListener {
                 if(session != null) {
                     session.close();
                 }
-                yield connect();
+                yield reconnect();
             }
             case LOGGED_OUT -> {
+                connectionTracker.onReset();
                 store.deleteSession();
                 store.resolveAllPendingRequests();
                 if(session != null) {
@@ -287,6 +437,7 @@ public class SocketHandler implements SocketListener {
                 yield CompletableFuture.completedFuture(null);
             }
             case RESTORE -> {
+                connectionTracker.onReset();
                 store.deleteSession();
                 store.resolveAllPendingRequests();
                 var oldListeners = new ArrayList<>(store.listeners());
@@ -305,6 +456,48 @@ public class SocketHandler implements SocketListener {
         };
     }
 
+    // The first attempt is made immediately, the following ones are spaced out according to the reconnect policy until its budget is exhausted
+    private CompletableFuture<Void> reconnect() {
+        var delay = connectionTracker.nextAttempt(store.reconnectPolicy());
+        if (delay.isEmpty()) {
+            return stopReconnecting();
+        }
+
+        if (delay.get().isZero()) {
+            return attemptReconnect();
+        }
+
+        var result = new CompletableFuture<Void>();
+        store.timer().schedule(() -> attemptReconnect().whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+            } else {
+                result.complete(null);
+            }
+        }), delay.get());
+        return result;
+    }
+
+    private CompletableFuture<Void> attemptReconnect() {
+        if (state != SocketState.RECONNECTING) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return connect().exceptionallyCompose(throwable -> state == SocketState.RECONNECTING ? reconnect() : CompletableFuture.failedFuture(throwable));
+    }
+
+    // If the socket is still open, closing it notifies the listeners, otherwise they must be notified here
+    private CompletableFuture<Void> stopReconnecting() {
+        if (session != null && session.isOpen()) {
+            return disconnect(DisconnectReason.DISCONNECTED);
+        }
+
+        state(SocketState.DISCONNECTED);
+        onDisconnected(DisconnectReason.DISCONNECTED);
+        onShutdown(false);
+        return CompletableFuture.completedFuture(null);
+    }
+
     public CompletableFuture<Void> pushPatch(PatchRequest request) {
         return appStateHandler.push(store.jid(), List.of(request));
     }
@@ -380,7 +573,7 @@ public class SocketHandler implements SocketListener {
     }
 
     private void onNodeSent(Node node) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onNodeSent", listener -> {
             listener.onNodeSent(whatsapp, node);
             listener.onNodeSent(node);
         });
@@ -535,6 +728,14 @@ public class SocketHandler implements SocketListener {
         sendWithNoResponse(receipt);
     }
 
+    /**
+     * Queues a receipt for a single message.
+     * Receipts for the same chat, participant and type that are queued within a short window are sent together as a list receipt.
+     */
+    public void queueReceipt(ContactJid jid, ContactJid participant, String messageId, String type) {
+        receiptAggregator.queue(jid, participant, messageId, type);
+    }
+
     private List<Node> toMessagesNode(List<String> messages) {
         if (messages.size() <= 1) {
             return null;
@@ -562,50 +763,58 @@ public class SocketHandler implements SocketListener {
     }
 
     protected void onRegistrationCode(long code) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onRegistrationCode", listener -> {
             listener.onRegistrationCode(whatsapp, code);
             listener.onRegistrationCode(code);
         });
     }
 
     protected void onMetadata(Map<String, String> properties) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onMetadata", listener -> {
             listener.onMetadata(whatsapp, properties);
             listener.onMetadata(properties);
         });
     }
 
-    protected void onMessageStatus(MessageStatus status, Contact participant, MessageInfo message, Chat chat) {
-        callListenersAsync(listener -> {
-            if (participant == null) {
-                listener.onConversationMessageStatus(whatsapp, message, status);
-                listener.onConversationMessageStatus(message, status);
+    protected void onMessagesStatus(MessageStatus status, Contact participant, List<MessageInfo> messages, Chat chat) {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        // A receipt can update many messages: deliver all of them to each listener in a single task
+        callListenersAsync(List.of("onConversationMessageStatus", "onAnyMessageStatus"), messages.get(0).chatJid(), listener -> {
+            for (var message : messages) {
+                if (participant == null) {
+                    listener.onConversationMessageStatus(whatsapp, message, status);
+                    listener.onConversationMessageStatus(message, status);
+                }
+                listener.onAnyMessageStatus(whatsapp, chat, participant, message, status);
+                listener.onAnyMessageStatus(chat, participant, message, status);
             }
-            listener.onAnyMessageStatus(whatsapp, chat, participant, message, status);
-            listener.onAnyMessageStatus(chat, participant, message, status);
         });
     }
 
     protected void onUpdateChatPresence(ContactStatus status, ContactJid contactJid, Chat chat) {
         var contact = store.findContactByJid(contactJid);
-        if(contact.isPresent()) {
+        if(contact.isPresent() && contact.get().lastKnownPresence() != status) {
             contact.get().lastKnownPresence(status);
-            if (status == contact.get().lastKnownPresence()) {
-                return;
-            }
-
             contact.get().lastSeen(ZonedDateTime.now());
         }
 
+        // The store is always up to date, while listeners are only notified about net changes
         chat.presences().put(contactJid, status);
-        callListenersAsync(listener -> {
+        presenceCoalescer.update(chat, contactJid, status, store.presenceCoalescingWindow());
+    }
+
+    private void onContactPresence(Chat chat, ContactJid contactJid, ContactStatus status) {
+        callListenersAsync("onContactPresence", "%s:%s".formatted(chat.jid(), contactJid), listener -> {
             listener.onContactPresence(whatsapp, chat, contactJid, status);
             listener.onContactPresence(chat, contactJid, status);
         });
     }
 
     protected void onNewMessage(MessageInfo info, boolean offline) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onNewMessage", info.chatJid(), listener -> {
             listener.onNewMessage(whatsapp, info);
             listener.onNewMessage(info);
             listener.onNewMessage(whatsapp, info, offline);
@@ -614,47 +823,90 @@ public class SocketHandler implements SocketListener {
     }
 
     protected void onNewStatus(MessageInfo info) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onNewStatus", listener -> {
             listener.onNewStatus(whatsapp, info);
             listener.onNewStatus(info);
         });
     }
 
+    // History sync chunks arrive in bursts: the chats synced within a short window are delivered together
     protected void onChatRecentMessages(Chat chat, boolean last) {
-        callListenersAsync(listener -> {
-            listener.onChatMessagesSync(whatsapp, chat, last);
-            listener.onChatMessagesSync(chat, last);
+        chatsSyncBatcher.add(new ChatSync(chat, last));
+    }
+
+    // A single task per listener for the whole batch: consecutive chats with the same completion state are delivered together, and the per chat callbacks are still invoked in order
+    private void onChatsRecentMessages(List<ChatSync> syncs) {
+        callListenersAsync(List.of("onChatsMessagesSync", "onChatMessagesSync"), null, listener -> {
+            var start = 0;
+            while (start < syncs.size()) {
+                var last = syncs.get(start).last();
+                var end = start + 1;
+                while (end < syncs.size() && syncs.get(end).last() == last) {
+                    end++;
+                }
+
+                var chats = syncs.subList(start, end)
+                        .stream()
+                        .map(ChatSync::chat)
+                        .toList();
+                listener.onChatsMessagesSync(whatsapp, chats, last);
+                listener.onChatsMessagesSync(chats, last);
+                for (var chat : chats) {
+                    listener.onChatMessagesSync(whatsapp, chat, last);
+                    listener.onChatMessagesSync(chat, last);
+                }
+
+                start = end;
+            }
         });
     }
 
     protected void onFeatures(ActionValueSync.PrimaryFeature features) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onFeatures", listener -> {
             listener.onFeatures(whatsapp, features.flags());
             listener.onFeatures(features.flags());
         });
     }
 
     protected void onSetting(Setting setting) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onSetting", listener -> {
             listener.onSetting(whatsapp, setting);
             listener.onSetting(setting);
         });
     }
 
     protected void onMessageDeleted(MessageInfo message, boolean everyone) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onMessageDeleted", listener -> {
             listener.onMessageDeleted(whatsapp, message, everyone);
             listener.onMessageDeleted(message, everyone);
         });
     }
 
     protected void onAction(Action action, MessageIndexInfo indexInfo) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onAction", listener -> {
             listener.onAction(whatsapp, action, indexInfo);
             listener.onAction(action, indexInfo);
         });
     }
 
+    protected void onContactUpdate(Contact contact, Action action, MessageIndexInfo indexInfo) {
+        contactsUpdateBatcher.add(new ContactUpdate(contact, action, indexInfo));
+    }
+
+    private void onContactsUpdate(List<ContactUpdate> updates) {
+        var contacts = updates.stream()
+                .map(ContactUpdate::contact)
+                .toList();
+        callListenersAsync(List.of("onContactsUpdate", "onAction"), null, listener -> {
+            listener.onContactsUpdate(whatsapp, contacts);
+            listener.onContactsUpdate(contacts);
+            for (var update : updates) {
+                listener.onAction(whatsapp, update.action(), update.indexInfo());
+                listener.onAction(update.action(), update.indexInfo());
+            }
+        });
+    }
+
     protected void onDisconnected(DisconnectReason loggedOut) {
         if(loggedOut != DisconnectReason.RECONNECTING) {
             connectedUuids.remove(store.uuid());
@@ -671,7 +923,7 @@ public class SocketHandler implements SocketListener {
                 logoutFuture.complete(null);
             }
         }
-        callListenersSync(listener -> {
+        callListenersSync("onDisconnected", listener -> {
             listener.onDisconnected(whatsapp, loggedOut);
             listener.onDisconnected(loggedOut);
         });
@@ -681,15 +933,43 @@ public class SocketHandler implements SocketListener {
         if(!loginFuture.isDone()) {
             loginFuture.complete(null);
         }
-        callListenersAsync(listener -> {
+        callListenersAsync("onLoggedIn", listener -> {
             listener.onLoggedIn(whatsapp);
             listener.onLoggedIn();
         });
     }
 
-    public void callListenersSync(Consumer<Listener> consumer) {
+    // The connection counts as established as soon as the session is logged in, so a critical step that keeps failing doesn't make the next reconnection back off further
+    protected void onEstablished() {
+        if (state != SocketState.CONNECTED) {
+            return;
+        }
+
+        connectionTracker.onEstablished();
+        receiptAggregator.flush();
+    }
+
+    protected void onReadyToSend() {
+        if (state != SocketState.CONNECTED) {
+            return;
+        }
+
+        callListenersAsync("onReadyToSend", listener -> {
+            listener.onReadyToSend(whatsapp);
+            listener.onReadyToSend();
+        });
+    }
+
+    protected void onInitialized(InitializationReport report) {
+        callListenersAsync("onInitialized", listener -> {
+            listener.onInitialized(whatsapp, report);
+            listener.onInitialized(report);
+        });
+    }
+
+    public void callListenersSync(String event, Consumer<Listener> consumer) {
         var service = getOrCreateListenersService();
-        var futures = store.listeners()
+        var futures = store.listeners(event)
                 .stream()
                 .map(listener -> CompletableFuture.runAsync(() -> invokeListenerSafe(consumer, listener), service))
                 .toArray(CompletableFuture[]::new);
@@ -705,68 +985,89 @@ public class SocketHandler implements SocketListener {
     }
 
     protected void onChats() {
-        callListenersAsync(listener -> {
-            listener.onChats(whatsapp, store().chats());
-            listener.onChats(store().chats());
+        if (store.listeners("onChats").isEmpty()) {
+            return;
+        }
+
+        var chats = store.chats();
+        callListenersAsync("onChats", listener -> {
+            listener.onChats(whatsapp, chats);
+            listener.onChats(chats);
         });
     }
 
     protected void onStatus() {
-        callListenersAsync(listener -> {
-            listener.onStatus(whatsapp, store().status());
-            listener.onStatus(store().status());
+        if (store.listeners("onStatus").isEmpty()) {
+            return;
+        }
+
+        var status = store.status();
+        callListenersAsync("onStatus", listener -> {
+            listener.onStatus(whatsapp, status);
+            listener.onStatus(status);
         });
     }
 
     protected void onContacts() {
-        callListenersAsync(listener -> {
-            listener.onContacts(whatsapp, store().contacts());
-            listener.onContacts(store().contacts());
+        if (store.listeners("onContacts").isEmpty()) {
+            return;
+        }
+
+        var contacts = store.contacts();
+        callListenersAsync("onContacts", listener -> {
+            listener.onContacts(whatsapp, contacts);
+            listener.onContacts(contacts);
         });
     }
 
     protected void onHistorySyncProgress(Integer progress, boolean recent) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onHistorySyncProgress", listener -> {
             listener.onHistorySyncProgress(whatsapp, progress, recent);
             listener.onHistorySyncProgress(progress, recent);
         });
     }
 
     protected void onReply(MessageInfo info) {
-        var quoted = info.quotedMessage().orElse(null);
-        if (quoted == null) {
+        var hasQuotedMessage = info.message()
+                .contentWithContext()
+                .map(ContextualMessage::contextInfo)
+                .filter(ContextInfo::hasQuotedMessage)
+                .isPresent();
+        if (!hasQuotedMessage) {
             return;
         }
         store.resolvePendingReply(info);
-        callListenersAsync(listener -> {
+        // The quoted message is decoded on the listener's thread, and only if someone is listening
+        callListenersAsync("onMessageReply", listener -> {
+            var quoted = info.quotedMessage().orElseThrow();
             listener.onMessageReply(whatsapp, info, quoted);
             listener.onMessageReply(info, quoted);
         });
     }
 
     protected void onGroupPictureChange(Chat fromChat) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onGroupPictureChange", listener -> {
             listener.onGroupPictureChange(whatsapp, fromChat);
             listener.onGroupPictureChange(fromChat);
         });
     }
 
     protected void onContactPictureChange(Contact fromContact) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onContactPictureChange", listener -> {
             listener.onContactPictureChange(whatsapp, fromContact);
             listener.onContactPictureChange(fromContact);
         });
     }
 
     protected void onUserAboutChange(String newAbout, String oldAbout) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onUserAboutChange", listener -> {
             listener.onUserAboutChange(whatsapp, oldAbout, newAbout);
             listener.onUserAboutChange(oldAbout, newAbout);
         });
     }
 
     public void onUserPictureChange(URI newPicture, URI oldPicture) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onUserPictureChange", listener -> {
             listener.onUserPictureChange(whatsapp, oldPicture, newPicture);
             listener.onUserPictureChange(oldPicture, newPicture);
         });
@@ -784,7 +1085,7 @@ public class SocketHandler implements SocketListener {
     }
 
     private void onUserNameChange(String newName, String oldName) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onUserNameChange", listener -> {
             listener.onUserNameChange(whatsapp, oldName, newName);
             listener.onUserNameChange(oldName, newName);
         });
@@ -801,42 +1102,42 @@ public class SocketHandler implements SocketListener {
     }
 
     private void onUserLocaleChange(String newLocale, String oldLocale) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onUserLocaleChange", listener -> {
             listener.onUserLocaleChange(whatsapp, oldLocale, newLocale);
             listener.onUserLocaleChange(oldLocale, newLocale);
         });
     }
 
     protected void onContactBlocked(Contact contact) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onContactBlocked", listener -> {
             listener.onContactBlocked(whatsapp, contact);
             listener.onContactBlocked(contact);
         });
     }
 
     protected void onNewContact(Contact contact) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onNewContact", listener -> {
             listener.onNewContact(whatsapp, contact);
             listener.onNewContact(contact);
         });
     }
 
     protected void onDevices(LinkedHashMap<ContactJid, Integer> devices) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onLinkedDevices", listener -> {
             listener.onLinkedDevices(whatsapp, devices.keySet());
             listener.onLinkedDevices(devices.keySet());
         });
     }
 
     public void onCall(Call call) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onCall", listener -> {
             listener.onCall(whatsapp, call);
             listener.onCall(call);
         });
     }
 
     public void onPrivacySettingChanged(PrivacySettingEntry oldEntry, PrivacySettingEntry newEntry) {
-        callListenersAsync(listener -> {
+        callListenersAsync("onPrivacySettingChanged", listener -> {
             listener.onPrivacySettingChanged(whatsapp, oldEntry, newEntry);
             listener.onPrivacySettingChanged(oldEntry, newEntry);
         });
@@ -851,19 +1152,32 @@ public class SocketHandler implements SocketListener {
         streamHandler.dispose();
         messageHandler.dispose();
         appStateHandler.dispose();
+        receiptAggregator.clear();
+        presenceCoalescer.clear();
+        chatsSyncBatcher.flush();
+        contactsUpdateBatcher.flush();
+        // The events that are still queued, like the disconnection, are delivered before the threads are released
         if(listenersService != null){
-            listenersService.shutdownNow();
+            listenersService.shutdown();
         }
     }
 
     private synchronized ExecutorService getOrCreateListenersService(){
         if(listenersService == null || listenersService.isShutdown()){
-            listenersService = Executors.newCachedThreadPool();
+            listenersService = host != null ? host.newListenerExecutor() : Executors.newCachedThreadPool();
         }
 
         return listenersService;
     }
 
+    protected ExecutorService newSerialExecutor() {
+        return host != null ? host.newSessionExecutor(true) : Executors.newSingleThreadExecutor();
+    }
+
+    protected Optional<WhatsappHost> host() {
+        return Optional.ofNullable(host);
+    }
+
     protected <T> T handleFailure(Location location, Throwable throwable) {
         if (state() == SocketState.RESTORE || state() == SocketState.LOGGED_OUT) {
             return null;
@@ -883,6 +1197,12 @@ public class SocketHandler implements SocketListener {
                 .thenCompose(values -> messageHandler.querySessions(values, false));
     }
 
+    protected CompletableFuture<Void> prepareGroupSessions(@NonNull ContactJid group) {
+        return queryGroupMetadata(group)
+                .thenComposeAsync(metadata -> messageHandler.getDevices(metadata.participantsJids(), false))
+                .thenComposeAsync(devices -> messageHandler.querySessions(devices, false));
+    }
+
     public void parseSessions(Node result) {
         messageHandler.parseSessions(result);
     }
@@ -905,4 +1225,12 @@ public class SocketHandler implements SocketListener {
     Node lastNode() {
         return lastNode;
     }
+
+    private record ChatSync(Chat chat, boolean last) {
+
+    }
+
+    private record ContactUpdate(Contact contact, Action action, MessageIndexInfo indexInfo) {
+
+    }
 }
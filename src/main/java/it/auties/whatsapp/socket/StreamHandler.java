@@ -38,10 +38,11 @@ import it.auties.whatsapp.model.signal.auth.SignedDeviceIdentity;
 import it.auties.whatsapp.model.signal.auth.SignedDeviceIdentityHMAC;
 import it.auties.whatsapp.model.signal.auth.UserAgent.UserAgentPlatform;
 import it.auties.whatsapp.model.signal.keypair.SignalKeyPair;
-import it.auties.whatsapp.model.signal.keypair.SignalPreKeyPair;
 import it.auties.whatsapp.util.BytesHelper;
 import it.auties.whatsapp.util.Clock;
+import it.auties.whatsapp.util.ExpiringMap;
 import it.auties.whatsapp.util.Protobuf;
+import it.auties.whatsapp.util.TimerWheel;
 import it.auties.whatsapp.util.Validate;
 import lombok.NonNull;
 import lombok.experimental.Accessors;
@@ -58,6 +59,8 @@ import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.Map.Entry;
@@ -65,33 +68,43 @@ import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static it.auties.whatsapp.api.ErrorHandler.Location.*;
-import static it.auties.whatsapp.util.Spec.Signal.KEY_BUNDLE_TYPE;
 import static it.auties.whatsapp.util.Spec.Whatsapp.ACCOUNT_SIGNATURE_HEADER;
 import static it.auties.whatsapp.util.Spec.Whatsapp.DEVICE_WEB_SIGNATURE_HEADER;
 
 @Accessors(fluent = true)
 class StreamHandler {
-    private static final int REQUIRED_PRE_KEYS_SIZE = 5;
-    private static final int PRE_KEYS_UPLOAD_CHUNK = 30;
-    private static final int PING_INTERVAL = 30;
+    private static final Duration PING_INTERVAL = Duration.ofSeconds(30);
+    private static final Duration PING_JITTER = Duration.ofSeconds(3);
     private static final int MEDIA_CONNECTION_DEFAULT_INTERVAL = 60;
+    // The media connection is refreshed ahead of its expiration so that uploads never find it expired
+    private static final double MEDIA_CONNECTION_REFRESH_RATIO = 0.8;
     private static final int MAX_ATTEMPTS = 5;
+    // Retries are requested shortly after a message is sent, so older attempts don't need to be remembered
+    private static final Duration RETRIES_TIME_TO_LIVE = Duration.ofHours(1);
+    private static final int MAX_TRACKED_RETRIES = 4096;
+    // While connected, privacy settings, block list and profile of the account are kept up to date by notifications, so they are queried again on resume only if they are old
+    private static final Duration RESUMED_INFO_TIME_TO_LIVE = Duration.ofMinutes(30);
+    private static final int ACTIVE_GROUPS = 8;
 
     private final SocketHandler socketHandler;
     private final WebVerificationSupport webVerificationSupport;
-    private final Map<String, Integer> retries;
+    private final ExpiringMap<String, Integer> retries;
+    private final PreKeyManager preKeyManager;
     private final AtomicBoolean badMac;
     private final AtomicReference<String> lastLinkCodeKey;
-    private ScheduledExecutorService service;
+    private TimerWheel.Timeout pingTimeout;
+    private TimerWheel.Timeout mediaConnectionTimeout;
+    private long timersGeneration;
+    private volatile Instant initialInfoTimestamp;
 
     protected StreamHandler(SocketHandler socketHandler, WebVerificationSupport webVerificationSupport) {
         this.socketHandler = socketHandler;
         this.webVerificationSupport = webVerificationSupport;
-        this.retries = new HashMap<>();
+        this.retries = new ExpiringMap<>(RETRIES_TIME_TO_LIVE, MAX_TRACKED_RETRIES);
+        this.preKeyManager = new PreKeyManager(socketHandler);
         this.badMac = new AtomicBoolean();
         this.lastLinkCodeKey = new AtomicReference<>();
     }
@@ -169,15 +182,18 @@ class StreamHandler {
                 .filter(jid -> jid.type() != Type.STATUS)
                 .flatMap(socketHandler.store()::findChatByJid)
                 .orElse(null);
-        getReceiptsMessageIds(node)
-                .stream()
-                .map(messageId -> chat == null ? socketHandler.store().findStatusById(messageId) : socketHandler.store().findMessageById(chat, messageId))
-                .flatMap(Optional::stream)
-                .forEach(message -> digestReceipt(node, chat, message));
+        var messageIds = getReceiptsMessageIds(node);
+        var messages = chat == null ? socketHandler.store().findStatusById(messageIds)
+                : socketHandler.store().findMessagesById(chat, messageIds);
+        digestReceipt(node, chat, messages);
         socketHandler.sendMessageAck(node);
     }
 
-    private void digestReceipt(Node node, Chat chat, MessageInfo message) {
+    private void digestReceipt(Node node, Chat chat, List<MessageInfo> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+
         var type = node.attributes().getOptionalString("type");
         var status = type.flatMap(MessageStatus::of)
                 .orElse(MessageStatus.DELIVERED);
@@ -186,14 +202,17 @@ class StreamHandler {
                 .flatMap(socketHandler.store()::findContactByJid)
                 .orElse(null);
         if(chat != null && chat.unreadMessagesCount() > 0) {
-            chat.unreadMessagesCount(chat.unreadMessagesCount() - 1);
+            chat.unreadMessagesCount(Math.max(0, chat.unreadMessagesCount() - messages.size()));
         }
 
-        message.status(status);
-        updateReceipt(status, chat, participant, message);
-        socketHandler.onMessageStatus(status, participant, message, chat);
+        for (var message : messages) {
+            message.status(status);
+            updateReceipt(status, chat, participant, message);
+        }
+
+        socketHandler.onMessagesStatus(status, participant, messages, chat);
         if (Objects.equals(type.orElse(null), "retry")) {
-            sendMessageRetry(message);
+            messages.forEach(this::sendMessageRetry);
         }
     }
 
@@ -201,7 +220,7 @@ class StreamHandler {
         if (!message.fromMe()) {
             return;
         }
-        var attempts = retries.getOrDefault(message.id(), 0);
+        var attempts = retries.get(message.id()).orElse(0);
         if(attempts > MAX_ATTEMPTS){
             return;
         }
@@ -526,10 +545,8 @@ class StreamHandler {
                 .orElseThrow(() -> new NoSuchElementException("Missing count in notification"))
                 .attributes()
                 .getLong("value");
-        if (keysSize >= REQUIRED_PRE_KEYS_SIZE) {
-            return;
-        }
-        sendPreKeys();
+        preKeyManager.onServerCount(keysSize)
+                .exceptionallyAsync(throwable -> socketHandler.handleFailure(CRYPTOGRAPHY, throwable));
     }
 
     private void handleAccountSyncNotification(Node node) {
@@ -709,29 +726,100 @@ class StreamHandler {
         node.attributes().getJid("lid")
                 .ifPresent(socketHandler.store()::lid);
         socketHandler.sendQuery("set", "passive", Node.of("active"));
-        if (!socketHandler.keys().hasPreKeys()) {
-            sendPreKeys();
+        schedulePing();
+        var resuming = socketHandler.isResuming();
+        socketHandler.onEstablished();
+        var pipeline = new InitializationPipeline(resuming, socketHandler::handleFailure);
+        addCriticalSteps(pipeline, resuming);
+        addInitialInfoSteps(pipeline, resuming);
+        addAccountSteps(pipeline);
+        pipeline.start();
+        pipeline.ready()
+                .thenAcceptAsync(this::onReady);
+        pipeline.completion()
+                .thenAcceptAsync(socketHandler::onInitialized);
+        if (socketHandler.keys().registered()) {
+            pipeline.settled("loggedIn", "chats")
+                    .thenRunAsync(socketHandler::onChats);
         }
+    }
 
-        schedulePing();
-        createMediaConnection(0, null);
-        var loggedInFuture = queryInitialInfo()
-                .thenRunAsync(this::onInitialInfo)
-                .exceptionallyAsync(throwable -> socketHandler.handleFailure(LOGIN, throwable));
+    // A critical step that failed was already reported to the error handler, and the report of the initialization says that the session isn't ready
+    private void onReady(boolean ready) {
+        if (ready) {
+            socketHandler.onReadyToSend();
+        }
+    }
+
+    // The steps that must be done before a message can be sent: they are started before all the others
+    private void addCriticalSteps(InitializationPipeline pipeline, boolean resuming) {
+        pipeline.add("preKeys", true, CRYPTOGRAPHY, () -> socketHandler.keys().hasPreKeys() ? preKeyManager.queryServerCount() : preKeyManager.upload())
+                .add("mediaConnection", true, null, () -> resuming && reuseMediaConnection() ? CompletableFuture.completedFuture(null) : createMediaConnection(0, null))
+                .add("properties", true, LOGIN, this::queryProperties);
         if (!socketHandler.keys().registered()) {
-            queryGroups();
+            pipeline.add("groups", true, null, this::queryGroups);
             return;
         }
 
-        var chatsFuture = socketHandler.store().serializer()
-                .attributeStore(socketHandler.store())
-                .exceptionallyAsync(exception -> socketHandler.handleFailure(MESSAGE, exception));
-        CompletableFuture.allOf(loggedInFuture, chatsFuture)
-                .thenRunAsync(socketHandler::onChats);
+        pipeline.add("chats", true, MESSAGE, () -> socketHandler.store().serializer().attributeStore(socketHandler.store()));
+        // The sessions of a resumed connection were already prepared, so they aren't queried again during a reconnection storm
+        if (!resuming) {
+            pipeline.add("groups", true, null, this::prepareActiveGroups, "chats");
+        }
+    }
+
+    // Privacy settings, block list and profile of the account are not needed to send messages, but they are needed before the session is reported as logged in
+    private void addInitialInfoSteps(InitializationPipeline pipeline, boolean resuming) {
+        var business = socketHandler.store().clientType() == ClientType.MOBILE && socketHandler.store().business() && !socketHandler.keys().businessCertificate();
+        if (business) {
+            pipeline.add("businessCertificate", false, LOGIN, this::checkBusinessStatus, "properties");
+        }
+
+        pipeline.add("presence", false, LOGIN, this::updateSelfPresence);
+        var refreshInfo = !resuming || !isInitialInfoRecent();
+        if (refreshInfo) {
+            pipeline.add("blockList", false, LOGIN, this::queryInitialBlockList)
+                    .add("privacySettings", false, LOGIN, this::queryInitialPrivacySettings)
+                    .add("about", false, LOGIN, () -> updateUserStatus(false))
+                    .add("picture", false, LOGIN, () -> updateUserPicture(false));
+        }
+
+        var dependencies = Stream.of("properties", "businessCertificate", "presence", "blockList", "privacySettings", "about", "picture")
+                .filter(pipeline::contains)
+                .toArray(String[]::new);
+        // Failures were already reported to the error handler, so a query that failed never prevents the session from logging in
+        pipeline.addAfter("loggedIn", LOGIN, () -> CompletableFuture.runAsync(() -> onInitialInfo(refreshInfo)), dependencies);
     }
 
-    private void queryGroups() {
-        socketHandler.sendQuery(Server.GROUP.toJid(), "get", "w:g2", Node.of("participating", Node.of("participants"), Node.of("description")))
+    // Queries that nothing else depends on, and that weren't awaited before logging in
+    private void addAccountSteps(InitializationPipeline pipeline) {
+        switch (socketHandler.store().clientType()) {
+            case WEB -> pipeline.add("abProperties", false, LOGIN, () -> socketHandler.sendQuery("get", "abt", Node.of("props", Map.of("protocol", "1"))));
+            case MOBILE -> {
+                socketHandler.store().locale(Objects.requireNonNullElse(socketHandler.store().locale(), "en-US"));
+                pipeline.add("pushConfig", false, LOGIN, () -> socketHandler.sendQuery("get", "urn:xmpp:whatsapp:push", Node.of("config", Map.of("version", 1))))
+                        .add("dirtyState", false, LOGIN, () -> socketHandler.sendQuery("set", "urn:xmpp:whatsapp:dirty", Node.of("clean", Map.of("timestamp", 0, "type", "account_sync"))));
+                if (socketHandler.store().business()) {
+                    pipeline.add("linkedAccounts", false, LOGIN, () -> socketHandler.sendQuery("get", "fb:thrift_iq", Map.of("smax_id", 42), Node.of("linked_accounts")));
+                }
+            }
+        }
+    }
+
+    // Signal sessions with the participants of the groups that were used last are established ahead of time, so that the first message sent to them doesn't have to wait for them
+    private CompletableFuture<Void> prepareActiveGroups() {
+        var groups = socketHandler.store()
+                .chats()
+                .stream()
+                .filter(Chat::isGroup)
+                .limit(ACTIVE_GROUPS)
+                .map(chat -> socketHandler.prepareGroupSessions(chat.jid()).exceptionally(ignored -> null))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(groups);
+    }
+
+    private CompletableFuture<Void> queryGroups() {
+        return socketHandler.sendQuery(Server.GROUP.toJid(), "get", "w:g2", Node.of("participating", Node.of("participants"), Node.of("description")))
                 .thenAcceptAsync(this::onGroupsQuery);
     }
 
@@ -795,16 +883,21 @@ class StreamHandler {
                         .thenApplyAsync(entries -> Node.of("category", Map.of("id", entries.get(0).id()))));
     }
 
+    // The first ping is sent at a random point of the interval, so sessions that connect together don't ping together
     private synchronized void schedulePing(){
-        if (service != null && !service.isShutdown()) {
+        if (pingTimeout != null) {
             return;
         }
 
-        service = Executors.newSingleThreadScheduledExecutor();
-        service.scheduleAtFixedRate(this::sendPing, PING_INTERVAL, PING_INTERVAL, TimeUnit.SECONDS);
+        var delay = ThreadLocalRandom.current().nextLong(PING_INTERVAL.toMillis());
+        schedulePing(Duration.ofMillis(delay), timersGeneration);
     }
 
-    private void onInitialInfo() {
+    private void onInitialInfo(boolean refreshedInfo) {
+        if (refreshedInfo) {
+            this.initialInfoTimestamp = Instant.now();
+        }
+
         socketHandler.onLoggedIn();
         if (!socketHandler.keys().registered()) {
             if(socketHandler.store().clientType() == ClientType.WEB){
@@ -817,45 +910,21 @@ class StreamHandler {
         socketHandler.onContacts();
     }
 
-    private CompletableFuture<Void> queryInitialInfo() {
-        return queryRequiredInfo()
-                .thenComposeAsync(ignored -> CompletableFuture.allOf(updateSelfPresence(), queryInitialBlockList(), queryInitialPrivacySettings(), updateUserStatus(false), updateUserPicture(false)));
+    private CompletableFuture<Void> queryProperties() {
+        var body = switch (socketHandler.store().clientType()) {
+            case WEB -> Node.of("props");
+            case MOBILE -> Node.of("props", Map.of("protocol", "2", "hash", ""));
+        };
+        return socketHandler.sendQuery("get", "w", body)
+                .thenAcceptAsync(this::parseProps);
     }
 
-    private CompletableFuture<Void> queryRequiredInfo() {
-        return switch (socketHandler.store().clientType()) {
-            case WEB -> {
-                var requiredFuture = socketHandler.sendQuery("get", "w", Node.of("props"))
-                        .thenAcceptAsync(this::parseProps)
-                        .exceptionallyAsync(exception -> socketHandler.handleFailure(LOGIN, exception));
-                socketHandler.sendQuery("get", "abt", Node.of("props", Map.of("protocol", "1")))
-                        .exceptionallyAsync(exception -> socketHandler.handleFailure(LOGIN, exception));
-                yield requiredFuture;
-            }
-            case MOBILE -> {
-                var requiredFuture = socketHandler.sendQuery("get", "w", Node.of("props", Map.of("protocol", "2", "hash", "")))
-                        .thenAcceptAsync(this::parseProps)
-                        .thenComposeAsync(ignored -> checkBusinessStatus())
-                        .exceptionallyAsync(exception -> socketHandler.handleFailure(LOGIN, exception));
-                socketHandler.sendQuery("get", "urn:xmpp:whatsapp:push", Node.of("config", Map.of("version", 1)))
-                        .exceptionallyAsync(exception -> socketHandler.handleFailure(LOGIN, exception));
-                socketHandler.store().locale(Objects.requireNonNullElse(socketHandler.store().locale(), "en-US"));
-                socketHandler.sendQuery("set", "urn:xmpp:whatsapp:dirty", Node.of("clean", Map.of("timestamp", 0, "type", "account_sync")))
-                        .exceptionallyAsync(exception -> socketHandler.handleFailure(LOGIN, exception));
-                if(socketHandler.store().business()){
-                    socketHandler.sendQuery("get", "fb:thrift_iq", Map.of("smax_id", 42), Node.of("linked_accounts"))
-                            .exceptionallyAsync(exception -> socketHandler.handleFailure(LOGIN, exception));
-                }
-                yield requiredFuture;
-            }
-        };
+    private boolean isInitialInfoRecent() {
+        var timestamp = initialInfoTimestamp;
+        return timestamp != null && timestamp.plus(RESUMED_INFO_TIME_TO_LIVE).isAfter(Instant.now());
     }
 
     private CompletableFuture<Void> checkBusinessStatus() {
-        if (!socketHandler.store().business() || socketHandler.keys().businessCertificate()) {
-            return CompletableFuture.completedFuture(null);
-        }
-
         return CompletableFuture.allOf(setBusinessCertificate(), setBusinessProfile())
                 .thenRunAsync(() -> socketHandler.keys().businessCertificate(true));
     }
@@ -880,8 +949,7 @@ class StreamHandler {
         }
 
         return socketHandler.sendWithNoResponse(Node.of("presence", Map.of("name", socketHandler.store().name(), "type", "available")))
-                .thenRun(this::onPresenceUpdated)
-                .exceptionally(exception -> socketHandler.handleFailure(STREAM, exception));
+                .thenRun(this::onPresenceUpdated);
     }
 
     private void onPresenceUpdated() {
@@ -951,6 +1019,23 @@ class StreamHandler {
         socketHandler.onMetadata(properties);
     }
 
+    private void schedulePing(Duration delay, long generation) {
+        this.pingTimeout = socketHandler.store()
+                .timer()
+                .schedule(() -> onPingTimeout(generation), delay);
+    }
+
+    // Each interval is jittered as well, so that the pings of different sessions don't drift back in sync
+    private synchronized void onPingTimeout(long generation) {
+        if (generation != timersGeneration) {
+            return;
+        }
+
+        sendPing();
+        var jitter = ThreadLocalRandom.current().nextLong(-PING_JITTER.toMillis(), PING_JITTER.toMillis() + 1);
+        schedulePing(PING_INTERVAL.plusMillis(jitter), generation);
+    }
+
     private void sendPing() {
         if (socketHandler.state() != SocketState.CONNECTED) {
             return;
@@ -960,31 +1045,57 @@ class StreamHandler {
         socketHandler.onSocketEvent(SocketEvent.PING);
     }
 
-    private void createMediaConnection(int tries, Throwable error) {
+    private CompletableFuture<Void> createMediaConnection(int tries, Throwable error) {
         if (socketHandler.state() != SocketState.CONNECTED) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
         if (tries >= MAX_ATTEMPTS) {
             socketHandler.store().mediaConnection((MediaConnection) null);
             socketHandler.handleFailure(MEDIA_CONNECTION, error);
             scheduleMediaConnection(MEDIA_CONNECTION_DEFAULT_INTERVAL);
-            return;
+            return CompletableFuture.failedFuture(error);
         }
-        socketHandler.sendQuery("set", "w:m", Node.of("media_conn"))
+        return socketHandler.sendQuery("set", "w:m", Node.of("media_conn"))
                 .thenApplyAsync(MediaConnection::of)
                 .thenAcceptAsync(result -> {
                     socketHandler.store().mediaConnection(result);
-                    scheduleMediaConnection(result.ttl());
+                    scheduleMediaConnection(Math.max(1, (int) (result.ttl() * MEDIA_CONNECTION_REFRESH_RATIO)));
                 })
-                .exceptionallyAsync(throwable -> {
-                    createMediaConnection(tries + 1, throwable);
-                    return null;
-                });
+                .exceptionallyComposeAsync(throwable -> createMediaConnection(tries + 1, throwable));
     }
 
-    private void scheduleMediaConnection(int seconds) {
-        var executor = CompletableFuture.delayedExecutor(seconds, TimeUnit.SECONDS);
-        CompletableFuture.runAsync(() -> createMediaConnection(0, null), executor);
+    // A media connection that hasn't expired is kept on resume, and it's refreshed when it would have been if the session had never disconnected
+    private boolean reuseMediaConnection() {
+        var mediaConnection = socketHandler.store().activeMediaConnection();
+        if (mediaConnection.isEmpty()) {
+            return false;
+        }
+
+        var refreshTimestamp = mediaConnection.get().timestamp() + (long) (TimeUnit.SECONDS.toMillis(mediaConnection.get().ttl()) * MEDIA_CONNECTION_REFRESH_RATIO);
+        var remaining = TimeUnit.MILLISECONDS.toSeconds(refreshTimestamp - System.currentTimeMillis());
+        scheduleMediaConnection((int) Math.max(1, remaining));
+        return true;
+    }
+
+    private synchronized void scheduleMediaConnection(int seconds) {
+        if (mediaConnectionTimeout != null) {
+            mediaConnectionTimeout.cancel();
+        }
+
+        var generation = timersGeneration;
+        this.mediaConnectionTimeout = socketHandler.store()
+                .timer()
+                .schedule(() -> onMediaConnectionTimeout(generation), Duration.ofSeconds(seconds));
+    }
+
+    private void onMediaConnectionTimeout(long generation) {
+        synchronized (this) {
+            if (generation != timersGeneration) {
+                return;
+            }
+        }
+
+        createMediaConnection(0, null);
     }
 
     private void digestIq(Node node) {
@@ -999,20 +1110,6 @@ class StreamHandler {
         }
     }
 
-    private void sendPreKeys() {
-        var startId = socketHandler.keys().lastPreKeyId() + 1;
-        var preKeys = IntStream.range(startId, startId + PRE_KEYS_UPLOAD_CHUNK)
-                .mapToObj(SignalPreKeyPair::random)
-                .peek(socketHandler.keys()::addPreKey)
-                .map(SignalPreKeyPair::toNode)
-                .toList();
-        socketHandler.sendQuery("set", "encrypt",
-                Node.of("registration", socketHandler.keys().encodedRegistrationId()),
-                Node.of("type", KEY_BUNDLE_TYPE),
-                Node.of("identity", socketHandler.keys().identityKeyPair().publicKey()),
-                Node.of("list", preKeys), socketHandler.keys().signedKeyPair().toNode());
-    }
-
     private void generateQrCode(Node node, Node container) {
         if (webVerificationSupport instanceof QrHandler qrHandler){
             printQrCode(qrHandler, container);
@@ -1163,12 +1260,25 @@ class StreamHandler {
         };
     }
 
+    protected ExpiringMap.Metrics retriesMetrics() {
+        return retries.metrics();
+    }
+
     protected void dispose() {
         retries.clear();
-        if(service != null){
-            service.shutdownNow();
+        synchronized (this) {
+            timersGeneration++;
+            if(pingTimeout != null){
+                pingTimeout.cancel();
+                this.pingTimeout = null;
+            }
+            if(mediaConnectionTimeout != null){
+                mediaConnectionTimeout.cancel();
+                this.mediaConnectionTimeout = null;
+            }
         }
         badMac.set(false);
         lastLinkCodeKey.set(null);
+        this.initialInfoTimestamp = null;
     }
 }
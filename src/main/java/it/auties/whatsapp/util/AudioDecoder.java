@@ -0,0 +1,26 @@
+package it.auties.whatsapp.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This interface allows to plug a codec, for example an opus or aac decoder, into the waveform computation.
+ * A decoder can be passed to {@link Medias#getAudioWaveForm(byte[], AudioDecoder)} or to the simple builder of {@link it.auties.whatsapp.model.message.standard.AudioMessage}.
+ * The returned stream must contain raw pcm samples encoded as big endian 32-bit floats.
+ */
+@FunctionalInterface
+public interface AudioDecoder {
+    /**
+     * A decoder that assumes that the input is already made up of raw float samples
+     */
+    AudioDecoder RAW_FLOAT = encoded -> encoded;
+
+    /**
+     * Decodes an encoded audio stream
+     *
+     * @param encoded the non-null encoded stream
+     * @return a non-null stream of pcm samples
+     * @throws IOException if the stream cannot be decoded
+     */
+    InputStream decode(InputStream encoded) throws IOException;
+}
@@ -0,0 +1,151 @@
+package it.auties.whatsapp.util;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Computes the waveform of an audio in a single pass over its decoded pcm samples.
+ * Samples are read in fixed size blocks and accumulated into the buckets using primitive arithmetic,
+ * so the memory used doesn't depend on the length of the audio.
+ */
+@UtilityClass
+public class AudioWaveform {
+    private final int SAMPLES = 64;
+    private final int BLOCK_SIZE = 16 * 1024;
+    private final int FLOAT_SIZE = Float.BYTES;
+    private final int MAX_VALUE = 100;
+
+    public Optional<byte[]> compute(byte @NonNull [] audio) {
+        return compute(audio, AudioDecoder.RAW_FLOAT);
+    }
+
+    public Optional<byte[]> compute(byte @NonNull [] audio, @NonNull AudioDecoder decoder) {
+        var expectedSamples = decoder == AudioDecoder.RAW_FLOAT ? audio.length / FLOAT_SIZE : -1;
+        return compute(new ByteArrayInputStream(audio), decoder, expectedSamples);
+    }
+
+    public Optional<byte[]> compute(@NonNull Path path, @NonNull AudioDecoder decoder) {
+        try (var inputStream = Files.newInputStream(path)) {
+            var expectedSamples = decoder == AudioDecoder.RAW_FLOAT ? Files.size(path) / FLOAT_SIZE : -1;
+            return compute(inputStream, decoder, expectedSamples);
+        } catch (IOException exception) {
+            return Optional.empty();
+        }
+    }
+
+    public Optional<byte[]> compute(@NonNull InputStream inputStream, @NonNull AudioDecoder decoder) {
+        return compute(inputStream, decoder, -1);
+    }
+
+    private Optional<byte[]> compute(InputStream inputStream, AudioDecoder decoder, long expectedSamples) {
+        try (var pcm = decoder.decode(inputStream)) {
+            var accumulator = new Accumulator(expectedSamples);
+            var block = new byte[BLOCK_SIZE];
+            var buffer = ByteBuffer.wrap(block);
+            int read;
+            while ((read = pcm.readNBytes(block, 0, block.length)) > 0) {
+                var samples = read / FLOAT_SIZE;
+                for (var index = 0; index < samples; index++) {
+                    // Compressed audio read as raw floats contains NaN and infinite bit patterns, which would turn the whole waveform into zeros
+                    var sample = buffer.getFloat(index * FLOAT_SIZE);
+                    if (Float.isFinite(sample)) {
+                        accumulator.add(Math.abs(sample));
+                    }
+                }
+            }
+
+            return accumulator.result();
+        } catch (IOException exception) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Accumulates samples into buckets.
+     * If the number of samples is known ahead of time, each bucket holds an equal share of them and the remainder is dropped.
+     * Otherwise, adjacent buckets are merged every time they are all filled, doubling the number of samples that each bucket represents.
+     */
+    private static final class Accumulator {
+        private final double[] sums;
+        private final long[] counts;
+        private final boolean fixed;
+        private long samplesPerBucket;
+        private int bucket;
+
+        private Accumulator(long expectedSamples) {
+            this.sums = new double[SAMPLES];
+            this.counts = new long[SAMPLES];
+            this.fixed = expectedSamples >= SAMPLES;
+            this.samplesPerBucket = fixed ? expectedSamples / SAMPLES : 1;
+        }
+
+        private void add(float sample) {
+            if (counts[bucket] == samplesPerBucket && !nextBucket()) {
+                return;
+            }
+
+            sums[bucket] += sample;
+            counts[bucket]++;
+        }
+
+        private boolean nextBucket() {
+            if (bucket + 1 < SAMPLES) {
+                bucket++;
+                return true;
+            }
+
+            if (fixed) {
+                return false;
+            }
+
+            var half = SAMPLES / 2;
+            for (var index = 0; index < half; index++) {
+                sums[index] = sums[2 * index] + sums[2 * index + 1];
+                counts[index] = counts[2 * index] + counts[2 * index + 1];
+            }
+
+            for (var index = half; index < SAMPLES; index++) {
+                sums[index] = 0;
+                counts[index] = 0;
+            }
+
+            samplesPerBucket *= 2;
+            bucket = half;
+            return true;
+        }
+
+        private Optional<byte[]> result() {
+            var used = counts[bucket] == 0 ? bucket : bucket + 1;
+            if (used == 0) {
+                return Optional.empty();
+            }
+
+            var averages = new double[SAMPLES];
+            var max = 0d;
+            for (var index = 0; index < SAMPLES; index++) {
+                var source = (int) ((long) index * used / SAMPLES);
+                averages[index] = sums[source] / counts[source];
+                max = Math.max(max, averages[index]);
+            }
+
+            var waveform = new byte[SAMPLES];
+            if (max == 0) {
+                return Optional.of(waveform);
+            }
+
+            for (var index = 0; index < SAMPLES; index++) {
+                waveform[index] = (byte) Math.round(MAX_VALUE * averages[index] / max);
+            }
+
+            return Optional.of(waveform);
+        }
+    }
+}
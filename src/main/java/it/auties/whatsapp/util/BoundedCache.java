@@ -0,0 +1,112 @@
+package it.auties.whatsapp.util;
+
+import lombok.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * A thread-safe cache that holds at most a fixed number of entries, evicting the least recently used one when full
+ * Caches that are accessed by many threads can be split into stripes: each stripe has its own lock and evicts its own least recently used entry,
+ * so threads that access different keys rarely contend, at the cost of a less precise eviction order.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class BoundedCache<K, V> {
+    private final Map<K, V>[] stripes;
+
+    public BoundedCache(int maxSize) {
+        this(maxSize, 1);
+    }
+
+    /**
+     * Constructs a cache split into stripes
+     *
+     * @param maxSize the maximum number of entries, rounded up to a multiple of the number of stripes
+     * @param stripes the number of stripes, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public BoundedCache(int maxSize, int stripes) {
+        Validate.isTrue(maxSize > 0, "Invalid cache size: %s", maxSize);
+        Validate.isTrue(stripes > 0 && stripes <= maxSize, "Invalid number of stripes: %s", stripes);
+        var count = Integer.highestOneBit(stripes) == stripes ? stripes : Integer.highestOneBit(stripes) << 1;
+        var stripeSize = (maxSize + count - 1) / count;
+        this.stripes = new Map[count];
+        for (var index = 0; index < count; index++) {
+            this.stripes[index] = createStripe(stripeSize);
+        }
+    }
+
+    private Map<K, V> createStripe(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    // The hash is spread so that keys whose hashes only differ in the high bits don't end up in the same stripe
+    private Map<K, V> stripe(Object key) {
+        var hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    public Optional<V> get(@NonNull K key) {
+        var stripe = stripe(key);
+        synchronized (stripe) {
+            return Optional.ofNullable(stripe.get(key));
+        }
+    }
+
+    public void put(@NonNull K key, @NonNull V value) {
+        var stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.put(key, value);
+        }
+    }
+
+    public V computeIfAbsent(@NonNull K key, @NonNull Function<? super K, ? extends V> function) {
+        var cached = get(key);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        // The value is computed outside the lock as it's usually expensive
+        var result = function.apply(key);
+        if (result != null) {
+            put(key, result);
+        }
+
+        return result;
+    }
+
+    public void remove(@NonNull K key) {
+        var stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.remove(key);
+        }
+    }
+
+    public int size() {
+        var result = 0;
+        for (var stripe : stripes) {
+            synchronized (stripe) {
+                result += stripe.size();
+            }
+        }
+
+        return result;
+    }
+
+    public void clear() {
+        for (var stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package it.auties.whatsapp.util;
+
+import lombok.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An executor service that runs its tasks on a shared executor, with a limit on how many of them run concurrently and on how many of them can be queued.
+ * Many instances can share the same executor without one of them starving the others: tasks are submitted to the shared executor in small batches, and the tasks that exceed the queue limit are rejected.
+ * Shutting down an instance only affects its own tasks, never the shared executor.
+ */
+public final class BoundedExecutor extends AbstractExecutorService {
+    private static final int BATCH_SIZE = 16;
+
+    private final Executor delegate;
+    private final int maxConcurrency;
+    private final int maxQueued;
+    private final Queue<Runnable> queue;
+    private int running;
+    private long rejected;
+    private boolean shutdown;
+
+    /**
+     * Constructs a new bounded executor
+     *
+     * @param delegate       the non-null shared executor
+     * @param maxConcurrency the maximum number of tasks that can run at the same time, one makes the executor serial
+     * @param maxQueued      the maximum number of tasks that can wait to be executed
+     */
+    public BoundedExecutor(@NonNull Executor delegate, int maxConcurrency, int maxQueued) {
+        Validate.isTrue(maxConcurrency > 0, "Invalid concurrency: %s", maxConcurrency);
+        Validate.isTrue(maxQueued > 0, "Invalid queue size: %s", maxQueued);
+        this.delegate = delegate;
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueued = maxQueued;
+        this.queue = new ArrayDeque<>();
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        synchronized (this) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Executor was shutdown");
+            }
+
+            if (queue.size() >= maxQueued) {
+                rejected++;
+                throw new RejectedExecutionException("Too many queued tasks: %s".formatted(maxQueued));
+            }
+
+            queue.add(command);
+            if (running >= maxConcurrency) {
+                return;
+            }
+
+            running++;
+        }
+
+        try {
+            submitWorker();
+        } catch (RejectedExecutionException exception) {
+            synchronized (this) {
+                queue.remove(command);
+            }
+            throw exception;
+        }
+    }
+
+    private void submitWorker() {
+        try {
+            delegate.execute(this::runBatch);
+        } catch (RejectedExecutionException exception) {
+            synchronized (this) {
+                running--;
+                notifyAll();
+            }
+            throw exception;
+        }
+    }
+
+    // After a batch the worker goes back to the end of the shared queue, so that a busy session cannot monopolize the shared threads
+    private void runBatch() {
+        for (var executed = 0; executed < BATCH_SIZE; executed++) {
+            Runnable task;
+            synchronized (this) {
+                task = queue.poll();
+                if (task == null) {
+                    running--;
+                    notifyAll();
+                    return;
+                }
+            }
+
+            try {
+                task.run();
+            } catch (Throwable ignored) {
+                // Tasks submitted through submit report their errors through their future
+            }
+        }
+
+        submitWorker();
+    }
+
+    /**
+     * Returns the number of tasks that are waiting to be executed
+     *
+     * @return an unsigned int
+     */
+    public synchronized int queued() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of tasks that were rejected because the queue was full
+     *
+     * @return an unsigned long
+     */
+    public synchronized long rejected() {
+        return rejected;
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        this.shutdown = true;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+        this.shutdown = true;
+        var results = new ArrayList<>(queue);
+        queue.clear();
+        notifyAll();
+        return results;
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return shutdown && running == 0 && queue.isEmpty();
+    }
+
+    @Override
+    public synchronized boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        var deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isTerminated()) {
+            var remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        return true;
+    }
+}
@@ -128,13 +128,14 @@ public class BytesHelper {
         }
 
         var padRandomByte = KeyHelper.header();
-        var padding = new byte[padRandomByte];
-        Arrays.fill(padding, (byte) padRandomByte);
-        return concat(Protobuf.writeMessage(container), padding);
+        var encoded = Protobuf.writeMessage(container);
+        var result = Arrays.copyOf(encoded, encoded.length + padRandomByte);
+        Arrays.fill(result, encoded.length, result.length, (byte) padRandomByte);
+        return result;
     }
 
     public MessageContainer bytesToMessage(byte[] bytes) {
-        var message = Arrays.copyOfRange(bytes, 0, bytes.length - bytes[bytes.length - 1]);
+        var message = ByteBuffer.wrap(bytes, 0, bytes.length - bytes[bytes.length - 1]);
         return Protobuf.readMessage(message, MessageContainer.class);
     }
 
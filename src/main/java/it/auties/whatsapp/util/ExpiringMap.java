@@ -0,0 +1,206 @@
+package it.auties.whatsapp.util;
+
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+/**
+ * A thread-safe map whose entries expire after a fixed time and that holds at most a fixed number of entries, evicting the oldest one when full
+ * Expired entries are removed by a {@link TimerWheel}, so they don't linger in memory if the map is never accessed again
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class ExpiringMap<K, V> {
+    private final Duration timeToLive;
+    private final int maxSize;
+    private final TimerWheel wheel;
+    private final BiConsumer<? super K, ? super V> onRemoval;
+    private final Map<K, Entry<V>> entries;
+    private long expirations;
+    private long evictions;
+
+    public ExpiringMap(@NonNull Duration timeToLive, int maxSize) {
+        this(timeToLive, maxSize, TimerWheel.shared(), null);
+    }
+
+    /**
+     * Constructs a new expiring map
+     *
+     * @param timeToLive the time after which an entry expires, counted from when it was last written
+     * @param maxSize    the maximum number of entries
+     * @param wheel      the timer wheel used to expire entries
+     * @param onRemoval  a nullable callback invoked when an entry expires or is evicted, but not when it's removed explicitly
+     */
+    public ExpiringMap(@NonNull Duration timeToLive, int maxSize, @NonNull TimerWheel wheel, BiConsumer<? super K, ? super V> onRemoval) {
+        Validate.isTrue(!timeToLive.isZero() && !timeToLive.isNegative(), "Invalid time to live: %s", timeToLive);
+        Validate.isTrue(maxSize > 0, "Invalid map size: %s", maxSize);
+        this.timeToLive = timeToLive;
+        this.maxSize = maxSize;
+        this.wheel = wheel;
+        this.onRemoval = onRemoval;
+        this.entries = new LinkedHashMap<>();
+    }
+
+    public synchronized Optional<V> get(@NonNull K key) {
+        var entry = entries.get(key);
+        return entry == null ? Optional.empty() : Optional.of(entry.value());
+    }
+
+    public synchronized boolean containsKey(@NonNull K key) {
+        return entries.containsKey(key);
+    }
+
+    public Optional<V> put(@NonNull K key, @NonNull V value) {
+        Optional<V> previous;
+        Map<K, V> evicted;
+        synchronized (this) {
+            var old = entries.remove(key);
+            if (old != null) {
+                old.timeout().cancel();
+            }
+
+            insert(key, value);
+            previous = old == null ? Optional.empty() : Optional.of(old.value());
+            evicted = evict();
+        }
+
+        notifyRemoval(evicted);
+        return previous;
+    }
+
+    /**
+     * Adds an entry only if the key isn't already mapped
+     *
+     * @return whether the entry was added
+     */
+    public boolean putIfAbsent(@NonNull K key, @NonNull V value) {
+        Map<K, V> evicted;
+        synchronized (this) {
+            if (entries.containsKey(key)) {
+                return false;
+            }
+
+            insert(key, value);
+            evicted = evict();
+        }
+
+        notifyRemoval(evicted);
+        return true;
+    }
+
+    private void insert(K key, V value) {
+        var entry = new Entry<>(value);
+        entries.put(key, entry);
+        entry.timeout = wheel.schedule(() -> expire(key, entry), timeToLive);
+    }
+
+    private Map<K, V> evict() {
+        if (entries.size() <= maxSize) {
+            return Map.of();
+        }
+
+        var evicted = new LinkedHashMap<K, V>();
+        var iterator = entries.entrySet().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            var eldest = iterator.next();
+            iterator.remove();
+            eldest.getValue().timeout().cancel();
+            evicted.put(eldest.getKey(), eldest.getValue().value());
+            evictions++;
+        }
+
+        return evicted;
+    }
+
+    private void expire(K key, Entry<V> entry) {
+        synchronized (this) {
+            if (!entries.remove(key, entry)) {
+                return;
+            }
+
+            expirations++;
+        }
+
+        if (onRemoval != null) {
+            onRemoval.accept(key, entry.value());
+        }
+    }
+
+    private void notifyRemoval(Map<K, V> removed) {
+        if (onRemoval != null) {
+            removed.forEach(onRemoval);
+        }
+    }
+
+    public Optional<V> remove(@NonNull K key) {
+        Entry<V> entry;
+        synchronized (this) {
+            entry = entries.remove(key);
+        }
+
+        if (entry == null) {
+            return Optional.empty();
+        }
+
+        entry.timeout().cancel();
+        return Optional.of(entry.value());
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        var timeouts = new ArrayList<TimerWheel.Timeout>();
+        synchronized (this) {
+            entries.values().forEach(entry -> timeouts.add(entry.timeout()));
+            entries.clear();
+        }
+
+        timeouts.forEach(TimerWheel.Timeout::cancel);
+    }
+
+    /**
+     * Returns a snapshot of how many entries this map holds and how many were removed automatically
+     *
+     * @return a non-null metrics object
+     */
+    public synchronized Metrics metrics() {
+        return new Metrics(entries.size(), expirations, evictions);
+    }
+
+    // Entries are compared by identity, so that an expiration never removes a newer value mapped to the same key
+    private static final class Entry<V> {
+        private final V value;
+        private TimerWheel.Timeout timeout;
+
+        private Entry(V value) {
+            this.value = value;
+        }
+
+        private V value() {
+            return value;
+        }
+
+        private TimerWheel.Timeout timeout() {
+            return timeout;
+        }
+    }
+
+    /**
+     * A model class that describes the state of an {@link ExpiringMap}
+     *
+     * @param size        the number of entries in the map
+     * @param expirations the number of entries that were removed because they expired
+     * @param evictions   the number of entries that were removed because the map was full
+     */
+    public record Metrics(int size, long expirations, long evictions) {
+
+    }
+}
@@ -0,0 +1,191 @@
+package it.auties.whatsapp.util;
+
+import it.auties.linkpreview.LinkPreview;
+import it.auties.linkpreview.LinkPreviewMedia;
+import it.auties.linkpreview.LinkPreviewResult;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves link previews for outgoing messages.
+ * Previews, including their thumbnail, are cached by canonical url for a limited amount of time.
+ * Failed lookups are cached as well, but for a shorter time, so that a broken website isn't contacted on every message.
+ * Lookups for the same url that are in flight at the same time share the same fetch.
+ */
+@UtilityClass
+public class LinkPreviews {
+    private final Pattern URL_REGEX = Pattern.compile("(https?://)?([\\w.-]+)(\\.\\w{2,})+(?::(\\d+))?([/\\w.?=-]*)", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+    private final Duration PREVIEW_TTL = Duration.ofHours(1);
+    private final Duration NEGATIVE_TTL = Duration.ofMinutes(5);
+    private final Duration FETCH_TIMEOUT = Duration.ofSeconds(10);
+    private final int CACHE_SIZE = 512;
+    private final int FETCH_WORKERS = 4;
+    private final int FETCH_QUEUE_SIZE = 256;
+    private final BoundedCache<String, CachedPreview> CACHE = new BoundedCache<>(CACHE_SIZE);
+    private final Map<String, CompletableFuture<Optional<Preview>>> PENDING = new ConcurrentHashMap<>();
+    private final ExecutorService FETCH_EXECUTOR = createFetchExecutor();
+    private final HttpClient FETCH_CLIENT = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(FETCH_TIMEOUT)
+            .build();
+
+    private ExecutorService createFetchExecutor() {
+        var counter = new AtomicInteger();
+        var executor = new ThreadPoolExecutor(FETCH_WORKERS, FETCH_WORKERS, 30L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(FETCH_QUEUE_SIZE), runnable -> {
+            var thread = new Thread(runnable, "link-preview-worker-%s".formatted(counter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Resolves the preview of the first url in a text that has one.
+     * If the preview isn't available within the provided timeout, an empty optional is returned while the fetch keeps running in the background to populate the cache.
+     *
+     * @param text    the non-null text to scan
+     * @param timeout the non-null maximum amount of time to wait for a preview that isn't cached
+     * @return a non-null future
+     */
+    public CompletableFuture<Optional<Preview>> resolve(@NonNull String text, @NonNull Duration timeout) {
+        var candidates = URL_REGEX.matcher(text)
+                .results()
+                .map(result -> result.group(0))
+                .distinct()
+                .toList();
+        return resolve(candidates.iterator())
+                .completeOnTimeout(Optional.empty(), timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Resolves the preview of an url
+     * If the preview isn't available within the provided timeout, an empty optional is returned while the fetch keeps running in the background to populate the cache.
+     *
+     * @param uri     the non-null url
+     * @param timeout the non-null maximum amount of time to wait for a preview that isn't cached
+     * @return a non-null future
+     */
+    public CompletableFuture<Optional<Preview>> resolve(@NonNull URI uri, @NonNull Duration timeout) {
+        return resolveCandidate(uri.toString())
+                .completeOnTimeout(Optional.empty(), timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private CompletableFuture<Optional<Preview>> resolve(Iterator<String> candidates) {
+        if (!candidates.hasNext()) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        return resolveCandidate(candidates.next())
+                .thenCompose(result -> result.isPresent() ? CompletableFuture.completedFuture(result) : resolve(candidates));
+    }
+
+    private CompletableFuture<Optional<Preview>> resolveCandidate(String text) {
+        var key = canonicalize(text);
+        if (key.isEmpty()) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        var cached = CACHE.get(key.get())
+                .filter(CachedPreview::isValid);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get().preview().map(preview -> preview.withText(text)));
+        }
+
+        var future = new CompletableFuture<Optional<Preview>>();
+        var pending = PENDING.putIfAbsent(key.get(), future);
+        if (pending != null) {
+            return pending.thenApply(result -> result.map(preview -> preview.withText(text)));
+        }
+
+        fetch(key.get(), text, future);
+        return future.copy();
+    }
+
+    private void fetch(String key, String text, CompletableFuture<Optional<Preview>> future) {
+        try {
+            CompletableFuture.supplyAsync(() -> fetchPreview(text), FETCH_EXECUTOR)
+                    .exceptionally(ignored -> Optional.empty())
+                    .thenAccept(result -> {
+                        var ttl = result.isPresent() ? PREVIEW_TTL : NEGATIVE_TTL;
+                        CACHE.put(key, new CachedPreview(result, System.currentTimeMillis() + ttl.toMillis()));
+                        PENDING.remove(key, future);
+                        future.complete(result);
+                    });
+        } catch (RejectedExecutionException exception) {
+            PENDING.remove(key, future);
+            future.complete(Optional.empty());
+        }
+    }
+
+    // The timeouts are enforced by the http client, so that a slow website releases the worker instead of blocking it after the lookup was abandoned
+    private Optional<Preview> fetchPreview(String text) {
+        var request = HttpRequest.newBuilder()
+                .uri(URI.create(text.contains("://") ? text : "https://%s".formatted(text)))
+                .timeout(FETCH_TIMEOUT)
+                .header("User-Agent", "Googlebot")
+                .GET()
+                .build();
+        return LinkPreview.createPreview(FETCH_CLIENT, request)
+                .map(result -> new Preview(text, result, downloadThumbnail(result)));
+    }
+
+    private byte[] downloadThumbnail(LinkPreviewResult result) {
+        var imageUri = result.images()
+                .stream()
+                .reduce((first, second) -> first.width() * first.height() > second.width() * second.height() ? first : second)
+                .map(LinkPreviewMedia::uri)
+                .orElse(null);
+        return Medias.download(imageUri, FETCH_TIMEOUT)
+                .orElse(null);
+    }
+
+    private Optional<String> canonicalize(String text) {
+        try {
+            var uri = URI.create(text.contains("://") ? text : "https://%s".formatted(text));
+            if (uri.getHost() == null) {
+                return Optional.empty();
+            }
+
+            var path = Objects.requireNonNullElse(uri.getRawPath(), "");
+            if (path.endsWith("/")) {
+                path = path.substring(0, path.length() - 1);
+            }
+
+            var port = uri.getPort() == -1 ? "" : ":%s".formatted(uri.getPort());
+            var query = uri.getRawQuery() == null ? "" : "?%s".formatted(uri.getRawQuery());
+            return Optional.of("%s%s%s%s".formatted(uri.getHost().toLowerCase(Locale.ROOT), port, path, query));
+        } catch (IllegalArgumentException exception) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * A resolved link preview
+     *
+     * @param text      the text that matched the url
+     * @param result    the non-null preview
+     * @param thumbnail the thumbnail of the largest image of the preview, if any
+     */
+    public record Preview(@NonNull String text, @NonNull LinkPreviewResult result, byte[] thumbnail) {
+        private Preview withText(String text) {
+            return Objects.equals(this.text, text) ? this : new Preview(text, result, thumbnail);
+        }
+    }
+
+    private record CachedPreview(Optional<Preview> preview, long expiration) {
+        private boolean isValid() {
+            return System.currentTimeMillis() < expiration;
+        }
+    }
+}
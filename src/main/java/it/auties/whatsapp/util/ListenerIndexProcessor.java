@@ -0,0 +1,93 @@
+package it.auties.whatsapp.util;
+
+import it.auties.whatsapp.listener.Listener;
+import it.auties.whatsapp.listener.RegisterListener;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An annotation processor that writes the names of the classes annotated with {@link RegisterListener} to an index,
+ * so that {@link ListenerScanner} doesn't need to scan the classpath when listeners are detected automatically.
+ * The processor is registered as a service, so it runs whenever this library is on the annotation processor path of a compilation.
+ */
+@SupportedAnnotationTypes("it.auties.whatsapp.listener.RegisterListener")
+public class ListenerIndexProcessor extends AbstractProcessor {
+    private final Set<String> listeners = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment environment) {
+        if (environment.processingOver()) {
+            writeIndex();
+            return false;
+        }
+
+        var listenerType = processingEnv.getElementUtils()
+                .getTypeElement(Listener.class.getName())
+                .asType();
+        for (var element : environment.getElementsAnnotatedWith(RegisterListener.class)) {
+            if (element.getKind() != ElementKind.CLASS || !processingEnv.getTypeUtils().isAssignable(element.asType(), listenerType)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Classes annotated with @RegisterListener must implement Listener", element);
+                continue;
+            }
+
+            var binaryName = processingEnv.getElementUtils().getBinaryName((TypeElement) element);
+            listeners.add(binaryName.toString());
+        }
+
+        return false;
+    }
+
+    private void writeIndex() {
+        // Incremental compilations only process the classes that changed, so the listeners indexed previously must be kept
+        readIndex();
+        if (listeners.isEmpty()) {
+            return;
+        }
+
+        try (var writer = new OutputStreamWriter(processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", ListenerScanner.INDEX_PATH).openOutputStream(), StandardCharsets.UTF_8)) {
+            for (var listener : listeners) {
+                writer.write(listener);
+                writer.write('\n');
+            }
+        } catch (IOException exception) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write listeners index: %s".formatted(exception.getMessage()));
+        }
+    }
+
+    private void readIndex() {
+        try (var reader = new BufferedReader(new InputStreamReader(processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", ListenerScanner.INDEX_PATH).openInputStream(), StandardCharsets.UTF_8))) {
+            reader.lines()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty())
+                    .filter(this::isIndexable)
+                    .forEach(listeners::add);
+        } catch (IOException ignored) {
+            // No previous index
+        }
+    }
+
+    // Listeners that were deleted or that are no longer annotated since the previous compilation are dropped
+    private boolean isIndexable(String binaryName) {
+        var element = processingEnv.getElementUtils().getTypeElement(binaryName.replace('$', '.'));
+        return element != null && element.getAnnotation(RegisterListener.class) != null;
+    }
+}
@@ -0,0 +1,39 @@
+package it.auties.whatsapp.util;
+
+import it.auties.whatsapp.listener.Listener;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Finds which events a listener is interested in, that is the methods of {@link Listener} that it overrides.
+ * The result is computed once per class, so registering many instances of the same listener is cheap.
+ */
+@UtilityClass
+public class ListenerIntrospector {
+    private final ClassValue<Set<String>> EVENTS = new ClassValue<>() {
+        @Override
+        protected Set<String> computeValue(Class<?> type) {
+            return Arrays.stream(Listener.class.getMethods())
+                    .filter(method -> isOverridden(type, method.getName(), method.getParameterTypes()))
+                    .map(Method::getName)
+                    .collect(Collectors.toUnmodifiableSet());
+        }
+    };
+
+    public Set<String> events(@NonNull Listener listener) {
+        return EVENTS.get(listener.getClass());
+    }
+
+    private boolean isOverridden(Class<?> type, String name, Class<?>[] parameters) {
+        try {
+            return type.getMethod(name, parameters).getDeclaringClass() != Listener.class;
+        } catch (NoSuchMethodException exception) {
+            return false;
+        }
+    }
+}
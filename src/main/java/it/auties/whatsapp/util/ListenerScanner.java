@@ -7,18 +7,37 @@ import it.auties.whatsapp.listener.Listener;
 import it.auties.whatsapp.listener.RegisterListener;
 import lombok.experimental.UtilityClass;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
-import java.util.List;
-import java.util.NoSuchElementException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 
 @UtilityClass
 public class ListenerScanner {
+    /**
+     * The path of the resource where {@link ListenerIndexProcessor} lists the classes annotated with {@link RegisterListener}
+     * Every jar that contains listeners has its own index: when jars are merged into a single one, the indexes must be concatenated instead of overwritten.
+     * For example, using the maven shade plugin, add an {@code AppendingTransformer} for this resource, or, using the gradle shadow plugin, {@code append 'META-INF/whatsapp/listeners'}.
+     */
+    public static final String INDEX_PATH = "META-INF/whatsapp/listeners";
+
+    /**
+     * The name of the system property that, if set to true, makes the classpath always be scanned for listeners, even if an index is available
+     * This is useful if the index cannot be trusted, for example if it was overwritten while merging jars
+     */
+    public static final String FORCE_SCAN_PROPERTY = "whatsapp.listeners.scan";
+
+    private static final System.Logger LOGGER = System.getLogger("ListenerScanner");
     private static final List<Class<?>> listeners;
 
+    // The classpath is scanned only if no index is available, for example if the listeners were compiled without annotation processing
     static {
-        try (var scanner = createScanner()) {
-            listeners = scanner.getClassesWithAnnotation(RegisterListener.class).loadClasses();
-        }
+        listeners = Boolean.getBoolean(FORCE_SCAN_PROPERTY) ? scanListeners() : loadIndexedListeners()
+                .orElseGet(ListenerScanner::scanListeners);
     }
 
     public List<Listener> scan(Whatsapp whatsapp) {
@@ -27,6 +46,55 @@ public class ListenerScanner {
                 .toList();
     }
 
+    private Optional<List<Class<?>>> loadIndexedListeners() {
+        var classLoader = Objects.requireNonNullElseGet(Thread.currentThread().getContextClassLoader(), ListenerScanner.class::getClassLoader);
+        try {
+            var indexes = Collections.list(classLoader.getResources(INDEX_PATH));
+            if (indexes.isEmpty()) {
+                return Optional.empty();
+            }
+
+            var names = new LinkedHashSet<String>();
+            for (var index : indexes) {
+                readIndex(index, names);
+            }
+
+            var results = new ArrayList<Class<?>>(names.size());
+            for (var name : names) {
+                loadListener(name, classLoader).ifPresent(results::add);
+            }
+
+            return Optional.of(Collections.unmodifiableList(results));
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot read listeners index", exception);
+        }
+    }
+
+    private void readIndex(URL index, Set<String> names) throws IOException {
+        try (var reader = new BufferedReader(new InputStreamReader(index.openStream(), StandardCharsets.UTF_8))) {
+            reader.lines()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty())
+                    .forEach(names::add);
+        }
+    }
+
+    // An index can outlive the classes it lists, for example if a listener was deleted without a clean build
+    private Optional<Class<?>> loadListener(String name, ClassLoader classLoader) {
+        try {
+            return Optional.of(Class.forName(name, false, classLoader));
+        } catch (ClassNotFoundException | LinkageError exception) {
+            LOGGER.log(System.Logger.Level.WARNING, "Skipping listener at %s: the class is listed in the listeners index, but it cannot be loaded".formatted(name), exception);
+            return Optional.empty();
+        }
+    }
+
+    private List<Class<?>> scanListeners() {
+        try (var scanner = createScanner()) {
+            return scanner.getClassesWithAnnotation(RegisterListener.class).loadClasses();
+        }
+    }
+
     private ScanResult createScanner() {
         return new ClassGraph().enableClassInfo().enableAnnotationInfo().scan();
     }
@@ -0,0 +1,190 @@
+package it.auties.whatsapp.util;
+
+import it.auties.whatsapp.model.media.MediaDimensions;
+import it.auties.whatsapp.model.media.MediaMetadata;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Reads the duration and the dimensions of a media from its container headers without spawning any external process.
+ * Supported containers are ISO base media files(mp4, m4a, mov, 3gp) and ogg(opus, vorbis).
+ */
+@UtilityClass
+class MediaProbe {
+    private final Set<String> MP4_CONTAINERS = Set.of("moov", "trak", "mdia", "minf", "stbl", "edts", "udta");
+    private final byte[] OGG_CAPTURE = "OggS".getBytes(StandardCharsets.US_ASCII);
+    private final byte[] OPUS_HEADER = "OpusHead".getBytes(StandardCharsets.US_ASCII);
+    private final byte[] VORBIS_HEADER = "\u0001vorbis".getBytes(StandardCharsets.US_ASCII);
+    private final int OPUS_SAMPLE_RATE = 48000;
+    private final int OGG_PAGE_HEADER_LENGTH = 27;
+
+    Optional<MediaMetadata> probe(byte @NonNull [] file) {
+        try {
+            if (startsWith(file, 0, OGG_CAPTURE)) {
+                return probeOgg(file);
+            }
+
+            if (file.length >= 8 && isMp4Box(file)) {
+                return probeMp4(file);
+            }
+
+            return Optional.empty();
+        } catch (RuntimeException exception) {
+            return Optional.empty();
+        }
+    }
+
+    private boolean isMp4Box(byte[] file) {
+        var type = new String(file, 4, 4, StandardCharsets.US_ASCII);
+        return type.equals("ftyp") || type.equals("moov") || type.equals("mdat") || type.equals("wide") || type.equals("free");
+    }
+
+    private Optional<MediaMetadata> probeMp4(byte[] file) {
+        var state = new Mp4State();
+        readMp4Boxes(ByteBuffer.wrap(file), 0, file.length, state);
+        if (state.timescale <= 0) {
+            return Optional.empty();
+        }
+
+        var dimensions = state.width > 0 && state.height > 0 ? new MediaDimensions(state.width, state.height) : MediaDimensions.DEFAULT;
+        return Optional.of(new MediaMetadata((int) (state.duration / state.timescale), dimensions));
+    }
+
+    private void readMp4Boxes(ByteBuffer buffer, int start, int end, Mp4State state) {
+        var position = start;
+        while (position + 8 <= end) {
+            long size = Integer.toUnsignedLong(buffer.getInt(position));
+            var type = readType(buffer, position + 4);
+            var headerLength = 8;
+            if (size == 1) {
+                size = buffer.getLong(position + 8);
+                headerLength = 16;
+            } else if (size == 0) {
+                size = end - position;
+            }
+
+            if (size < headerLength || position + size > end) {
+                return;
+            }
+
+            var bodyStart = position + headerLength;
+            var bodyEnd = (int) (position + size);
+            switch (type) {
+                case "mvhd" -> readMovieHeader(buffer, bodyStart, state);
+                case "tkhd" -> readTrackHeader(buffer, bodyStart, state);
+                default -> {
+                    if (MP4_CONTAINERS.contains(type)) {
+                        readMp4Boxes(buffer, bodyStart, bodyEnd, state);
+                    }
+                }
+            }
+
+            position = bodyEnd;
+        }
+    }
+
+    private void readMovieHeader(ByteBuffer buffer, int offset, Mp4State state) {
+        var version = buffer.get(offset);
+        if (version == 1) {
+            state.timescale = Integer.toUnsignedLong(buffer.getInt(offset + 20));
+            state.duration = buffer.getLong(offset + 24);
+            return;
+        }
+
+        state.timescale = Integer.toUnsignedLong(buffer.getInt(offset + 12));
+        state.duration = Integer.toUnsignedLong(buffer.getInt(offset + 16));
+    }
+
+    private void readTrackHeader(ByteBuffer buffer, int offset, Mp4State state) {
+        if (state.width > 0 && state.height > 0) {
+            return;
+        }
+
+        var version = buffer.get(offset);
+        var matrixOffset = offset + (version == 1 ? 52 : 40);
+        var widthOffset = matrixOffset + 36;
+        var width = buffer.getInt(widthOffset) >>> 16;
+        var height = buffer.getInt(widthOffset + 4) >>> 16;
+        if (width == 0 || height == 0) {
+            return;
+        }
+
+        // A 90 or 270 degrees rotation is encoded as a matrix whose first coefficient is zero
+        var rotated = buffer.getInt(matrixOffset) == 0 && buffer.getInt(matrixOffset + 4) != 0;
+        state.width = rotated ? height : width;
+        state.height = rotated ? width : height;
+    }
+
+    private String readType(ByteBuffer buffer, int offset) {
+        var type = new byte[4];
+        buffer.get(offset, type);
+        return new String(type, StandardCharsets.US_ASCII);
+    }
+
+    private Optional<MediaMetadata> probeOgg(byte[] file) {
+        var buffer = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+        var serial = buffer.getInt(14);
+        var packetStart = OGG_PAGE_HEADER_LENGTH + Byte.toUnsignedInt(file[26]);
+        long sampleRate;
+        long preSkip;
+        if (startsWith(file, packetStart, OPUS_HEADER)) {
+            sampleRate = OPUS_SAMPLE_RATE;
+            preSkip = Short.toUnsignedInt(buffer.getShort(packetStart + 10));
+        } else if (startsWith(file, packetStart, VORBIS_HEADER)) {
+            sampleRate = Integer.toUnsignedLong(buffer.getInt(packetStart + 12));
+            preSkip = 0;
+        } else {
+            return Optional.empty();
+        }
+
+        var granule = findLastGranule(file, buffer, serial);
+        if (granule <= 0 || sampleRate <= 0) {
+            return Optional.empty();
+        }
+
+        var duration = (int) (Math.max(granule - preSkip, 0) / sampleRate);
+        return Optional.of(new MediaMetadata(duration, MediaDimensions.DEFAULT));
+    }
+
+    private long findLastGranule(byte[] file, ByteBuffer buffer, int serial) {
+        for (var index = file.length - OGG_PAGE_HEADER_LENGTH; index >= 0; index--) {
+            if (!startsWith(file, index, OGG_CAPTURE) || buffer.getInt(index + 14) != serial) {
+                continue;
+            }
+
+            var granule = buffer.getLong(index + 6);
+            if (granule != -1) {
+                return granule;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean startsWith(byte[] file, int offset, byte[] prefix) {
+        if (offset < 0 || offset + prefix.length > file.length) {
+            return false;
+        }
+
+        for (var index = 0; index < prefix.length; index++) {
+            if (file[offset + index] != prefix[index]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static final class Mp4State {
+        private long timescale;
+        private long duration;
+        private int width;
+        private int height;
+    }
+}
@@ -32,14 +32,14 @@ import java.net.http.HttpClient.Version;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.stream.IntStream;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.net.http.HttpRequest.BodyPublishers.ofByteArray;
 import static java.net.http.HttpResponse.BodyHandlers.ofString;
@@ -53,8 +53,28 @@ public class Medias {
     private final int PROFILE_PIC_SIZE = 640;
     private final String DEFAULT_HOST = "mmg.whatsapp.net";
     private final int THUMBNAIL_SIZE = 32;
+    private final int METADATA_CACHE_SIZE = 256;
+    private final BoundedCache<String, MediaMetadata> METADATA_CACHE = new BoundedCache<>(METADATA_CACHE_SIZE);
+    private final int THUMBNAIL_OVERSAMPLING = 4;
+    private final int THUMBNAIL_CACHE_SIZE = 128;
+    private final BoundedCache<String, byte[]> THUMBNAIL_CACHE = new BoundedCache<>(THUMBNAIL_CACHE_SIZE);
+    private final int THUMBNAIL_WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private final int THUMBNAIL_QUEUE_SIZE = 64;
+    private final ExecutorService THUMBNAIL_EXECUTOR = createThumbnailExecutor();
     private final String USER_AGENT = "Mozilla/5.0 (Linux; Android 13) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/114.0.5735.57 Mobile Safari/537.36";
 
+    private ExecutorService createThumbnailExecutor() {
+        var counter = new AtomicInteger();
+        var executor = new ThreadPoolExecutor(THUMBNAIL_WORKERS, THUMBNAIL_WORKERS, 30L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(THUMBNAIL_QUEUE_SIZE), runnable -> {
+            var thread = new Thread(runnable, "thumbnail-worker-%s".formatted(counter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     public byte[] getProfilePic(byte[] file) {
         try {
             try(var inputStream = new ByteArrayInputStream(file)) {
@@ -85,11 +105,22 @@ public class Medias {
                 .join();
     }
 
+    public Optional<byte[]> download(URI imageUri, Duration timeout) {
+        return downloadAsync(imageUri, true, timeout)
+                .thenApplyAsync(Optional::ofNullable)
+                .exceptionally(ignored -> Optional.empty())
+                .join();
+    }
+
     public CompletableFuture<byte[]> downloadAsync(URI imageUri) {
         return downloadAsync(imageUri, true);
     }
 
     public CompletableFuture<byte[]> downloadAsync(URI imageUri, boolean userAgent) {
+        return downloadAsync(imageUri, userAgent, null);
+    }
+
+    private CompletableFuture<byte[]> downloadAsync(URI imageUri, boolean userAgent, Duration timeout) {
         try {
             if (imageUri == null) {
                 return CompletableFuture.completedFuture(null);
@@ -101,16 +132,19 @@ public class Medias {
             if(userAgent){
                 request.header("User-Agent", USER_AGENT);
             }
+            if(timeout != null){
+                request.timeout(timeout);
+            }
             return CLIENT.sendAsync(request.build(), BodyHandlers.ofByteArray()).thenCompose(response -> {
                 if (response.statusCode() != HttpURLConnection.HTTP_OK) {
-                    return userAgent ? downloadAsync(imageUri, false)
+                    return userAgent ? downloadAsync(imageUri, false, timeout)
                             : CompletableFuture.failedFuture(new IllegalArgumentException("Erroneous status code: " + response.statusCode()));
                 }
 
                 return CompletableFuture.completedFuture(response.body());
             });
         } catch (Throwable exception) {
-            return userAgent ? downloadAsync(imageUri, false) : CompletableFuture.failedFuture(exception);
+            return userAgent ? downloadAsync(imageUri, false, timeout) : CompletableFuture.failedFuture(exception);
         }
     }
 
@@ -249,51 +283,63 @@ public class Medias {
     }
 
     public int getDuration(byte[] file) {
-        var input = createTempFile(file);
-        try {
-            var process = Runtime.getRuntime()
-                    .exec(new String[]{"ffprobe", "-v", "error", "-show_entries", "format=duration", "-of", "default=noprint_wrappers=1:nokey=1", input.toString()});
-            if (process.waitFor() != 0) {
-                return 0;
+        return getMetadata(file).duration();
+    }
+
+    public MediaDimensions getDimensions(byte[] file, boolean video) {
+        if (video) {
+            return getMetadata(file).dimensions();
+        }
+
+        try (var inputStream = ImageIO.createImageInputStream(new ByteArrayInputStream(file))) {
+            var readers = ImageIO.getImageReaders(inputStream);
+            if (!readers.hasNext()) {
+                return MediaDimensions.DEFAULT;
             }
-            var result = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-            return (int) Float.parseFloat(result);
-        } catch (Throwable throwable) {
-            return 0;
-        }finally {
-            try {
-                Files.deleteIfExists(input);
-            }catch (IOException ignored){
 
+            var reader = readers.next();
+            try {
+                reader.setInput(inputStream, true, true);
+                return new MediaDimensions(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
             }
+        } catch (Exception throwable) {
+            return MediaDimensions.DEFAULT;
         }
     }
 
-    public MediaDimensions getDimensions(byte[] file, boolean video) {
+    public MediaMetadata getMetadata(byte @NonNull [] file) {
+        var key = HexFormat.of().formatHex(Sha256.calculate(file));
+        return METADATA_CACHE.computeIfAbsent(key, ignored -> MediaProbe.probe(file)
+                .orElseGet(() -> probeMetadata(file)));
+    }
+
+    private MediaMetadata probeMetadata(byte[] file) {
+        var input = createTempFile(file);
         try {
-            if(!video){
-                var originalImage = ImageIO.read(new ByteArrayInputStream(file));
-                return new MediaDimensions(originalImage.getWidth(), originalImage.getHeight());
+            var process = Runtime.getRuntime()
+                    .exec(new String[]{"ffprobe", "-v", "error", "-show_entries", "format=duration:stream=width,height", "-of", "json", input.toString()});
+            var result = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            if (process.waitFor() != 0) {
+                return MediaMetadata.EMPTY;
             }
-
-            var input = createTempFile(file);
+            var ffprobe = Json.readValue(result, FfprobeResult.class);
+            var duration = ffprobe.format() == null || ffprobe.format().duration() == null ? 0 : (int) Float.parseFloat(ffprobe.format().duration());
+            var dimensions = Objects.requireNonNullElseGet(ffprobe.streams(), List::<MediaDimensions>of)
+                    .stream()
+                    .filter(entry -> entry.width() > 0 && entry.height() > 0)
+                    .findFirst()
+                    .orElse(MediaDimensions.DEFAULT);
+            return new MediaMetadata(duration, dimensions);
+        } catch (Throwable throwable) {
+            return MediaMetadata.EMPTY;
+        } finally {
             try {
-                var process = Runtime.getRuntime()
-                        .exec(new String[]{"ffprobe", "-v", "error", "-select_streams", "v", "-show_entries", "stream=width,height", "-of", "json", input.toString()});
-                if (process.waitFor() != 0) {
-                    return MediaDimensions.DEFAULT;
-                }
-                var result = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-                var ffprobe = Json.readValue(result, FfprobeResult.class);
-                if (ffprobe.streams() == null || ffprobe.streams().isEmpty()) {
-                    return MediaDimensions.DEFAULT;
-                }
-                return ffprobe.streams().get(0);
-            }finally {
                 Files.deleteIfExists(input);
+            } catch (IOException ignored) {
+
             }
-        } catch (Exception throwable) {
-            return MediaDimensions.DEFAULT;
         }
     }
 
@@ -314,6 +360,32 @@ public class Medias {
     }
 
     public Optional<byte[]> getThumbnail(byte[] file, Format format) {
+        return getThumbnailAsync(file, format).join();
+    }
+
+    public CompletableFuture<Optional<byte[]>> getThumbnailAsync(byte[] file, String fileType){
+        return getThumbnailAsync(file, Format.ofDocument(fileType));
+    }
+
+    public CompletableFuture<Optional<byte[]>> getThumbnailAsync(byte[] file, @NonNull Format format) {
+        if (file == null || format == Format.UNKNOWN) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        var key = "%s_%s".formatted(HexFormat.of().formatHex(Sha256.calculate(file)), format.name());
+        var cached = THUMBNAIL_CACHE.get(key);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            var result = createThumbnail(file, format);
+            result.ifPresent(thumbnail -> THUMBNAIL_CACHE.put(key, thumbnail));
+            return result;
+        }, THUMBNAIL_EXECUTOR);
+    }
+
+    private Optional<byte[]> createThumbnail(byte[] file, Format format) {
         return switch (format) {
             case UNKNOWN -> Optional.empty();
             case JPG, PNG -> getImageThumbnail(file, format);
@@ -325,19 +397,19 @@ public class Medias {
 
     private Optional<byte[]> getImageThumbnail(byte[] file, Format format) {
         try {
-            var image = ImageIO.read(new ByteArrayInputStream(file));
+            var image = readSubsampledImage(file, THUMBNAIL_SIZE);
             if (image == null) {
                 return Optional.empty();
             }
             var type = image.getType() == 0 ? BufferedImage.TYPE_INT_ARGB : image.getType();
             var resizedImage = new BufferedImage(THUMBNAIL_SIZE, THUMBNAIL_SIZE, type);
             var graphics = resizedImage.createGraphics();
-            graphics.drawImage(image, 0, 0, THUMBNAIL_SIZE, THUMBNAIL_SIZE, null);
-            graphics.dispose();
             graphics.setComposite(AlphaComposite.Src);
             graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
             graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
             graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.drawImage(image, 0, 0, THUMBNAIL_SIZE, THUMBNAIL_SIZE, null);
+            graphics.dispose();
             var outputStream = new ByteArrayOutputStream();
             ImageIO.write(resizedImage, format.name().toLowerCase(), outputStream);
             return Optional.of(outputStream.toByteArray());
@@ -346,6 +418,29 @@ public class Medias {
         }
     }
 
+    // Only every nth pixel is decoded so that the full resolution image is never materialized in memory
+    private BufferedImage readSubsampledImage(byte[] file, int targetSize) throws IOException {
+        try (var inputStream = ImageIO.createImageInputStream(new ByteArrayInputStream(file))) {
+            if (inputStream == null) {
+                return null;
+            }
+            var readers = ImageIO.getImageReaders(inputStream);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            var reader = readers.next();
+            try {
+                reader.setInput(inputStream, true, true);
+                var parameters = reader.getDefaultReadParam();
+                var subsampling = Math.max(1, Math.min(reader.getWidth(0), reader.getHeight(0)) / (targetSize * THUMBNAIL_OVERSAMPLING));
+                parameters.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, parameters);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
     private Optional<byte[]> getVideoThumbnail(byte[] file) {
         var input = createTempFile(file);
         var output = createTempFile(null);
@@ -371,7 +466,9 @@ public class Medias {
     private Optional<byte[]> getPdfThumbnail(byte[] file) {
         try (var document = PDDocument.load(file); var outputStream = new ByteArrayOutputStream()) {
             var renderer = new PDFRenderer(document);
-            var image = renderer.renderImage(0);
+            var page = document.getPage(0).getMediaBox();
+            var scale = Math.min(1f, Math.max(Spec.Whatsapp.THUMBNAIL_WIDTH / page.getWidth(), Spec.Whatsapp.THUMBNAIL_HEIGHT / page.getHeight()));
+            var image = renderer.renderImage(0, scale);
             var thumb = new BufferedImage(Spec.Whatsapp.THUMBNAIL_WIDTH, Spec.Whatsapp.THUMBNAIL_HEIGHT, BufferedImage.TYPE_INT_RGB);
             var graphics2D = thumb.createGraphics();
             graphics2D.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
@@ -417,40 +514,19 @@ public class Medias {
         }
     }
 
-    private record FfprobeResult(List<MediaDimensions> streams) {
+    private record FfprobeResult(List<MediaDimensions> streams, FfprobeFormat format) {
+
+    }
+
+    private record FfprobeFormat(String duration) {
 
     }
 
     public Optional<byte[]> getAudioWaveForm(byte[] audioData) {
-        try {
-            var rawData = toFloatArray(audioData);
-            var samples = 64;
-            var blockSize = rawData.length / samples;
-            var filteredData = IntStream.range(0, samples)
-                    .map(i -> blockSize * i)
-                    .map(blockStart -> IntStream.range(0, blockSize)
-                            .map(j -> (int) Math.abs(rawData[blockStart + j]))
-                            .sum())
-                    .mapToObj(sum -> sum / blockSize)
-                    .toList();
-            var multiplier = Math.pow(Collections.max(filteredData), -1);
-            var normalizedData = filteredData.stream()
-                    .map(data -> (byte)  Math.abs(100 * data * multiplier))
-                    .toList();
-            var waveform = new byte[normalizedData.size()];
-            IntStream.range(0, normalizedData.size())
-                    .forEach(i -> waveform[i] = normalizedData.get(i));
-            return Optional.of(waveform);
-        } catch (Throwable throwable) {
-            return Optional.empty();
-        }
+        return getAudioWaveForm(audioData, AudioDecoder.RAW_FLOAT);
     }
 
-    private float[] toFloatArray(byte[] audioData) {
-        var rawData = new float[audioData.length / 4];
-        ByteBuffer.wrap(audioData)
-                .asFloatBuffer()
-                .get(rawData);
-        return rawData;
+    public Optional<byte[]> getAudioWaveForm(byte[] audioData, @NonNull AudioDecoder decoder) {
+        return audioData == null ? Optional.empty() : AudioWaveform.compute(audioData, decoder);
     }
 }
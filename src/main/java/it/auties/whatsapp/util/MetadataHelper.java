@@ -29,15 +29,22 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
 import java.security.Security;
 import java.security.cert.CertificateException;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
@@ -51,13 +58,20 @@ public class MetadataHelper {
 
     private final Logger LOGGER =  System.getLogger("Metadata");
     private final Pattern IOS_VERSION_PATTERN = Pattern.compile("(?<=Minimum Requirements \\(Version )\\d+\\.\\d+\\.\\d+");
-
-    private volatile Version webVersion;
+    private final Duration WEB_VERSION_TTL = Duration.ofDays(1);
+    private final Duration WEB_VERSION_GRACE = Duration.ofHours(1);
+    private final Duration ANDROID_DATA_TTL = Duration.ofDays(7);
+    private final HttpClient HTTP_CLIENT = HttpClient.newHttpClient();
+    // Callers that need the same metadata while it's being fetched share the same request
+    private final ConcurrentMap<String, CompletableFuture<?>> PENDING_FETCHES = new ConcurrentHashMap<>();
+
+    private volatile WebVersionCache webVersion;
     private volatile Version iosVersion;
     private volatile WhatsappApk cachedApk;
     private volatile WhatsappApk cachedBusinessApk;
 
     private Path androidCache = Path.of(System.getProperty("user.home") + "/.whatsapp4j/token/android");
+    private Path webCache = Path.of(System.getProperty("user.home") + "/.whatsapp4j/token/web");
 
     public void setAndroidCache(@NonNull Path path) {
         try {
@@ -68,6 +82,16 @@ public class MetadataHelper {
         }
     }
 
+    public void setWebCache(@NonNull Path path) {
+        try {
+            Files.createDirectories(path);
+            webCache = path;
+            webVersion = null;
+        }catch (IOException exception){
+            throw new UncheckedIOException(exception);
+        }
+    }
+
     public CompletableFuture<Version> getVersion(UserAgentPlatform platform, boolean business) {
         return getVersion(platform, business, true);
     }
@@ -107,23 +131,70 @@ public class MetadataHelper {
         return Whatsapp.DEFAULT_MOBILE_IOS_VERSION;
     }
 
+    // A version that expired recently is still returned, while a fresh one is fetched in the background
+    // Past the grace period, the caller waits for a fresh version and the expired one is only used if the fetch fails
     private CompletableFuture<Version> getWebVersion() {
-        try{
-            if (webVersion != null) {
-                return CompletableFuture.completedFuture(webVersion);
-            }
+        var cached = Optional.ofNullable(webVersion)
+                .or(MetadataHelper::readWebVersionCache);
+        if (cached.isEmpty()) {
+            return fetchWebVersion();
+        }
 
-            var client = HttpClient.newHttpClient();
+        webVersion = cached.get();
+        var timestamp = cached.get().timestamp();
+        if (!isExpired(timestamp, WEB_VERSION_TTL)) {
+            return CompletableFuture.completedFuture(cached.get().version());
+        }
+
+        if (isExpired(timestamp, WEB_VERSION_TTL.plus(WEB_VERSION_GRACE))) {
+            return fetchWebVersion().exceptionally(throwable -> {
+                LOGGER.log(Logger.Level.WARNING, "Cannot refresh web version, falling back to the version cached at %s".formatted(timestamp), throwable);
+                return cached.get().version();
+            });
+        }
+
+        fetchWebVersion().exceptionally(throwable -> {
+            LOGGER.log(Logger.Level.WARNING, "Cannot refresh web version", throwable);
+            return null;
+        });
+        return CompletableFuture.completedFuture(cached.get().version());
+    }
+
+    private CompletableFuture<Version> fetchWebVersion() {
+        return fetchOnce("web", () -> {
             var request = HttpRequest.newBuilder()
                     .GET()
                     .uri(URI.create(Whatsapp.WEB_UPDATE_URL))
                     .build();
-            return client.sendAsync(request, ofString())
+            return HTTP_CLIENT.sendAsync(request, ofString())
                     .thenApplyAsync(response -> Json.readValue(response.body(), WebVersionResponse.class))
-                    .thenApplyAsync(version -> webVersion = new Version(version.currentVersion()));
-        } catch(Throwable throwable) {
-            throw new RuntimeException("Cannot fetch latest web version", throwable);
+                    .thenApplyAsync(response -> cacheWebVersion(new Version(response.currentVersion())));
+        }).exceptionallyCompose(throwable -> CompletableFuture.failedFuture(new RuntimeException("Cannot fetch latest web version", throwable)));
+    }
+
+    private Optional<WebVersionCache> readWebVersionCache() {
+        try {
+            var file = webCache.resolve("version.json");
+            if (Files.notExists(file)) {
+                return Optional.empty();
+            }
+
+            return Optional.of(Json.readValue(Files.readString(file), WebVersionCache.class));
+        } catch (Throwable throwable) {
+            return Optional.empty();
+        }
+    }
+
+    private Version cacheWebVersion(Version version) {
+        var result = new WebVersionCache(version, Instant.now());
+        webVersion = result;
+        try {
+            writeCache(webCache.resolve("version.json"), Json.writeValueAsString(result, true));
+        } catch (Throwable throwable) {
+            LOGGER.log(Logger.Level.WARNING, "Cannot update web version cache", throwable);
         }
+
+        return version;
     }
 
     public CompletableFuture<String> getToken(long phoneNumber, UserAgentPlatform platform, boolean business, boolean useJarCache) {
@@ -164,7 +235,7 @@ public class MetadataHelper {
         }
     }
 
-    private synchronized CompletableFuture<WhatsappApk> getAndroidData(boolean business, boolean useJarCache) {
+    private CompletableFuture<WhatsappApk> getAndroidData(boolean business, boolean useJarCache) {
         if(!business && cachedApk != null){
             return CompletableFuture.completedFuture(cachedApk);
         }
@@ -179,10 +250,11 @@ public class MetadataHelper {
     }
 
     public CompletableFuture<WhatsappApk> downloadWhatsappApk(boolean business) {
-        return Medias.downloadAsync(business ? Whatsapp.MOBILE_BUSINESS_DOWNLOAD_URL : Whatsapp.MOBILE_DOWNLOAD_URL)
-                .thenApplyAsync(result -> getAndroidData(result, business));
+        return fetchOnce(business ? "android_business" : "android", () -> Medias.downloadAsync(business ? Whatsapp.MOBILE_BUSINESS_DOWNLOAD_URL : Whatsapp.MOBILE_DOWNLOAD_URL)
+                .thenApplyAsync(result -> getAndroidData(result, business)));
     }
 
+    // An expired local cache is still used, unless the jar cache is disallowed because the cached data was rejected, while a fresh apk is downloaded in the background
     private Optional<WhatsappApk> getCachedApk(boolean business, boolean useJarCache){
         try {
             var localCache = getAndroidLocalCache(business);
@@ -195,18 +267,70 @@ public class MetadataHelper {
                 return Optional.empty();
             }
 
-            var now = Instant.now();
-            var fileTime = Files.getLastModifiedTime(localCache);
-            if(fileTime.toInstant().until(now, ChronoUnit.WEEKS) > 1){
+            var expired = isExpired(Files.getLastModifiedTime(localCache).toInstant(), ANDROID_DATA_TTL);
+            if(expired && !useJarCache){
                 return Optional.empty();
             }
 
-            return Optional.of(Json.readValue(Files.readString(localCache), WhatsappApk.class));
+            var result = Json.readValue(Files.readString(localCache), WhatsappApk.class);
+            if(expired){
+                refreshAndroidData(business);
+            }
+
+            return Optional.of(result);
         }catch (Throwable throwable){
             return Optional.empty();
         }
     }
 
+    // Processes that share the same cache don't all download the apk: the one that holds the lock does, the others keep using the expired data
+    private void refreshAndroidData(boolean business) {
+        var lock = tryLockCache(androidCache.resolve(business ? "whatsapp_business.lock" : "whatsapp.lock"));
+        if(lock.isEmpty()){
+            return;
+        }
+
+        try {
+            if(!isExpired(Files.getLastModifiedTime(getAndroidLocalCache(business)).toInstant(), ANDROID_DATA_TTL)){
+                releaseLock(lock.get());
+                return;
+            }
+        }catch (IOException exception){
+            releaseLock(lock.get());
+            return;
+        }
+
+        downloadWhatsappApk(business).whenComplete((result, throwable) -> {
+            releaseLock(lock.get());
+            if(throwable != null){
+                LOGGER.log(Logger.Level.WARNING, "Cannot refresh apk data", throwable);
+            }
+        });
+    }
+
+    private Optional<FileLock> tryLockCache(Path path) {
+        try {
+            Files.createDirectories(path.getParent());
+            var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            var lock = channel.tryLock();
+            if(lock == null){
+                channel.close();
+            }
+
+            return Optional.ofNullable(lock);
+        }catch (Throwable throwable){
+            return Optional.empty();
+        }
+    }
+
+    private void releaseLock(FileLock lock) {
+        try {
+            lock.channel().close();
+        }catch (IOException exception){
+            LOGGER.log(Logger.Level.WARNING, "Cannot release cache lock", exception);
+        }
+    }
+
     private Path getAndroidJarCache(boolean business) throws URISyntaxException {
         var url = business
                 ? ClassLoader.getSystemResource("token/android/whatsapp_business.json")
@@ -236,20 +360,59 @@ public class MetadataHelper {
         }
     }
 
+    // The cache is written before the download completes, so that the lock of the cache is released only after the cache was updated
     private WhatsappApk cacheWhatsappData(WhatsappApk apk) {
-        CompletableFuture.runAsync(() -> {
-            try {
-                var json = Json.writeValueAsString(apk, true);
-                var file = getAndroidLocalCache(apk.business());
-                Files.createDirectories(file.getParent());
-                Files.writeString(file, json);
-            }catch (Throwable throwable){
-                LOGGER.log(Logger.Level.WARNING, "Cannot update local cache", throwable);
-            }
-        });
+        try {
+            var json = Json.writeValueAsString(apk, true);
+            writeCache(getAndroidLocalCache(apk.business()), json);
+        }catch (Throwable throwable){
+            LOGGER.log(Logger.Level.WARNING, "Cannot update local cache", throwable);
+        }
+
         return apk;
     }
 
+    // Caches are written to a temporary file first, so that other processes never read a partial cache
+    private void writeCache(Path file, String json) throws IOException {
+        Files.createDirectories(file.getParent());
+        var temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temp, json);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private boolean isExpired(Instant timestamp, Duration ttl) {
+        return timestamp.plus(ttl).isBefore(Instant.now());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> fetchOnce(String key, Supplier<CompletableFuture<T>> fetcher) {
+        var result = new CompletableFuture<T>();
+        var pending = PENDING_FETCHES.putIfAbsent(key, result);
+        if(pending != null){
+            return (CompletableFuture<T>) pending;
+        }
+
+        try {
+            fetcher.get().whenComplete((value, throwable) -> {
+                PENDING_FETCHES.remove(key, result);
+                if(throwable != null){
+                    result.completeExceptionally(throwable);
+                }else {
+                    result.complete(value);
+                }
+            });
+        }catch (Throwable throwable){
+            PENDING_FETCHES.remove(key, result);
+            result.completeExceptionally(throwable);
+        }
+
+        return result;
+    }
+
     private byte[] getAboutLogo(ByteArrayApkFile apkFile) throws IOException {
         var resource = apkFile.getFileData("res/drawable-hdpi/about_logo.png");
         if(resource != null){
@@ -289,6 +452,10 @@ public class MetadataHelper {
         return factory.generateSecret(key);
     }
 
+    private record WebVersionCache(Version version, Instant timestamp) {
+
+    }
+
     @Builder
     @Jacksonized
     public record WhatsappApk(Version version, byte[] md5Hash, byte[] secretKey, Collection<byte[]> certificates, boolean business) {
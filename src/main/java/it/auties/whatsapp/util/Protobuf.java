@@ -4,23 +4,121 @@ import it.auties.protobuf.base.ProtobufDeserializationException;
 import it.auties.protobuf.base.ProtobufMessage;
 import it.auties.protobuf.base.ProtobufSerializationException;
 
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
 public class Protobuf {
+    // The codec of a class is resolved once: after that, encoding and decoding are plain calls to the generated methods
+    private static final ClassValue<Codec> CODECS = new ClassValue<>() {
+        @Override
+        protected Codec computeValue(Class<?> type) {
+            return Codec.of(type);
+        }
+    };
+
     @SuppressWarnings("unchecked")
     public static <T> T readMessage(byte[] message, Class<T> clazz) {
         try {
-            var method = clazz.getMethod("ofProtobuf", byte[].class);
-            return (T) method.invoke(null, new Object[]{message});
+            return (T) CODECS.get(clazz).decoder().apply(message);
+        }catch (ProtobufDeserializationException exception){
+            throw exception;
         }catch (Throwable exception){
             throw new ProtobufDeserializationException(exception);
         }
     }
 
+    /**
+     * Decodes the remaining bytes of a buffer, the position of the buffer is not changed.
+     * The generated decoders only accept arrays, so the bytes are copied unless the buffer wraps exactly its backing array.
+     */
+    public static <T> T readMessage(ByteBuffer message, Class<T> clazz) {
+        return readMessage(toArray(message), clazz);
+    }
+
     public static byte[] writeMessage(ProtobufMessage object) {
         try {
-            var method = object.getClass().getMethod("toEncodedProtobuf");
-            return (byte[]) method.invoke(object);
+            return CODECS.get(object.getClass()).encoder().apply(object);
+        }catch (ProtobufSerializationException exception){
+            throw exception;
         }catch (Throwable exception){
             throw new ProtobufSerializationException(exception);
         }
     }
+
+    /**
+     * Encodes a message into a buffer, starting at its current position
+     * The position of the buffer is advanced by the length of the encoded message.
+     *
+     * @return the number of bytes that were written
+     */
+    public static int writeMessage(ProtobufMessage object, ByteBuffer output) {
+        var encoded = writeMessage(object);
+        output.put(encoded);
+        return encoded.length;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+
+        var result = new byte[buffer.remaining()];
+        buffer.duplicate().get(result);
+        return result;
+    }
+
+    private record Codec(Function<byte[], Object> decoder, Function<Object, byte[]> encoder) {
+        private static Codec of(Class<?> type) {
+            var lookup = MethodHandles.lookup();
+            return new Codec(createDecoder(lookup, type), createEncoder(lookup, type));
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Function<byte[], Object> createDecoder(MethodHandles.Lookup lookup, Class<?> type) {
+            try {
+                var handle = lookup.findStatic(type, "ofProtobuf", MethodType.methodType(type, byte[].class));
+                return (Function<byte[], Object>) createFunction(lookup, handle);
+            }catch (NoSuchMethodException | IllegalAccessException exception){
+                return ignored -> {
+                    throw new ProtobufDeserializationException(exception);
+                };
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Function<Object, byte[]> createEncoder(MethodHandles.Lookup lookup, Class<?> type) {
+            try {
+                var handle = lookup.findVirtual(type, "toEncodedProtobuf", MethodType.methodType(byte[].class));
+                return (Function<Object, byte[]>) createFunction(lookup, handle);
+            }catch (NoSuchMethodException | IllegalAccessException exception){
+                return ignored -> {
+                    throw new ProtobufSerializationException(exception);
+                };
+            }
+        }
+
+        // Spins a lambda around the generated method so that the jit can inline it, or falls back to the method handle
+        private static Function<?, ?> createFunction(MethodHandles.Lookup lookup, MethodHandle handle) {
+            try {
+                var site = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+                        MethodType.methodType(Object.class, Object.class), handle, handle.type());
+                return (Function<?, ?>) site.getTarget().invokeExact();
+            }catch (Throwable throwable){
+                var generic = handle.asType(MethodType.methodType(Object.class, Object.class));
+                return input -> {
+                    try {
+                        return generic.invokeExact(input);
+                    }catch (RuntimeException | Error exception){
+                        throw exception;
+                    }catch (Throwable exception){
+                        throw new IllegalStateException(exception);
+                    }
+                };
+            }
+        }
+    }
 }
@@ -0,0 +1,269 @@
+package it.auties.whatsapp.util;
+
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timer wheel: scheduling and cancelling a task are constant time operations, and a single thread serves all the tasks.
+ * Tasks are not executed at their exact deadline, but at most one tick later, which makes the wheel a good fit for timeouts.
+ * The thread is started lazily and parks when no task is pending.
+ */
+public final class TimerWheel implements AutoCloseable {
+    private static final TimerWheel SHARED = new TimerWheel(Duration.ofMillis(100), 512, ForkJoinPool.commonPool());
+
+    private final long tickNanos;
+    private final Queue<Timeout>[] buckets;
+    private final int mask;
+    private final Executor executor;
+    private final Queue<Timeout> scheduled;
+    private final AtomicInteger pending;
+    private final long startTime;
+    private volatile Thread worker;
+    private volatile boolean idle;
+    private volatile boolean closed;
+    private long tick;
+
+    /**
+     * Constructs a new timer wheel
+     *
+     * @param tick     the resolution of the wheel
+     * @param size     the number of buckets, rounded up to a power of two
+     * @param executor the executor used to run expired tasks
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(@NonNull Duration tick, int size, @NonNull Executor executor) {
+        Validate.isTrue(!tick.isZero() && !tick.isNegative(), "Invalid tick: %s", tick);
+        Validate.isTrue(size > 0 && size <= 1 << 16, "Invalid wheel size: %s", size);
+        var length = Integer.highestOneBit(size) == size ? size : Integer.highestOneBit(size) << 1;
+        this.tickNanos = tick.toNanos();
+        this.buckets = new Queue[length];
+        for (var index = 0; index < length; index++) {
+            buckets[index] = new ArrayDeque<>();
+        }
+        this.mask = length - 1;
+        this.executor = executor;
+        this.scheduled = new ConcurrentLinkedQueue<>();
+        this.pending = new AtomicInteger();
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Returns the timer wheel shared by all sessions that don't provide their own
+     *
+     * @return a non-null timer wheel
+     */
+    public static TimerWheel shared() {
+        return SHARED;
+    }
+
+    /**
+     * Schedules a task to run after a delay
+     *
+     * @param task  the non-null task to run
+     * @param delay the non-null delay
+     * @return a handle that can be used to cancel the task
+     */
+    public Timeout schedule(@NonNull Runnable task, @NonNull Duration delay) {
+        Validate.isTrue(!closed, "Cannot schedule a task on a closed timer wheel", IllegalStateException.class);
+        var deadline = System.nanoTime() - startTime + Math.max(delay.toNanos(), 0);
+        var timeout = new Timeout(this, task, deadline);
+        pending.incrementAndGet();
+        scheduled.add(timeout);
+        start();
+        if (idle) {
+            LockSupport.unpark(worker);
+        }
+
+        return timeout;
+    }
+
+    /**
+     * Returns the number of tasks that are waiting to be executed
+     *
+     * @return an unsigned int
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    private void start() {
+        if (worker != null) {
+            return;
+        }
+
+        synchronized (this) {
+            if (worker != null) {
+                return;
+            }
+
+            var thread = new Thread(this::run, "whatsapp-timer-wheel");
+            thread.setDaemon(true);
+            thread.start();
+            this.worker = thread;
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            var now = awaitNextTick();
+            if (now < 0) {
+                return;
+            }
+
+            transferScheduled();
+            expire(buckets[(int) (tick & mask)], now);
+            tick++;
+        }
+    }
+
+    private long awaitNextTick() {
+        while (true) {
+            if (closed) {
+                return -1;
+            }
+
+            var now = System.nanoTime() - startTime;
+            if (pending.get() == 0 && scheduled.isEmpty()) {
+                park();
+                // Nothing was due while the wheel was parked, so there is no need to walk the skipped buckets
+                this.tick = Math.max(tick, (System.nanoTime() - startTime) / tickNanos);
+                continue;
+            }
+
+            var sleep = tickNanos * (tick + 1) - now;
+            if (sleep <= 0) {
+                return now;
+            }
+
+            LockSupport.parkNanos(this, sleep);
+        }
+    }
+
+    private void park() {
+        this.idle = true;
+        try {
+            if (pending.get() == 0 && scheduled.isEmpty() && !closed) {
+                LockSupport.park(this);
+            }
+        } finally {
+            this.idle = false;
+        }
+    }
+
+    private void transferScheduled() {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            var expected = timeout.deadline / tickNanos;
+            timeout.rounds = Math.max(expected - tick, 0) / buckets.length;
+            buckets[(int) (Math.max(expected, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Queue<Timeout> bucket, long now) {
+        var size = bucket.size();
+        for (var index = 0; index < size; index++) {
+            var timeout = bucket.poll();
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            if (timeout.rounds > 0 || timeout.deadline > now) {
+                timeout.rounds = Math.max(timeout.rounds - 1, 0);
+                bucket.add(timeout);
+                continue;
+            }
+
+            timeout.expire();
+        }
+    }
+
+    /**
+     * Stops the wheel: pending tasks are discarded
+     * The shared wheel should never be closed
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        scheduled.clear();
+        pending.set(0);
+        var thread = worker;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * A handle to a task scheduled on a {@link TimerWheel}
+     */
+    public static final class Timeout {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final TimerWheel wheel;
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state;
+        private long rounds;
+
+        private Timeout(TimerWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+            this.state = new AtomicInteger(WAITING);
+        }
+
+        /**
+         * Cancels this task if it didn't run yet
+         *
+         * @return whether the task was cancelled
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) {
+                return false;
+            }
+
+            wheel.pending.decrementAndGet();
+            return true;
+        }
+
+        /**
+         * Returns whether this task was cancelled
+         *
+         * @return a boolean
+         */
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        /**
+         * Returns whether this task was executed
+         *
+         * @return a boolean
+         */
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(WAITING, EXPIRED)) {
+                return;
+            }
+
+            wheel.pending.decrementAndGet();
+            wheel.executor.execute(task);
+        }
+    }
+}
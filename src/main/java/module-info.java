@@ -13,6 +13,7 @@ open module it.auties.whatsapp4j {
     requires com.google.zxing.javase;
     requires it.auties.qr;
     requires io.github.classgraph;
+    requires static java.compiler;
     requires org.bouncycastle.provider;
     requires it.auties.curve;
     requires it.auties.linkpreview;
@@ -62,4 +63,6 @@ open module it.auties.whatsapp4j {
     exports it.auties.whatsapp.model.signal.sender;
     exports it.auties.whatsapp.model.signal.keypair;
     exports it.auties.whatsapp.model.call;
-}
\ No newline at end of file
+
+    provides javax.annotation.processing.Processor with it.auties.whatsapp.util.ListenerIndexProcessor;
+}
@@ -0,0 +1,90 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.api.ReconnectPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionTrackerTest {
+    private static final ReconnectPolicy POLICY = new ReconnectPolicy(Duration.ofSeconds(1), Duration.ofMinutes(1), 3);
+
+    @Test
+    public void testPolicyDelay() {
+        assertEquals(Optional.of(Duration.ZERO), POLICY.delay(1));
+        assertBetween(POLICY.delay(2).orElseThrow(), 500, 1000);
+        assertBetween(POLICY.delay(3).orElseThrow(), 1000, 2000);
+        assertTrue(POLICY.delay(4).isEmpty());
+        var unbounded = ReconnectPolicy.exponential();
+        assertBetween(unbounded.delay(10).orElseThrow(), 30_000, 60_000);
+        assertBetween(unbounded.delay(Integer.MAX_VALUE).orElseThrow(), 30_000, 60_000);
+    }
+
+    @Test
+    public void testInvalidPolicy() {
+        assertThrows(IllegalArgumentException.class, () -> new ReconnectPolicy(Duration.ofSeconds(-1), Duration.ofMinutes(1), 3));
+        assertThrows(IllegalArgumentException.class, () -> new ReconnectPolicy(Duration.ofSeconds(2), Duration.ofSeconds(1), 3));
+        assertThrows(IllegalArgumentException.class, () -> new ReconnectPolicy(Duration.ofSeconds(1), Duration.ofMinutes(1), 0));
+    }
+
+    @Test
+    public void testTimeToReady() throws InterruptedException {
+        var tracker = new ConnectionTracker();
+        tracker.onConnecting();
+        Thread.sleep(20);
+        tracker.onEstablished();
+        var metrics = tracker.metrics();
+        assertEquals(1, metrics.connections());
+        assertEquals(0, metrics.reconnections());
+        assertTrue(metrics.lastTimeToReady().toMillis() >= 20);
+        assertEquals(metrics.lastTimeToReady(), metrics.maxTimeToReady());
+        assertEquals(metrics.lastTimeToReady(), metrics.averageTimeToReady());
+    }
+
+    @Test
+    public void testUnstableConnectionKeepsBackingOff() {
+        var tracker = new ConnectionTracker();
+        tracker.onConnecting();
+        tracker.onEstablished();
+        assertFalse(tracker.isResuming());
+
+        assertEquals(Optional.of(Duration.ZERO), tracker.nextAttempt(POLICY));
+        assertTrue(tracker.isResuming());
+        tracker.onEstablished();
+        assertEquals(1, tracker.metrics().resumptions());
+
+        var delay = tracker.nextAttempt(POLICY);
+        assertFalse(delay.orElseThrow().isZero());
+        assertEquals(2, tracker.metrics().consecutiveFailures());
+        assertTrue(tracker.nextAttempt(POLICY).isPresent());
+        assertTrue(tracker.nextAttempt(POLICY).isEmpty());
+
+        var metrics = tracker.metrics();
+        assertEquals(0, metrics.consecutiveFailures());
+        assertEquals(3, metrics.reconnections());
+        assertEquals(2, metrics.connections());
+    }
+
+    @Test
+    public void testStopAndReset() {
+        var tracker = new ConnectionTracker();
+        tracker.onConnecting();
+        tracker.onEstablished();
+        tracker.nextAttempt(POLICY);
+        tracker.onStopped();
+        assertEquals(0, tracker.metrics().consecutiveFailures());
+        assertFalse(tracker.isResuming());
+
+        tracker.nextAttempt(POLICY);
+        assertTrue(tracker.isResuming());
+        tracker.onReset();
+        tracker.nextAttempt(POLICY);
+        assertFalse(tracker.isResuming());
+    }
+
+    private void assertBetween(Duration delay, long min, long max) {
+        assertTrue(delay.toMillis() >= min && delay.toMillis() <= max, "Unexpected delay: %s".formatted(delay));
+    }
+}
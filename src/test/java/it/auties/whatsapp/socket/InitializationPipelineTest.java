@@ -0,0 +1,111 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.api.ErrorHandler.Location;
+import it.auties.whatsapp.api.InitializationReport;
+import it.auties.whatsapp.api.InitializationReport.Result;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InitializationPipelineTest {
+    @Test
+    public void testDependencies() throws Exception {
+        var order = new CopyOnWriteArrayList<String>();
+        var pipeline = new InitializationPipeline(false, (location, throwable) -> fail(throwable));
+        pipeline.add("first", true, null, () -> record(order, "first"))
+                .add("second", true, null, () -> record(order, "second"), "first")
+                .add("third", false, null, () -> record(order, "third"), "second");
+        pipeline.start();
+        var report = pipeline.completion().get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("first", "second", "third"), order);
+        assertTrue(report.readyToSend());
+        assertFalse(report.resumed());
+        assertEquals(Map.of("first", Result.SUCCESS, "second", Result.SUCCESS, "third", Result.SUCCESS), results(report));
+    }
+
+    @Test
+    public void testFailureSkipsDependents() throws Exception {
+        var errors = new ConcurrentHashMap<Location, Throwable>();
+        var pipeline = new InitializationPipeline(true, errors::put);
+        pipeline.add("preKeys", true, Location.CRYPTOGRAPHY, () -> CompletableFuture.failedFuture(new IllegalStateException("No pre keys")))
+                .add("groups", true, null, () -> CompletableFuture.completedFuture(null), "preKeys")
+                .add("presence", false, Location.LOGIN, () -> CompletableFuture.completedFuture(null));
+        pipeline.start();
+        assertFalse(pipeline.ready().get(5, TimeUnit.SECONDS));
+        var report = pipeline.completion().get(5, TimeUnit.SECONDS);
+        assertFalse(report.readyToSend());
+        assertTrue(report.resumed());
+        assertEquals(Map.of("preKeys", Result.FAILURE, "groups", Result.SKIPPED, "presence", Result.SUCCESS), results(report));
+        assertEquals(Map.of(Location.CRYPTOGRAPHY, IllegalStateException.class), errors.entrySet()
+                .stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getClass())));
+    }
+
+    @Test
+    public void testThrowingTaskFails() throws Exception {
+        var errors = new ConcurrentHashMap<Location, Throwable>();
+        var pipeline = new InitializationPipeline(false, errors::put);
+        pipeline.add("properties", true, Location.LOGIN, () -> {
+            throw new IllegalArgumentException("Malformed query");
+        });
+        pipeline.start();
+        var report = pipeline.completion().get(5, TimeUnit.SECONDS);
+        assertEquals(Map.of("properties", Result.FAILURE), results(report));
+        assertInstanceOf(IllegalArgumentException.class, errors.get(Location.LOGIN));
+    }
+
+    @Test
+    public void testLenientStepRunsAfterFailures() throws Exception {
+        var order = new CopyOnWriteArrayList<String>();
+        var pipeline = new InitializationPipeline(false, (location, throwable) -> {});
+        pipeline.add("properties", true, Location.LOGIN, () -> CompletableFuture.failedFuture(new RuntimeException()))
+                .add("presence", false, Location.LOGIN, () -> record(order, "presence"))
+                .addAfter("loggedIn", Location.LOGIN, () -> record(order, "loggedIn"), "properties", "presence");
+        pipeline.start();
+        var report = pipeline.completion().get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("presence", "loggedIn"), order);
+        assertEquals(Result.SUCCESS, results(report).get("loggedIn"));
+    }
+
+    @Test
+    public void testCriticalStepsStartFirst() throws Exception {
+        var order = new CopyOnWriteArrayList<String>();
+        var pipeline = new InitializationPipeline(false, (location, throwable) -> {});
+        pipeline.add("about", false, null, () -> record(order, "about"))
+                .add("mediaConnection", true, null, () -> record(order, "mediaConnection"));
+        pipeline.start();
+        pipeline.completion().get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("mediaConnection", "about"), order);
+    }
+
+    @Test
+    public void testInvalidSteps() {
+        var pipeline = new InitializationPipeline(false, (location, throwable) -> {});
+        pipeline.add("presence", false, null, () -> CompletableFuture.completedFuture(null));
+        assertThrows(IllegalArgumentException.class, () -> pipeline.add("presence", false, null, () -> CompletableFuture.completedFuture(null)));
+        assertThrows(IllegalArgumentException.class, () -> pipeline.add("groups", false, null, () -> CompletableFuture.completedFuture(null), "chats"));
+        assertThrows(IllegalArgumentException.class, () -> pipeline.add("preKeys", true, null, () -> CompletableFuture.completedFuture(null), "presence"));
+        pipeline.start();
+        assertThrows(IllegalStateException.class, () -> pipeline.add("about", false, null, () -> CompletableFuture.completedFuture(null)));
+        assertThrows(IllegalStateException.class, pipeline::start);
+    }
+
+    private CompletableFuture<Void> record(List<String> order, String name) {
+        order.add(name);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private Map<String, Result> results(InitializationReport report) {
+        return report.steps()
+                .stream()
+                .collect(Collectors.toMap(InitializationReport.Step::name, InitializationReport.Step::result));
+    }
+}
@@ -0,0 +1,135 @@
+package it.auties.whatsapp.utils;
+
+import it.auties.whatsapp.util.BoundedExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundedExecutorTest {
+    private ExecutorService delegate;
+
+    @BeforeEach
+    public void createDelegate() {
+        this.delegate = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    public void closeDelegate() {
+        delegate.shutdownNow();
+    }
+
+    @Test
+    public void testSerialOrder() throws InterruptedException {
+        var executor = new BoundedExecutor(delegate, 1, 1000);
+        var results = new CopyOnWriteArrayList<Integer>();
+        var running = new AtomicInteger();
+        var overlapped = new AtomicBoolean();
+        var expected = new ArrayList<Integer>();
+        for (var index = 0; index < 200; index++) {
+            var value = index;
+            expected.add(value);
+            executor.execute(() -> {
+                if (running.incrementAndGet() > 1) {
+                    overlapped.set(true);
+                }
+
+                results.add(value);
+                running.decrementAndGet();
+            });
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(expected, results);
+        assertFalse(overlapped.get());
+    }
+
+    @Test
+    public void testConcurrencyCap() throws InterruptedException {
+        var executor = new BoundedExecutor(delegate, 2, 1000);
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var latch = new CountDownLatch(20);
+        for (var index = 0; index < 20; index++) {
+            executor.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(maxRunning.get() <= 2);
+    }
+
+    @Test
+    public void testQueueFull() {
+        var workers = new ArrayList<Runnable>();
+        var executor = new BoundedExecutor(workers::add, 1, 2);
+        var results = new ArrayList<String>();
+        executor.execute(() -> results.add("a"));
+        executor.execute(() -> results.add("b"));
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> results.add("c")));
+        assertEquals(2, executor.queued());
+        assertEquals(1, executor.rejected());
+        assertEquals(1, workers.size());
+
+        workers.remove(0).run();
+        assertEquals(List.of("a", "b"), results);
+        assertEquals(0, executor.queued());
+        executor.execute(() -> results.add("d"));
+        assertEquals(1, workers.size());
+    }
+
+    @Test
+    public void testDelegateRejection() {
+        var rejecting = new AtomicBoolean(true);
+        var workers = new ArrayList<Runnable>();
+        var executor = new BoundedExecutor(command -> {
+            if (rejecting.get()) {
+                throw new RejectedExecutionException("Delegate is full");
+            }
+
+            workers.add(command);
+        }, 1, 8);
+        var results = new ArrayList<String>();
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> results.add("a")));
+        assertEquals(0, executor.queued());
+
+        rejecting.set(false);
+        executor.execute(() -> results.add("b"));
+        assertEquals(1, workers.size());
+        workers.remove(0).run();
+        assertEquals(List.of("b"), results);
+    }
+
+    @Test
+    public void testShutdown() throws InterruptedException {
+        var workers = new ArrayList<Runnable>();
+        var executor = new BoundedExecutor(workers::add, 1, 8);
+        executor.execute(() -> {});
+        executor.execute(() -> {});
+        var pending = executor.shutdownNow();
+        assertEquals(2, pending.size());
+        assertTrue(executor.isShutdown());
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {}));
+
+        workers.remove(0).run();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertTrue(executor.isTerminated());
+    }
+}
@@ -0,0 +1,67 @@
+package it.auties.whatsapp.utils;
+
+import it.auties.whatsapp.model.contact.ContactJid;
+import it.auties.whatsapp.model.exchange.Attributes;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactAttributeMapTest {
+    @Test
+    public void testLookup() {
+        var attributes = Attributes.ofDecoded(new String[]{"id", "type", "t"}, new Object[]{"3EB0", "text", "1690000000"});
+        assertEquals(3, attributes.toMap().size());
+        assertEquals("3EB0", attributes.getString("id"));
+        assertEquals("text", attributes.getString("type"));
+        assertEquals(1690000000L, attributes.getLong("t"));
+        assertTrue(attributes.hasKey("type"));
+        assertFalse(attributes.hasKey("participant"));
+        assertTrue(attributes.getOptionalString("participant").isEmpty());
+    }
+
+    @Test
+    public void testLookupByEquality() {
+        var key = new String("from".toCharArray());
+        var attributes = Attributes.ofDecoded(new String[]{key}, new Object[]{"393495089819@s.whatsapp.net"});
+        assertEquals("393495089819@s.whatsapp.net", attributes.getString("from"));
+    }
+
+    @Test
+    public void testEntriesKeepOrder() {
+        var attributes = Attributes.ofDecoded(new String[]{"to", "id", "type"}, new Object[]{"a", "b", "c"});
+        var expected = new LinkedHashMap<String, Object>();
+        expected.put("to", "a");
+        expected.put("id", "b");
+        expected.put("type", "c");
+        assertEquals(expected, attributes.toMap());
+        assertEquals(expected.keySet().stream().toList(), attributes.toMap().keySet().stream().toList());
+        assertEquals(Map.copyOf(expected).hashCode(), attributes.toMap().hashCode());
+    }
+
+    @Test
+    public void testParsedJidIsCached() {
+        var attributes = Attributes.ofDecoded(new String[]{"from"}, new Object[]{"393495089819:2@s.whatsapp.net"});
+        var first = attributes.getJid("from").orElseThrow();
+        var second = attributes.getJid("from").orElseThrow();
+        assertSame(first, second);
+        assertEquals(ContactJid.of("393495089819:2@s.whatsapp.net"), first);
+        assertEquals("393495089819:2@s.whatsapp.net", attributes.getString("from"));
+    }
+
+    @Test
+    public void testImmutable() {
+        var attributes = Attributes.ofDecoded(new String[]{"id"}, new Object[]{"1"});
+        assertThrows(UnsupportedOperationException.class, () -> attributes.toMap().put("type", "text"));
+        var copy = attributes.copy().put("type", "text");
+        assertEquals("text", copy.getString("type"));
+        assertFalse(attributes.hasKey("type"));
+    }
+
+    @Test
+    public void testMismatchedArrays() {
+        assertThrows(IllegalArgumentException.class, () -> Attributes.ofDecoded(new String[]{"id", "type"}, new Object[]{"1"}));
+    }
+}
@@ -0,0 +1,91 @@
+package it.auties.whatsapp.utils;
+
+import it.auties.whatsapp.model.contact.ContactJid;
+import it.auties.whatsapp.model.contact.ContactJid.Server;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContactJidTest {
+    @Test
+    public void testUser() {
+        var jid = ContactJid.of("393495089819@s.whatsapp.net");
+        assertEquals("393495089819", jid.user());
+        assertEquals(Server.WHATSAPP, jid.server());
+        assertEquals(0, jid.device());
+        assertEquals(0, jid.agent());
+        assertEquals("393495089819@s.whatsapp.net", jid.toString());
+    }
+
+    @Test
+    public void testDevice() {
+        var jid = ContactJid.of("393495089819:12@s.whatsapp.net");
+        assertEquals("393495089819", jid.user());
+        assertEquals(12, jid.device());
+        assertEquals(0, jid.agent());
+        assertEquals("393495089819:12@s.whatsapp.net", jid.toString());
+    }
+
+    @Test
+    public void testAgentAndDevice() {
+        var jid = ContactJid.of("393495089819_1:3@s.whatsapp.net");
+        assertEquals("393495089819", jid.user());
+        assertEquals(1, jid.agent());
+        assertEquals(3, jid.device());
+        assertEquals("393495089819_1:3@s.whatsapp.net", jid.toString());
+    }
+
+    @Test
+    public void testServers() {
+        assertEquals(Server.GROUP, ContactJid.of("120363041255788459@g.us").server());
+        assertEquals(Server.LID, ContactJid.of("1234567890@lid").server());
+        assertEquals(Server.BROADCAST, ContactJid.of("status@broadcast").server());
+        assertSame(ContactJid.ofServer(Server.WHATSAPP), ContactJid.of(null, Server.WHATSAPP));
+    }
+
+    @Test
+    public void testPhoneNumber() {
+        var jid = ContactJid.of("+393495089819", Server.WHATSAPP);
+        assertEquals("393495089819", jid.user());
+        assertEquals(ContactJid.of(393495089819L), jid);
+    }
+
+    @Test
+    public void testCachedInstance() {
+        var first = ContactJid.of("393495089820@s.whatsapp.net");
+        var second = ContactJid.of("393495089820@s.whatsapp.net");
+        assertSame(first, second);
+        assertNotSame(first, ContactJid.of("393495089820:1@s.whatsapp.net"));
+    }
+
+    @Test
+    public void testConcurrentParsing() throws Exception {
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            var tasks = new ArrayList<Callable<Boolean>>();
+            for (var thread = 0; thread < 8; thread++) {
+                tasks.add(() -> {
+                    for (var index = 0; index < 10_000; index++) {
+                        var user = String.valueOf(390000000000L + index % 5000);
+                        var jid = ContactJid.of(user + ":" + (index % 4) + "@s.whatsapp.net");
+                        if (!jid.user().equals(user) || jid.device() != index % 4) {
+                            return false;
+                        }
+                    }
+
+                    return true;
+                });
+            }
+
+            for (var result : executor.invokeAll(tasks)) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
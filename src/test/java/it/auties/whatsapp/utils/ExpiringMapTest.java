@@ -0,0 +1,93 @@
+package it.auties.whatsapp.utils;
+
+import it.auties.whatsapp.util.ExpiringMap;
+import it.auties.whatsapp.util.TimerWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpiringMapTest {
+    private TimerWheel wheel;
+    private Map<String, Integer> removed;
+
+    @BeforeEach
+    public void createWheel() {
+        this.wheel = new TimerWheel(Duration.ofMillis(10), 8, Runnable::run);
+        this.removed = new ConcurrentHashMap<>();
+    }
+
+    @AfterEach
+    public void closeWheel() {
+        wheel.close();
+    }
+
+    @Test
+    public void testPutAndGet() {
+        var map = new ExpiringMap<String, Integer>(Duration.ofMinutes(1), 16, wheel, removed::put);
+        assertEquals(Optional.empty(), map.put("a", 1));
+        assertEquals(Optional.of(1), map.put("a", 2));
+        assertEquals(Optional.of(2), map.get("a"));
+        assertTrue(map.containsKey("a"));
+        assertFalse(map.putIfAbsent("a", 3));
+        assertTrue(map.putIfAbsent("b", 3));
+        assertEquals(2, map.size());
+        assertTrue(removed.isEmpty());
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        var latch = new CountDownLatch(1);
+        var map = new ExpiringMap<String, Integer>(Duration.ofMillis(50), 16, wheel, (key, value) -> {
+            removed.put(key, value);
+            latch.countDown();
+        });
+        map.put("a", 1);
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(map.get("a").isEmpty());
+        assertEquals(Map.of("a", 1), removed);
+        var metrics = map.metrics();
+        assertEquals(0, metrics.size());
+        assertEquals(1, metrics.expirations());
+        assertEquals(0, metrics.evictions());
+    }
+
+    @Test
+    public void testEvictsOldest() {
+        var map = new ExpiringMap<String, Integer>(Duration.ofMinutes(1), 2, wheel, removed::put);
+        map.put("a", 1);
+        map.put("b", 2);
+        map.put("a", 3);
+        map.put("c", 4);
+        assertEquals(Map.of("b", 2), removed);
+        assertEquals(Optional.of(3), map.get("a"));
+        assertEquals(Optional.of(4), map.get("c"));
+        var metrics = map.metrics();
+        assertEquals(2, metrics.size());
+        assertEquals(0, metrics.expirations());
+        assertEquals(1, metrics.evictions());
+    }
+
+    @Test
+    public void testRemoveDoesNotNotify() throws InterruptedException {
+        var map = new ExpiringMap<String, Integer>(Duration.ofMillis(50), 16, wheel, removed::put);
+        map.put("a", 1);
+        map.put("b", 2);
+        assertEquals(Optional.of(1), map.remove("a"));
+        assertEquals(Optional.empty(), map.remove("a"));
+        map.clear();
+        assertEquals(0, map.size());
+        Thread.sleep(200);
+        assertTrue(removed.isEmpty());
+        assertEquals(0, map.metrics().expirations());
+        assertEquals(0, wheel.pending());
+    }
+}
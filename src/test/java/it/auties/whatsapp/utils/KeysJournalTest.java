@@ -0,0 +1,142 @@
+package it.auties.whatsapp.utils;
+
+import it.auties.whatsapp.api.ClientType;
+import it.auties.whatsapp.controller.DefaultControllerSerializer;
+import it.auties.whatsapp.controller.FsyncPolicy;
+import it.auties.whatsapp.controller.Keys;
+import it.auties.whatsapp.model.signal.keypair.SignalKeyPair;
+import it.auties.whatsapp.model.signal.session.Session;
+import it.auties.whatsapp.model.signal.session.SessionAddress;
+import it.auties.whatsapp.model.signal.session.SessionState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeysJournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testReplay() throws IOException {
+        var serializer = new DefaultControllerSerializer(directory, FsyncPolicy.ALWAYS);
+        var keys = createKeys(serializer);
+        var address = new SessionAddress("393495089819", 1);
+        keys.putSession(address, session(1));
+        assertFalse(listSegments(keys).isEmpty());
+
+        var restored = new DefaultControllerSerializer(directory, FsyncPolicy.ALWAYS)
+                .deserializeKeys(ClientType.WEB, keys.uuid())
+                .orElseThrow();
+        var session = restored.findSessionByAddress(address).orElseThrow();
+        assertTrue(session.hasState(3, key(1)));
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        var serializer = new DefaultControllerSerializer(directory, FsyncPolicy.ALWAYS);
+        var keys = createKeys(serializer);
+        var first = new SessionAddress("393495089819", 1);
+        var second = new SessionAddress("393495089820", 1);
+        keys.putSession(first, session(1));
+        keys.putSession(second, session(2));
+        var segments = listSegments(keys);
+        assertFalse(segments.isEmpty());
+
+        serializer.serializeKeys(keys, false);
+        segments.forEach(segment -> assertTrue(Files.notExists(segment)));
+
+        var restored = new DefaultControllerSerializer(directory, FsyncPolicy.ALWAYS)
+                .deserializeKeys(ClientType.WEB, keys.uuid())
+                .orElseThrow();
+        assertTrue(restored.findSessionByAddress(first).orElseThrow().hasState(3, key(1)));
+        assertTrue(restored.findSessionByAddress(second).orElseThrow().hasState(3, key(2)));
+    }
+
+    @Test
+    public void testTornTail() throws IOException {
+        var serializer = new DefaultControllerSerializer(directory, FsyncPolicy.ALWAYS);
+        var keys = createKeys(serializer);
+        var first = new SessionAddress("393495089819", 1);
+        var second = new SessionAddress("393495089820", 1);
+        keys.putSession(first, session(1));
+        keys.putSession(second, session(2));
+        keys.serializer().closeKeys(keys);
+
+        var segment = listSegments(keys).get(0);
+        try (var channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        var restored = new DefaultControllerSerializer(directory, FsyncPolicy.ALWAYS)
+                .deserializeKeys(ClientType.WEB, keys.uuid())
+                .orElseThrow();
+        assertTrue(restored.findSessionByAddress(first).orElseThrow().hasState(3, key(1)));
+        assertTrue(restored.findSessionByAddress(second).isEmpty());
+    }
+
+    @Test
+    public void testCorruptTail() throws IOException {
+        var serializer = new DefaultControllerSerializer(directory, FsyncPolicy.ALWAYS);
+        var keys = createKeys(serializer);
+        var address = new SessionAddress("393495089819", 1);
+        keys.putSession(address, session(1));
+        keys.serializer().closeKeys(keys);
+
+        var segment = listSegments(keys).get(0);
+        Files.write(segment, new byte[]{0, 0, 0, 4, 1, 2, 3, 4, 5, 6, 7, 8}, StandardOpenOption.APPEND);
+
+        var restored = new DefaultControllerSerializer(directory, FsyncPolicy.ALWAYS)
+                .deserializeKeys(ClientType.WEB, keys.uuid())
+                .orElseThrow();
+        assertTrue(restored.findSessionByAddress(address).orElseThrow().hasState(3, key(1)));
+    }
+
+    // The initial snapshot is written synchronously, so that the changes of the test can only come from the journal
+    private Keys createKeys(DefaultControllerSerializer serializer) {
+        var keys = Keys.random(UUID.randomUUID(), null, ClientType.WEB, serializer);
+        keys.serialize(false);
+        return keys;
+    }
+
+    private List<Path> listSegments(Keys keys) throws IOException {
+        var sessionDirectory = directory.resolve("web").resolve(keys.uuid().toString());
+        try (var walker = Files.list(sessionDirectory)) {
+            return walker.filter(entry -> entry.getFileName().toString().startsWith("keys.wal."))
+                    .filter(entry -> entry.toFile().length() > 0)
+                    .toList();
+        }
+    }
+
+    private Session session(int seed) {
+        var state = SessionState.builder()
+                .version(3)
+                .registrationId(seed)
+                .baseKey(key(seed))
+                .remoteIdentityKey(key(-seed))
+                .rootKey(key(seed + 1))
+                .ephemeralKeyPair(SignalKeyPair.random())
+                .lastRemoteEphemeralKey(key(seed + 2))
+                .build();
+        var session = new Session();
+        session.addState(state);
+        return session;
+    }
+
+    private byte[] key(int seed) {
+        var key = new byte[32];
+        for (var index = 0; index < key.length; index++) {
+            key[index] = (byte) (seed * 31 + index);
+        }
+
+        return key;
+    }
+}
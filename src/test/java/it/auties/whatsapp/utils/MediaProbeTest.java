@@ -0,0 +1,128 @@
+package it.auties.whatsapp.utils;
+
+import it.auties.whatsapp.util.Medias;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MediaProbeTest {
+    @Test
+    public void testMp4() {
+        var file = mp4(1000, 12_500, 640, 480, false, 0);
+        var metadata = Medias.getMetadata(file);
+        assertEquals(12, metadata.duration());
+        assertEquals(640, metadata.dimensions().width());
+        assertEquals(480, metadata.dimensions().height());
+    }
+
+    @Test
+    public void testRotatedMp4() {
+        var file = mp4(600, 1_800, 1920, 1080, true, 1);
+        var metadata = Medias.getMetadata(file);
+        assertEquals(3, metadata.duration());
+        assertEquals(1080, metadata.dimensions().width());
+        assertEquals(1920, metadata.dimensions().height());
+    }
+
+    @Test
+    public void testOpus() {
+        var preSkip = 312;
+        var file = ogg(opusHeader(preSkip), 48_000L * 7 + preSkip);
+        var metadata = Medias.getMetadata(file);
+        assertEquals(7, metadata.duration());
+    }
+
+    @Test
+    public void testVorbis() {
+        var file = ogg(vorbisHeader(44_100), 44_100L * 95);
+        var metadata = Medias.getMetadata(file);
+        assertEquals(95, metadata.duration());
+    }
+
+    private byte[] mp4(int timescale, int duration, int width, int height, boolean rotated, int salt) {
+        var movieHeader = ByteBuffer.allocate(100)
+                .putInt(0)
+                .putInt(salt)
+                .putInt(0)
+                .putInt(timescale)
+                .putInt(duration)
+                .array();
+        var trackHeader = ByteBuffer.allocate(84)
+                .putInt(40, rotated ? 0 : 0x10000)
+                .putInt(44, rotated ? 0x10000 : 0)
+                .putInt(52, rotated ? -0x10000 : 0)
+                .putInt(56, rotated ? 0 : 0x10000)
+                .putInt(72, 0x40000000)
+                .putInt(76, width << 16)
+                .putInt(80, height << 16)
+                .array();
+        var track = box("trak", box("tkhd", trackHeader));
+        var movie = box("moov", concat(box("mvhd", movieHeader), track));
+        return concat(box("ftyp", "isom".getBytes(StandardCharsets.US_ASCII)), movie);
+    }
+
+    private byte[] box(String type, byte[] body) {
+        return ByteBuffer.allocate(8 + body.length)
+                .putInt(8 + body.length)
+                .put(type.getBytes(StandardCharsets.US_ASCII))
+                .put(body)
+                .array();
+    }
+
+    private byte[] opusHeader(int preSkip) {
+        return ByteBuffer.allocate(19)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .put("OpusHead".getBytes(StandardCharsets.US_ASCII))
+                .put((byte) 1)
+                .put((byte) 2)
+                .putShort((short) preSkip)
+                .putInt(48_000)
+                .array();
+    }
+
+    private byte[] vorbisHeader(int sampleRate) {
+        return ByteBuffer.allocate(30)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .put((byte) 1)
+                .put("vorbis".getBytes(StandardCharsets.US_ASCII))
+                .putInt(0)
+                .put((byte) 2)
+                .putInt(sampleRate)
+                .array();
+    }
+
+    private byte[] ogg(byte[] header, long lastGranule) {
+        var serial = 0x1234;
+        return concat(oggPage(serial, 0, 0, header), oggPage(serial, 1, -1, new byte[16]), oggPage(serial, 2, lastGranule, new byte[16]));
+    }
+
+    private byte[] oggPage(int serial, int sequence, long granule, byte[] packet) {
+        return ByteBuffer.allocate(28 + packet.length)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .put("OggS".getBytes(StandardCharsets.US_ASCII))
+                .put((byte) 0)
+                .put((byte) 0)
+                .putLong(granule)
+                .putInt(serial)
+                .putInt(sequence)
+                .putInt(0)
+                .put((byte) 1)
+                .put((byte) packet.length)
+                .put(packet)
+                .array();
+    }
+
+    private byte[] concat(byte[]... parts) {
+        var result = new ByteArrayOutputStream();
+        for (var part : parts) {
+            result.writeBytes(part);
+        }
+
+        return result.toByteArray();
+    }
+}
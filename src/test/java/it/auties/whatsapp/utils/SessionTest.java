@@ -0,0 +1,115 @@
+package it.auties.whatsapp.utils;
+
+import it.auties.whatsapp.model.signal.keypair.SignalKeyPair;
+import it.auties.whatsapp.model.signal.session.Session;
+import it.auties.whatsapp.model.signal.session.SessionChain;
+import it.auties.whatsapp.model.signal.session.SessionState;
+import it.auties.whatsapp.util.Smile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionTest {
+    @Test
+    public void testAddState() {
+        var session = new Session();
+        var first = state(1);
+        var second = state(2);
+        session.addState(first);
+        session.addState(second);
+        assertSame(second, session.currentState().orElseThrow());
+        assertEquals(List.of(first), session.archivedStates());
+        assertEquals(List.of(first, second), session.states());
+        session.addState(first);
+        assertSame(first, session.currentState().orElseThrow());
+        assertEquals(List.of(second), session.archivedStates());
+    }
+
+    @Test
+    public void testFindStateByContent() {
+        var session = new Session();
+        var state = state(1);
+        session.addState(state);
+        session.addState(state(2));
+        assertTrue(session.hasState(3, key(1)));
+        assertSame(state, session.findState(3, key(1)).orElseThrow());
+        assertFalse(session.hasState(2, key(1)));
+        assertTrue(session.findState(3, key(3)).isEmpty());
+    }
+
+    @Test
+    public void testArchiveLimit() {
+        var session = new Session();
+        var total = Session.MAX_ARCHIVED_STATES + 5;
+        for (var index = 0; index < total; index++) {
+            session.addState(state(index));
+        }
+
+        var archived = session.archivedStates();
+        assertEquals(Session.MAX_ARCHIVED_STATES, archived.size());
+        assertTrue(archived.get(0).contentEquals(3, key(total - 2)));
+        assertFalse(session.hasState(3, key(0)));
+        assertTrue(session.hasState(3, key(total - Session.MAX_ARCHIVED_STATES - 1)));
+    }
+
+    @Test
+    public void testCloseCurrentState() {
+        var session = new Session();
+        var state = state(1);
+        session.addState(state);
+        session.closeCurrentState();
+        assertTrue(session.currentState().isEmpty());
+        assertTrue(state.closed());
+        assertEquals(List.of(state), session.archivedStates());
+    }
+
+    @Test
+    public void testSmileRoundTrip() throws IOException {
+        var session = new Session();
+        var archived = state(1);
+        session.addState(archived);
+        session.closeCurrentState();
+        var current = state(2);
+        var chain = new SessionChain(4, key(10));
+        chain.messageKeys().put(2, key(11));
+        current.addChain(key(20), chain);
+        session.addState(current);
+
+        var deserialized = Smile.readValue(Smile.writeValueAsBytes(session), Session.class);
+        var deserializedCurrent = deserialized.currentState().orElseThrow();
+        assertTrue(deserializedCurrent.contentEquals(3, key(2)));
+        assertTrue(deserializedCurrent.hasChain(key(20)));
+        assertFalse(deserializedCurrent.hasChain(key(21)));
+        var deserializedChain = deserializedCurrent.findChain(key(20)).orElseThrow();
+        assertEquals(4, deserializedChain.counter().get());
+        assertArrayEquals(key(10), deserializedChain.key().get());
+        assertArrayEquals(key(11), deserializedChain.messageKeys().get(2));
+        assertEquals(1, deserialized.archivedStates().size());
+        assertTrue(deserialized.archivedStates().get(0).closed());
+        assertTrue(deserialized.hasState(3, key(1)));
+    }
+
+    private SessionState state(int seed) {
+        return SessionState.builder()
+                .version(3)
+                .registrationId(seed)
+                .baseKey(key(seed))
+                .remoteIdentityKey(key(-seed))
+                .rootKey(key(seed + 1))
+                .ephemeralKeyPair(SignalKeyPair.random())
+                .lastRemoteEphemeralKey(key(seed + 2))
+                .build();
+    }
+
+    private byte[] key(int seed) {
+        var key = new byte[32];
+        for (var index = 0; index < key.length; index++) {
+            key[index] = (byte) (seed * 31 + index);
+        }
+
+        return key;
+    }
+}
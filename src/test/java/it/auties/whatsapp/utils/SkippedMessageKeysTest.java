@@ -0,0 +1,84 @@
+package it.auties.whatsapp.utils;
+
+import it.auties.whatsapp.model.signal.session.SkippedMessageKeys;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SkippedMessageKeysTest {
+    @Test
+    public void testPutAndGet() {
+        var keys = new SkippedMessageKeys<String>(4);
+        assertNull(keys.put(1, "a"));
+        assertEquals("a", keys.put(1, "b"));
+        assertEquals("b", keys.get(1));
+        assertEquals("b", keys.get((Object) 1));
+        assertTrue(keys.containsKey(1));
+        assertFalse(keys.containsKey(2));
+        assertNull(keys.get("1"));
+        assertEquals(1, keys.size());
+    }
+
+    @Test
+    public void testEvictsLowestCounters() {
+        var keys = new SkippedMessageKeys<String>(3);
+        var before = SkippedMessageKeys.evicted();
+        keys.put(7, "g");
+        keys.put(3, "c");
+        keys.put(5, "e");
+        keys.put(9, "i");
+        keys.put(11, "k");
+        assertEquals(3, keys.size());
+        assertFalse(keys.containsKey(3));
+        assertFalse(keys.containsKey(5));
+        assertEquals(Map.of(7, "g", 9, "i", 11, "k"), Map.copyOf(keys));
+        assertEquals(before + 2, SkippedMessageKeys.evicted());
+    }
+
+    @Test
+    public void testRemove() {
+        var keys = new SkippedMessageKeys<String>(2);
+        keys.put(1, "a");
+        keys.put(2, "b");
+        assertEquals("a", keys.remove(1));
+        assertNull(keys.remove(1));
+        assertNull(keys.remove("2"));
+        keys.put(3, "c");
+        assertEquals(Map.of(2, "b", 3, "c"), Map.copyOf(keys));
+        keys.put(4, "d");
+        assertEquals(Map.of(3, "c", 4, "d"), Map.copyOf(keys));
+    }
+
+    @Test
+    public void testClear() {
+        var keys = new SkippedMessageKeys<String>(2);
+        keys.put(10, "a");
+        keys.put(11, "b");
+        keys.clear();
+        assertTrue(keys.isEmpty());
+        keys.put(1, "c");
+        keys.put(2, "d");
+        keys.put(3, "e");
+        assertEquals(Map.of(2, "d", 3, "e"), Map.copyOf(keys));
+    }
+
+    @Test
+    public void testEntrySetIsSnapshot() {
+        var keys = new SkippedMessageKeys<String>(8);
+        keys.put(1, "a");
+        keys.put(2, "b");
+        var entries = keys.entrySet();
+        keys.put(3, "c");
+        assertEquals(2, entries.size());
+        assertThrows(UnsupportedOperationException.class, entries::clear);
+        var counters = keys.entrySet()
+                .stream()
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        assertEquals(Set.of(1, 2, 3), counters);
+    }
+}
@@ -0,0 +1,83 @@
+package it.auties.whatsapp.utils;
+
+import it.auties.whatsapp.util.TimerWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimerWheelTest {
+    private TimerWheel wheel;
+
+    @BeforeEach
+    public void createWheel() {
+        this.wheel = new TimerWheel(Duration.ofMillis(10), 8, Runnable::run);
+    }
+
+    @AfterEach
+    public void closeWheel() {
+        wheel.close();
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        var latch = new CountDownLatch(1);
+        var start = System.nanoTime();
+        var timeout = wheel.schedule(latch::countDown, Duration.ofMillis(50));
+        assertEquals(1, wheel.pending());
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos());
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        assertEquals(0, wheel.pending());
+    }
+
+    @Test
+    public void testDelayLongerThanWheel() throws InterruptedException {
+        var latch = new CountDownLatch(1);
+        var start = System.nanoTime();
+        wheel.schedule(latch::countDown, Duration.ofMillis(250));
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(250).toNanos());
+    }
+
+    @Test
+    public void testCancellation() throws InterruptedException {
+        var executed = new AtomicBoolean();
+        var timeout = wheel.schedule(() -> executed.set(true), Duration.ofMillis(50));
+        assertTrue(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.cancel());
+        assertEquals(0, wheel.pending());
+        Thread.sleep(200);
+        assertFalse(executed.get());
+        assertFalse(timeout.isExpired());
+    }
+
+    @Test
+    public void testOrder() throws InterruptedException {
+        var results = new CopyOnWriteArrayList<Integer>();
+        var latch = new CountDownLatch(3);
+        wheel.schedule(() -> { results.add(3); latch.countDown(); }, Duration.ofMillis(150));
+        wheel.schedule(() -> { results.add(1); latch.countDown(); }, Duration.ofMillis(30));
+        wheel.schedule(() -> { results.add(2); latch.countDown(); }, Duration.ofMillis(90));
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2, 3), results);
+    }
+
+    @Test
+    public void testClose() {
+        wheel.schedule(() -> {}, Duration.ofSeconds(10));
+        wheel.close();
+        assertEquals(0, wheel.pending());
+        assertThrows(IllegalStateException.class, () -> wheel.schedule(() -> {}, Duration.ofMillis(10)));
+    }
+}